@@ -5,12 +5,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
     private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
 
@@ -25,8 +27,17 @@ public class AsyncConfig {
 
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
-        executor.setRejectedExecutionHandler(
-                (r, e) -> logger.warn("Task rejected: {} in executor: {}", r, e));
+        // Hết thread và queue đầy: chạy luôn trên thread gọi (listener RabbitMQ,
+        // request /ingest-context) thay vì bỏ task. Thread gọi bị chậm lại nên
+        // message tiếp theo nằm chờ trong exam.grading.queue, không mất trong JVM.
+        executor.setRejectedExecutionHandler((r, e) -> {
+            if (e.isShutdown()) {
+                logger.warn("Task rejected after executor shutdown: {}", r);
+                return;
+            }
+            logger.debug("Executor saturated, running task on caller thread {}", Thread.currentThread().getName());
+            r.run();
+        });
 
         executor.initialize();
         logger.info("AsyncConfig initialized: core={}, max={}, queue={}",
@@ -2,6 +2,9 @@ package com.igcse.ai.config;
 
 import com.igcse.ai.service.llm.EssayGradingAiService;
 import com.igcse.ai.service.llm.InsightAiService;
+import com.igcse.ai.service.llm.LimitedChatLanguageModel;
+import com.igcse.ai.service.llm.LlmConcurrencyLimiter;
+import com.igcse.ai.service.llm.OfflineChatLanguageModel;
 import com.igcse.ai.service.llm.RecommendationAiService;
 
 // import org.slf4j.Logger; // Import Logger
@@ -10,6 +13,7 @@ import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -37,7 +41,50 @@ public class LangChain4jConfig {
     @Value("${openai.log.responses:false}") // Mặc định tắt logging responses
     private boolean logResponses;
 
+    // openai | offline (OfflineChatLanguageModel: load test/benchmark không tốn credit)
+    @Value("${ai.llm.provider:openai}")
+    private String provider;
+
+    @Value("${ai.llm.offline.latency-p50-ms:800}")
+    private long offlineLatencyP50Ms;
+
+    @Value("${ai.llm.offline.latency-p99-ms:4000}")
+    private long offlineLatencyP99Ms;
+
+    @Value("${ai.llm.offline.error-rate:0.0}")
+    private double offlineErrorRate;
+
+    @Value("${ai.llm.offline.rate-limit-rate:0.0}")
+    private double offlineRateLimitRate;
+
+    @Value("${ai.llm.offline.max-concurrency:0}")
+    private int offlineMaxConcurrency;
+
+    @Value("${ai.llm.offline.seed:42}")
+    private long offlineSeed;
+
+    // Một instance offline dùng chung cho cả 3 AI service (max-concurrency tính chung như provider thật)
+    private ChatLanguageModel offlineModel;
+
+    // Dùng chung cho cả 3 AI service: giới hạn tổng số lời gọi LLM đồng thời, ngắt mạch khi provider lỗi
+    private final LlmConcurrencyLimiter llmConcurrencyLimiter;
+    private final CircuitBreaker llmCircuitBreaker;
+
+    public LangChain4jConfig(LlmConcurrencyLimiter llmConcurrencyLimiter, CircuitBreaker llmCircuitBreaker) {
+        this.llmConcurrencyLimiter = llmConcurrencyLimiter;
+        this.llmCircuitBreaker = llmCircuitBreaker;
+    }
+
     private ChatLanguageModel createChatModel(double temperature) {
+        if ("offline".equalsIgnoreCase(provider)) {
+            if (offlineModel == null) {
+                System.err.println("CẢNH BÁO: ai.llm.provider=offline, dùng LLM giả lập (không gọi OpenAI).");
+                offlineModel = new OfflineChatLanguageModel(offlineLatencyP50Ms, offlineLatencyP99Ms,
+                        offlineErrorRate, offlineRateLimitRate, offlineMaxConcurrency, offlineSeed);
+            }
+            return new LimitedChatLanguageModel(offlineModel, llmConcurrencyLimiter, llmCircuitBreaker);
+        }
+
         if (openaiApiKey == null || openaiApiKey.trim().isEmpty() ||
                 "your-api-key-here".equals(openaiApiKey) ||
                 openaiApiKey.contains("${") || // Check if Spring placeholder wasn't replaced
@@ -49,7 +96,7 @@ public class LangChain4jConfig {
             openaiApiKey = "demo-key-to-prevent-startup-crash";
         }
 
-        return OpenAiChatModel.builder()
+        ChatLanguageModel model = OpenAiChatModel.builder()
                 .apiKey(openaiApiKey)
                 .modelName(modelName)
                 .temperature(temperature) // Dùng tham số truyền vào
@@ -57,6 +104,7 @@ public class LangChain4jConfig {
                 .logRequests(logRequests)
                 .logResponses(logResponses)
                 .build();
+        return new LimitedChatLanguageModel(model, llmConcurrencyLimiter, llmCircuitBreaker);
     }
 
     @Bean
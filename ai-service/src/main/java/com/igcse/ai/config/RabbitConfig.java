@@ -4,11 +4,13 @@ import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.DefaultJackson2JavaTypeMapper;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -18,6 +20,14 @@ public class RabbitConfig {
     public static final String EXCHANGE_NAME = "exam.grading.exchange";
     public static final String QUEUE_NAME = "exam.grading.queue";
     public static final String ROUTING_KEY = "grade.exam";
+    // id container của GradingMessageListener (GradingConsumerScaler điều chỉnh số consumer)
+    public static final String GRADING_LISTENER_ID = "gradingListener";
+
+    // Hàng đợi hoãn: không có consumer, message hết TTL được dead-letter về
+    // exam.grading.exchange/grade.exam để chấm lại (DeferredGradingPublisher)
+    public static final String DEFERRED_QUEUE_NAME = "exam.grading.deferred.queue";
+    // Bài thi bị hoãn quá số lần cho phép, giữ lại để xử lý tay
+    public static final String PARKING_QUEUE_NAME = "exam.grading.parking.queue";
 
     public static final String RESULT_EXCHANGE_NAME = "exam.grading.result.exchange";
     public static final String RESULT_QUEUE_NAME = "exam.grading.result.queue";
@@ -41,6 +51,24 @@ public class RabbitConfig {
         return BindingBuilder.bind(gradingQueue).to(gradingExchange).with(ROUTING_KEY);
     }
 
+    /**
+     * Đổi delay-ms sau khi queue đã tồn tại sẽ lỗi PRECONDITION_FAILED: phải
+     * xóa queue cũ trên broker trước.
+     */
+    @Bean
+    public Queue deferredGradingQueue(@Value("${ai.grading.deferred.delay-ms:30000}") long delayMs) {
+        return QueueBuilder.durable(DEFERRED_QUEUE_NAME)
+                .ttl((int) delayMs)
+                .deadLetterExchange(EXCHANGE_NAME)
+                .deadLetterRoutingKey(ROUTING_KEY)
+                .build();
+    }
+
+    @Bean
+    public Queue parkingGradingQueue() {
+        return new Queue(PARKING_QUEUE_NAME, true);
+    }
+
     @Bean
     public DirectExchange resultExchange() {
         return new DirectExchange(RESULT_EXCHANGE_NAME);
@@ -81,6 +109,11 @@ public class RabbitConfig {
         // Message lỗi sẽ bị discard hoặc đưa vào DLQ thay vì lặp vô hạn
         factory.setDefaultRequeueRejected(false);
 
+        // Mỗi consumer chỉ giữ 1 message chưa ack: phần còn lại nằm trong queue
+        // của broker. Số consumer do GradingConsumerScaler chỉnh theo limit LLM.
+        factory.setPrefetchCount(1);
+        factory.setConcurrentConsumers(1);
+
         return factory;
     }
 }
@@ -1,7 +1,11 @@
 package com.igcse.ai.config;
 
+import com.igcse.ai.service.llm.LlmErrors;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -9,6 +13,9 @@ import java.time.Duration;
 
 @Configuration
 public class ResilienceConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ResilienceConfig.class);
+
+    public static final String LLM_CIRCUIT_BREAKER = "llm";
 
     @Bean
     public CircuitBreakerRegistry circuitBreakerRegistry() {
@@ -22,4 +29,21 @@ public class ResilienceConfig {
 
         return CircuitBreakerRegistry.of(circuitBreakerConfig);
     }
+
+    /**
+     * Circuit breaker chung cho mọi lời gọi LLM (LimitedChatLanguageModel).
+     * Chỉ lỗi tạm thời (429, 5xx, timeout, lỗi mạng) được tính là lỗi; lỗi 4xx
+     * khác không mở mạch.
+     */
+    @Bean
+    public CircuitBreaker llmCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry) {
+        CircuitBreakerConfig config = CircuitBreakerConfig.from(circuitBreakerRegistry.getDefaultConfig())
+                .recordException(LlmErrors::isTransient)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .build();
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(LLM_CIRCUIT_BREAKER, config);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> logger.warn("LLM circuit breaker: {}",
+                event.getStateTransition()));
+        return circuitBreaker;
+    }
 }
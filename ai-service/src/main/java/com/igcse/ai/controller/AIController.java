@@ -7,6 +7,8 @@ import com.igcse.ai.dto.aiChamDiem.AnswerDTO;
 import com.igcse.ai.dto.aiChamDiem.DetailedGradingResultDTO;
 import com.igcse.ai.dto.aiChamDiem.ExamAnswersDTO;
 import com.igcse.ai.entity.AIResult;
+import com.igcse.ai.exception.GradingDeferredException;
+import com.igcse.ai.listener.DeferredGradingPublisher;
 import com.igcse.ai.service.AIService;
 import com.igcse.ai.service.common.JsonService;
 import com.igcse.ai.service.common.StudyContextService;
@@ -39,6 +41,7 @@ public class AIController {
     private final StudyContextService studyContextService;
     private final Executor taskExecutor;
     private final ObjectMapper objectMapper; 
+    private final DeferredGradingPublisher deferredGradingPublisher;
 
     public AIController(
             AIService aiService,
@@ -47,7 +50,8 @@ public class AIController {
             JsonService jsonService,
             StudyContextService studyContextService,
             ObjectMapper objectMapper,
-            @Qualifier("taskExecutor") Executor taskExecutor) {
+            @Qualifier("taskExecutor") Executor taskExecutor,
+            DeferredGradingPublisher deferredGradingPublisher) {
         this.aiService = aiService;
         this.recommendationService = recommendationService;
         this.insightService = insightService;
@@ -55,6 +59,7 @@ public class AIController {
         this.studyContextService = studyContextService;
         this.objectMapper = objectMapper;
         this.taskExecutor = taskExecutor;
+        this.deferredGradingPublisher = deferredGradingPublisher;
     }
 
     @GetMapping("/result/{attemptId}")
@@ -187,6 +192,9 @@ public class AIController {
                         CompletableFuture.runAsync(() -> {
                             try {
                                 aiService.evaluateExamFromDTO(dto);
+                            } catch (GradingDeferredException e) {
+                                // LLM lỗi tạm thời: chuyển sang hàng đợi hoãn, chấm lại qua RabbitMQ
+                                deferredGradingPublisher.defer(dto, null, null);
                             } catch (Exception e) {
                                 logger.error(">>> [Async] Lỗi khi chấm điểm attempt {}: {}", attemptId, e.getMessage());
                             }
@@ -21,4 +21,7 @@ public class DetailedGradingResultDTO {
     private Double confidence;
     private String language;
     private List<GradingResult> details;
+    // Thời điểm chấm (epoch ms), dùng làm phiên bản kết quả: exam-service bỏ kết quả
+    // không mới hơn bản đã áp dụng (redelivery), nhận kết quả chấm lại mới hơn
+    private Long gradedAt;
 }
@@ -0,0 +1,33 @@
+package com.igcse.ai.dto.aiChamDiem;
+
+import dev.langchain4j.model.output.structured.Description;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO cho kết quả chấm nhiều bài tự luận trong một lần gọi AI (LangChain4j
+ * structured output)
+ */
+@Data
+public class EssayBatchGradeResultDTO {
+
+    @Description("Exactly one result for every essay in the request")
+    private List<Item> results;
+
+    @Data
+    public static class Item {
+
+        @Description("The id of the graded essay, as given after 'Essay #' in the request")
+        private int essayId;
+
+        @Description("The score given to the student's answer, from 0.0 to the max score of that essay")
+        private double score;
+
+        @Description("Detailed feedback explaining the score and how to improve")
+        private String feedback;
+
+        @Description("Confidence level in the grading, from 0.0 to 1.0")
+        private double confidenceScore;
+    }
+}
@@ -0,0 +1,48 @@
+package com.igcse.ai.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Kết quả chấm tự luận đã lưu (L2 của EssayGradeCache), dùng lại cho các câu
+ * trả lời giống nhau (sau chuẩn hóa) giữa các học sinh
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "essay_grade_cache", indexes = {
+        @Index(name = "idx_essay_cache_question", columnList = "question_id")
+})
+public class EssayGradeCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 (hex) của (câu hỏi, đáp án tham khảo, điểm tối đa, ngôn ngữ, câu trả lời đã chuẩn hóa)
+    @Column(name = "cache_key", nullable = false, unique = true, length = 64)
+    private String cacheKey;
+
+    @Column(name = "question_id")
+    private Long questionId;
+
+    // SHA-256 của đáp án tham khảo: đổi đáp án thì xóa các kết quả cũ của câu hỏi
+    @Column(name = "reference_hash", length = 64)
+    private String referenceHash;
+
+    @Column(nullable = false)
+    private Double score;
+
+    @Column(columnDefinition = "TEXT")
+    private String feedback;
+
+    @Column
+    private Double confidence;
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+}
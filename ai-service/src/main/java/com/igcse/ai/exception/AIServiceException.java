@@ -19,6 +19,11 @@ public class AIServiceException extends RuntimeException {
         this.errorCode = "AI_SERVICE_ERROR";
     }
 
+    public AIServiceException(String message, String errorCode, Throwable cause) {
+        super(message, cause);
+        this.errorCode = errorCode;
+    }
+
     public AIServiceException(String message, String errorCode, String details) {
         super(message);
         this.errorCode = errorCode;
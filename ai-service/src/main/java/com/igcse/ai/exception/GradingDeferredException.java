@@ -0,0 +1,25 @@
+package com.igcse.ai.exception;
+
+/**
+ * Chấm bài bị hoãn do lỗi tạm thời của LLM (circuit breaker mở, 429, 5xx,
+ * timeout). Bài thi được đưa vào hàng đợi hoãn để chấm lại sau, không lưu kết
+ * quả lỗi.
+ */
+public class GradingDeferredException extends AIServiceException {
+    public GradingDeferredException(String message, Throwable cause) {
+        super(message, "GRADING_DEFERRED", cause);
+    }
+
+    /**
+     * Tìm GradingDeferredException trong chuỗi cause (CompletionException...),
+     * null nếu không có
+     */
+    public static GradingDeferredException find(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() != t ? t.getCause() : null) {
+            if (t instanceof GradingDeferredException deferred) {
+                return deferred;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.igcse.ai.listener;
+
+import com.igcse.ai.config.RabbitConfig;
+import com.igcse.ai.dto.aiChamDiem.ExamAnswersDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đưa bài thi chấm dở (LLM lỗi tạm thời / circuit breaker mở) vào
+ * exam.grading.deferred.queue. Hết TTL, broker tự dead-letter message về
+ * exam.grading.queue để chấm lại; lúc breaker HALF_OPEN chỉ vài lời gọi thử
+ * được qua, phần còn lại bị hoãn tiếp, nên hàng đợi được xả dần theo tốc độ
+ * provider hồi phục mà không cần chấm lại bằng tay.
+ *
+ * Header x-grading-deferrals đếm số lần hoãn; vượt max-deferrals thì chuyển
+ * sang exam.grading.parking.queue.
+ */
+@Component
+public class DeferredGradingPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(DeferredGradingPublisher.class);
+
+    public static final String DEFERRALS_HEADER = "x-grading-deferrals";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final int maxDeferrals;
+    private final Counter deferred;
+    private final Counter parked;
+
+    public DeferredGradingPublisher(RabbitTemplate rabbitTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${ai.grading.deferred.max-deferrals:240}") int maxDeferrals) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.maxDeferrals = maxDeferrals;
+        this.deferred = Counter.builder("ai.grading.deferred")
+                .description("Grading requests parked in the deferred queue after a transient LLM failure")
+                .register(meterRegistry);
+        this.parked = Counter.builder("ai.grading.parked")
+                .description("Grading requests moved to the parking queue after too many deferrals")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param previousDeferrals số lần đã hoãn trước đó (giá trị header, null = 0)
+     * @param replyTo           reply-to của request gốc (null nếu không có), giữ lại
+     *                          để lần chấm lại trả kết quả về đúng chỗ
+     */
+    public void defer(ExamAnswersDTO examAnswers, Integer previousDeferrals, String replyTo) {
+        int deferrals = (previousDeferrals != null ? previousDeferrals : 0) + 1;
+        if (deferrals > maxDeferrals) {
+            logger.error(">>> [RabbitMQ] Attempt {} deferred {} times, moving to {}", examAnswers.getAttemptId(),
+                    deferrals - 1, RabbitConfig.PARKING_QUEUE_NAME);
+            rabbitTemplate.convertAndSend("", RabbitConfig.PARKING_QUEUE_NAME, examAnswers, message -> {
+                message.getMessageProperties().setReplyTo(replyTo);
+                return message;
+            });
+            parked.increment();
+            return;
+        }
+
+        logger.warn(">>> [RabbitMQ] Grading deferred for attemptId: {} (deferral #{})", examAnswers.getAttemptId(),
+                deferrals);
+        rabbitTemplate.convertAndSend("", RabbitConfig.DEFERRED_QUEUE_NAME, examAnswers, message -> {
+            message.getMessageProperties().setHeader(DEFERRALS_HEADER, deferrals);
+            message.getMessageProperties().setReplyTo(replyTo);
+            return message;
+        });
+        deferred.increment();
+    }
+}
@@ -0,0 +1,78 @@
+package com.igcse.ai.listener;
+
+import com.igcse.ai.config.RabbitConfig;
+import com.igcse.ai.service.llm.LlmConcurrencyLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Điều chỉnh số consumer của exam.grading.queue theo permit của
+ * LlmConcurrencyLimiter: khi provider chậm/429 thì limit giảm, bớt consumer,
+ * message chờ trong queue của broker thay vì dồn vào executor của JVM.
+ *
+ * consumers = limit / permits-per-attempt, kẹp trong [min, max]. Chỉ tăng khi
+ * limiter còn permit trống.
+ */
+@Component
+public class GradingConsumerScaler {
+    private static final Logger logger = LoggerFactory.getLogger(GradingConsumerScaler.class);
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final LlmConcurrencyLimiter limiter;
+    private final int permitsPerAttempt;
+    private final int minConsumers;
+    private final int maxConsumers;
+
+    private volatile int consumers;
+
+    public GradingConsumerScaler(RabbitListenerEndpointRegistry listenerRegistry,
+            LlmConcurrencyLimiter limiter,
+            MeterRegistry meterRegistry,
+            @Value("${ai.grading.consumers.permits-per-attempt:3}") int permitsPerAttempt,
+            @Value("${ai.grading.consumers.min:1}") int minConsumers,
+            @Value("${ai.grading.consumers.max:10}") int maxConsumers) {
+        this.listenerRegistry = listenerRegistry;
+        this.limiter = limiter;
+        this.permitsPerAttempt = Math.max(1, permitsPerAttempt);
+        this.minConsumers = Math.max(1, minConsumers);
+        this.maxConsumers = Math.max(this.minConsumers, maxConsumers);
+        this.consumers = this.minConsumers;
+
+        Gauge.builder("ai.grading.consumers", this, s -> s.consumers)
+                .description("Concurrent consumers of the grading queue")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${ai.grading.consumers.adjust-interval-ms:5000}",
+            initialDelayString = "${ai.grading.consumers.adjust-interval-ms:5000}")
+    public void adjust() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(RabbitConfig.GRADING_LISTENER_ID);
+        if (!(container instanceof SimpleMessageListenerContainer simple) || !simple.isRunning()) {
+            return;
+        }
+
+        int target = targetConsumers(limiter.getLimit());
+        if (target > consumers && limiter.availablePermits() == 0) {
+            // Limiter đang dùng hết permit: thêm consumer chỉ làm message chờ trong JVM
+            return;
+        }
+        if (target != consumers) {
+            logger.info("Grading consumers {} -> {} (LLM limit {}, in flight {})", consumers, target,
+                    limiter.getLimit(), limiter.getInFlight());
+            simple.setConcurrentConsumers(target);
+            consumers = target;
+        }
+    }
+
+    int targetConsumers(int limit) {
+        return Math.max(minConsumers, Math.min(maxConsumers, limit / permitsPerAttempt));
+    }
+}
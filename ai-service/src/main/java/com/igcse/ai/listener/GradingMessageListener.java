@@ -2,11 +2,14 @@ package com.igcse.ai.listener;
 
 import com.igcse.ai.dto.aiChamDiem.ExamAnswersDTO;
 import com.igcse.ai.dto.aiChamDiem.DetailedGradingResultDTO;
+import com.igcse.ai.exception.GradingDeferredException;
 import com.igcse.ai.service.AIService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 import com.igcse.ai.config.RabbitConfig;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -16,32 +19,55 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 public class GradingMessageListener {
 
     private static final Logger logger = LoggerFactory.getLogger(GradingMessageListener.class);
+
+    // Thời điểm bắt đầu/xong chấm (epoch ms) gắn vào message kết quả: đo queueing delay, latency chấm
+    public static final String GRADING_STARTED_HEADER = "x-grading-started-at";
+    public static final String GRADING_FINISHED_HEADER = "x-grading-finished-at";
+
     private final AIService aiService;
     private final RabbitTemplate rabbitTemplate;
+    private final DeferredGradingPublisher deferredGradingPublisher;
 
-    @RabbitListener(queues = RabbitConfig.QUEUE_NAME)
-    public void receiveGradingRequest(ExamAnswersDTO examAnswersDTO) {
+    @RabbitListener(id = RabbitConfig.GRADING_LISTENER_ID, queues = RabbitConfig.QUEUE_NAME)
+    public void receiveGradingRequest(ExamAnswersDTO examAnswersDTO,
+            @Header(name = DeferredGradingPublisher.DEFERRALS_HEADER, required = false) Integer deferrals,
+            @Header(name = AmqpHeaders.REPLY_TO, required = false) String replyTo) {
         logger.info(">>> [RabbitMQ] Received grading request for attemptId: {}", examAnswersDTO.getAttemptId());
+        long startedAt = System.currentTimeMillis();
         try {
             // [REFACTOR] Gọi method chấm và lấy kết quả trả về
             DetailedGradingResultDTO result = aiService
                     .evaluateExamGetResult(examAnswersDTO);
 
             if (result != null) {
-                // Tạo message kết quả để gửi lại cho Exam Service (Response Queue)
+                // Tạo message kết quả để gửi lại cho Exam Service (Response Queue); request có
+                // reply-to (benchmark) thì trả thẳng vào queue đó, không đi qua result queue thật
+                boolean direct = replyTo != null && !replyTo.isBlank();
                 logger.info(">>> [RabbitMQ] Grading passed. Sending result to result queue: {}",
-                        RabbitConfig.RESULT_QUEUE_NAME);
+                        direct ? replyTo : RabbitConfig.RESULT_QUEUE_NAME);
 
+                long finishedAt = System.currentTimeMillis();
                 rabbitTemplate.convertAndSend(
-                        RabbitConfig.RESULT_EXCHANGE_NAME,
-                        RabbitConfig.RESULT_ROUTING_KEY,
-                        result);
+                        direct ? "" : RabbitConfig.RESULT_EXCHANGE_NAME,
+                        direct ? replyTo : RabbitConfig.RESULT_ROUTING_KEY,
+                        result,
+                        message -> {
+                            message.getMessageProperties().setHeader(GRADING_STARTED_HEADER, startedAt);
+                            message.getMessageProperties().setHeader(GRADING_FINISHED_HEADER, finishedAt);
+                            return message;
+                        });
             } else {
                 logger.warn(">>> [RabbitMQ] Grading returned null result for attemptId: {}",
                         examAnswersDTO.getAttemptId());
             }
 
         } catch (Exception e) {
+            GradingDeferredException deferred = GradingDeferredException.find(e);
+            if (deferred != null) {
+                // LLM đang lỗi tạm thời: chưa lưu kết quả nào, chấm lại sau TTL của hàng đợi hoãn
+                deferredGradingPublisher.defer(examAnswersDTO, deferrals, replyTo);
+                return;
+            }
             logger.error(">>> [RabbitMQ] Error processing grading request: {}", e.getMessage(), e);
             // Có thể throw để RabbitMQ retry hoặc đẩy vào Dead Letter Queue
         }
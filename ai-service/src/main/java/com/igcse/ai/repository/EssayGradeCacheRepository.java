@@ -0,0 +1,29 @@
+package com.igcse.ai.repository;
+
+import com.igcse.ai.entity.EssayGradeCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Repository cho cache kết quả chấm tự luận (L2)
+ */
+@Repository
+public interface EssayGradeCacheRepository extends JpaRepository<EssayGradeCacheEntry, Long> {
+
+    Optional<EssayGradeCacheEntry> findByCacheKey(String cacheKey);
+
+    /**
+     * Xóa kết quả đã lưu của câu hỏi được chấm theo đáp án tham khảo cũ
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EssayGradeCacheEntry e WHERE e.questionId = :questionId "
+            + "AND (e.referenceHash IS NULL OR e.referenceHash <> :referenceHash)")
+    int deleteStaleEntries(@Param("questionId") Long questionId, @Param("referenceHash") String referenceHash);
+}
@@ -70,6 +70,7 @@ public class AIService {
 
     /**
      * Logic chấm điểm cốt lõi (Shared)
+     * LLM lỗi tạm thời thì ném GradingDeferredException trước khi lưu gì vào DB.
      */
     private DetailedGradingResultDTO evaluateExamInternal(ExamAnswersDTO attempt) {
         Long attemptId = attempt.getAttemptId();
@@ -111,7 +112,8 @@ public class AIService {
 
                 return new DetailedGradingResultDTO(
                         attemptId, cachedResult.getStudentId(), cachedResult.getScore(), maxScore,
-                        cachedResult.getFeedback(), cachedResult.getConfidence(), lang, detailsList);
+                        cachedResult.getFeedback(), cachedResult.getConfidence(), lang, detailsList,
+                        epochMillis(cachedResult.getGradedAt()));
             }
             // else fall through
         }
@@ -162,7 +164,10 @@ public class AIService {
         result.setEssayScore(essayScore);
         result.setEvaluationMethod(overallMethod);
         result.setGradedAt(new java.util.Date());
-        result.setAnswersHash(currentAnswersHash);
+        // Kết quả có câu chấm lỗi thì không lưu hash: lần gửi lại sẽ chấm lại thay vì trả kết quả lỗi từ cache
+        boolean hasErrors = gradingResults.stream()
+                .anyMatch(r -> r.getEvaluationMethod() != null && r.getEvaluationMethod().startsWith("ERROR"));
+        result.setAnswersHash(hasErrors ? null : currentAnswersHash);
         result.setDetails(jsonService.toJson(gradingResults));
 
         // Lưu Metadata (bao gồm classId) vào AIResult
@@ -185,7 +190,8 @@ public class AIService {
         }
 
         return new DetailedGradingResultDTO(
-                attemptId, attempt.getStudentId(), score, maxScore, feedback, confidence, lang, gradingResults);
+                attemptId, attempt.getStudentId(), score, maxScore, feedback, confidence, lang, gradingResults,
+                epochMillis(result.getGradedAt()));
     }
 
     public AIResult getResult(Long attemptId) {
@@ -225,7 +231,12 @@ public class AIService {
                 result.getFeedback(),
                 result.getConfidence(),
                 result.getLanguage(),
-                detailsList);
+                detailsList,
+                epochMillis(result.getGradedAt()));
+    }
+
+    private static Long epochMillis(java.util.Date date) {
+        return date != null ? date.getTime() : null;
     }
 
     private boolean isValidLanguage(String language) {
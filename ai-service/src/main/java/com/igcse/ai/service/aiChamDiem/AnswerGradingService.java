@@ -1,16 +1,23 @@
 package com.igcse.ai.service.aiChamDiem;
 
 import com.igcse.ai.dto.aiChamDiem.AnswerDTO;
+import com.igcse.ai.dto.aiChamDiem.EssayAnswer;
 import com.igcse.ai.dto.aiChamDiem.GradingResult;
+import com.igcse.ai.exception.GradingDeferredException;
+import com.igcse.ai.strategy.EssayGradingStrategy;
 import com.igcse.ai.strategy.GradingStrategy;
 import com.igcse.ai.strategy.GradingStrategyFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import com.igcse.ai.service.common.ILanguageService;
 import com.igcse.ai.service.common.LanguageService;
 
@@ -21,14 +28,27 @@ public class AnswerGradingService implements IGradingService {
     private final ILanguageService languageService;
     private final GradingStrategyFactory gradingStrategyFactory;
     private final java.util.concurrent.Executor taskExecutor;
+    private final EssayGradingStrategy essayGradingStrategy;
+    // Số bài tự luận tối đa trong một lần gọi AI (1 = chấm từng bài như cũ)
+    private final int essayBatchSize;
+    private final Timer gradingTimer;
 
     public AnswerGradingService(
             ILanguageService languageService,
             GradingStrategyFactory gradingStrategyFactory,
-            @Qualifier("taskExecutor") java.util.concurrent.Executor taskExecutor) {
+            @Qualifier("taskExecutor") java.util.concurrent.Executor taskExecutor,
+            EssayGradingStrategy essayGradingStrategy,
+            MeterRegistry meterRegistry,
+            @Value("${ai.grading.essay-batch-size:5}") int essayBatchSize) {
         this.languageService = languageService;
         this.gradingStrategyFactory = gradingStrategyFactory;
         this.taskExecutor = taskExecutor;
+        this.essayGradingStrategy = essayGradingStrategy;
+        this.essayBatchSize = Math.max(1, essayBatchSize);
+        this.gradingTimer = Timer.builder("ai.grading.attempt.duration")
+                .description("End-to-end grading time of one attempt")
+                .tag("mode", this.essayBatchSize > 1 ? "batch" : "single")
+                .register(meterRegistry);
     }
 
     @Override
@@ -45,51 +65,90 @@ public class AnswerGradingService implements IGradingService {
 
         logger.info("Grading {} answers", answers.size());
 
+        long start = System.nanoTime();
         try {
-            List<CompletableFuture<GradingResult>> futures = new ArrayList<>();
-
-            for (AnswerDTO answer : answers) {
-                CompletableFuture<GradingResult> future = CompletableFuture
-                        .supplyAsync(() -> {
-                            try {
-                                return gradeAnswer(answer, lang);
-                            } catch (Exception e) {
-                                logger.error("Error grading answer type {}: {}", answer.getType(), e.getMessage());
-                                return new GradingResult(
-                                        answer.getQuestionId(),
-                                        answer.getType(),
-                                        0.0,
-                                        0.0,
-                                        "Error grading answer: " + e.getMessage(),
-                                        false,
-                                        0.0,
-                                        "ERROR");
-                            }
-                        }, taskExecutor);
-                futures.add(future);
+            // Kết quả giữ đúng thứ tự answers
+            GradingResult[] slots = new GradingResult[answers.size()];
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            List<Integer> essayIndexes = new ArrayList<>();
+
+            for (int i = 0; i < answers.size(); i++) {
+                AnswerDTO answer = answers.get(i);
+                if (essayBatchSize > 1 && answer instanceof EssayAnswer) {
+                    essayIndexes.add(i);
+                    continue;
+                }
+                int slot = i;
+                futures.add(CompletableFuture.runAsync(() -> slots[slot] = gradeAnswerSafely(answer, lang),
+                        taskExecutor));
+            }
+
+            // Tự luận: mỗi lô tối đa essayBatchSize bài trong một request tới AI
+            for (int from = 0; from < essayIndexes.size(); from += essayBatchSize) {
+                List<Integer> chunk = essayIndexes.subList(from, Math.min(from + essayBatchSize, essayIndexes.size()));
+                futures.add(CompletableFuture.runAsync(() -> {
+                    List<EssayAnswer> essays = chunk.stream().map(i -> (EssayAnswer) answers.get(i)).toList();
+                    try {
+                        List<GradingResult> graded = essayGradingStrategy.gradeBatch(essays, lang);
+                        for (int j = 0; j < chunk.size(); j++) {
+                            slots[chunk.get(j)] = graded.get(j);
+                        }
+                    } catch (GradingDeferredException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        logger.error("Error grading essay batch: {}", e.getMessage());
+                        for (int j = 0; j < chunk.size(); j++) {
+                            slots[chunk.get(j)] = gradeAnswerSafely(essays.get(j), lang);
+                        }
+                    }
+                }, taskExecutor));
             }
 
             // Wait for all to complete
             CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
 
             // Collect results
-            for (CompletableFuture<GradingResult> future : futures) {
-                try {
-                    results.add(future.get());
-                } catch (Exception e) {
-                    logger.error("Error retrieving grading result", e);
+            for (GradingResult result : slots) {
+                if (result != null) {
+                    results.add(result);
                 }
             }
 
             logger.info("Successfully graded {} answers", results.size());
 
         } catch (Exception e) {
+            // LLM lỗi tạm thời: hoãn cả bài thi thay vì trả kết quả thiếu/0 điểm
+            GradingDeferredException deferred = GradingDeferredException.find(e);
+            if (deferred != null) {
+                throw deferred;
+            }
             logger.error("Error grading answers", e);
+        } finally {
+            gradingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
 
         return results;
     }
 
+    private GradingResult gradeAnswerSafely(AnswerDTO answer, String lang) {
+        try {
+            return gradeAnswer(answer, lang);
+        } catch (GradingDeferredException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error grading answer type {}: {}", answer.getType(), e.getMessage());
+            return new GradingResult(
+                    answer.getQuestionId(),
+                    answer.getType(),
+                    0.0,
+                    0.0,
+                    "Error grading answer: " + e.getMessage(),
+                    false,
+                    0.0,
+                    "ERROR");
+        }
+    }
+
     /**
      * Chấm điểm một câu trả lời với ngôn ngữ chỉ định
      */
@@ -0,0 +1,294 @@
+package com.igcse.ai.service.aiChamDiem;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.igcse.ai.dto.aiChamDiem.EssayGradeResultDTO;
+import com.igcse.ai.entity.EssayGradeCacheEntry;
+import com.igcse.ai.repository.EssayGradeCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Cache kết quả chấm tự luận dùng chung giữa các học sinh: câu trả lời giống
+ * nhau (sau chuẩn hóa) của cùng một câu hỏi chỉ tốn một lần gọi LLM.
+ *
+ * - Khóa: SHA-256 của (câu hỏi, đáp án tham khảo, điểm tối đa, ngôn ngữ, câu
+ * trả lời đã chuẩn hóa). Chuẩn hóa chỉ gồm NFKC, chữ thường và gộp khoảng
+ * trắng: không bỏ dấu tiếng Việt vì có thể đổi nghĩa câu trả lời.
+ * - L1: Caffeine trong bộ nhớ. Các request trùng khóa đang chấm dở chờ chung
+ * một lần gọi LLM thay vì gọi song song.
+ * - L2: bảng essay_grade_cache, dùng chung giữa các replica và qua các lần khởi
+ * động lại.
+ * - Đổi đáp án tham khảo: khóa mới không trùng khóa cũ, kết quả cũ của câu hỏi
+ * bị xóa khỏi L2 (L1 không còn truy cập được và tự hết hạn).
+ * - Chỉ lưu kết quả chấm thành công; lỗi LLM không được cache.
+ *
+ * Metrics: ai_grading_cache_lookups_total{result=l1_hit|l2_hit|miss},
+ * ai_grading_cache_hit_ratio, ai_grading_cache_llm_saved_total,
+ * ai_grading_cache_invalidations_total.
+ */
+@Service
+public class EssayGradeCache {
+    private static final Logger logger = LoggerFactory.getLogger(EssayGradeCache.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final EssayGradeCacheRepository repository;
+    private final boolean enabled;
+    private final AsyncCache<String, CachedGrade> grades;
+    // questionId -> hash đáp án tham khảo đã thấy gần nhất (phát hiện đáp án bị sửa)
+    private final Cache<Long, String> knownReferences;
+
+    private final Counter l1Hits;
+    private final Counter l2Hits;
+    private final Counter misses;
+    private final Counter llmCallsSaved;
+    private final Counter invalidations;
+
+    public EssayGradeCache(EssayGradeCacheRepository repository,
+            MeterRegistry meterRegistry,
+            @Value("${ai.grading.cache.enabled:true}") boolean enabled,
+            @Value("${ai.grading.cache.l1-max-size:10000}") long l1MaxSize,
+            @Value("${ai.grading.cache.l1-expire-minutes:60}") long l1ExpireMinutes) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.grades = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize)
+                .expireAfterAccess(Duration.ofMinutes(l1ExpireMinutes))
+                .buildAsync();
+        this.knownReferences = Caffeine.newBuilder()
+                .maximumSize(l1MaxSize)
+                .expireAfterAccess(Duration.ofMinutes(l1ExpireMinutes))
+                .build();
+
+        this.l1Hits = lookupCounter(meterRegistry, "l1_hit");
+        this.l2Hits = lookupCounter(meterRegistry, "l2_hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.llmCallsSaved = Counter.builder("ai.grading.cache.llm.saved")
+                .description("Essay LLM calls avoided by the grading cache")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("ai.grading.cache.invalidations")
+                .description("Cached essay grades removed after a reference answer change")
+                .register(meterRegistry);
+        Gauge.builder("ai.grading.cache.hit.ratio", this, EssayGradeCache::hitRatio)
+                .description("Share of essay grading lookups served from L1 or L2")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Trả kết quả đã cache nếu có, ngược lại gọi grader (LLM) và lưu kết quả.
+     * Lỗi của grader được ném lại nguyên vẹn cho caller xử lý fallback.
+     */
+    public EssayGradeResultDTO getOrGrade(Long questionId, String question, String referenceAnswer, double maxScore,
+            String language, String studentAnswer, Supplier<EssayGradeResultDTO> grader) {
+        if (!enabled) {
+            return grader.get();
+        }
+
+        Key key = keyOf(questionId, question, referenceAnswer, maxScore, language, studentAnswer);
+        invalidateIfReferenceChanged(key.questionId(), key.referenceHash());
+
+        CompletableFuture<CachedGrade> created = new CompletableFuture<>();
+        CompletableFuture<CachedGrade> existing = grades.asMap().putIfAbsent(key.cacheKey(), created);
+        if (existing != null) {
+            CachedGrade hit = existing.join();
+            if (hit != null) {
+                l1Hits.increment();
+                llmCallsSaved.increment();
+                return hit.toDto();
+            }
+            // Lần chấm đang chạy cho cùng khóa đã lỗi: tự chấm, không cache
+            misses.increment();
+            return grader.get();
+        }
+
+        try {
+            CachedGrade grade = loadFromStore(key.cacheKey());
+            if (grade != null) {
+                l2Hits.increment();
+                llmCallsSaved.increment();
+            } else {
+                misses.increment();
+                grade = CachedGrade.of(grader.get());
+                saveToStore(key, grade);
+            }
+            created.complete(grade);
+            return grade.toDto();
+        } catch (RuntimeException e) {
+            // Không cache lỗi: bỏ entry, các request đang chờ sẽ tự chấm
+            grades.asMap().remove(key.cacheKey(), created);
+            created.complete(null);
+            throw e;
+        }
+    }
+
+    /**
+     * Khóa cache của một câu trả lời (dùng khi chấm theo lô: tra trước bằng
+     * getIfPresent, lưu kết quả bằng put)
+     */
+    public Key keyOf(Long questionId, String question, String referenceAnswer, double maxScore, String language,
+            String studentAnswer) {
+        String referenceHash = sha256Hex(referenceAnswer);
+        String cacheKey = sha256Hex(String.join("\u0000",
+                question.strip(), referenceHash, Double.toString(maxScore), language, normalizeAnswer(studentAnswer)));
+        return new Key(cacheKey, questionId, referenceHash);
+    }
+
+    /**
+     * Kết quả đã cache (L1 đã chấm xong hoặc L2), null nếu chưa có hoặc cache tắt
+     */
+    public EssayGradeResultDTO getIfPresent(Key key) {
+        if (!enabled) {
+            return null;
+        }
+        invalidateIfReferenceChanged(key.questionId(), key.referenceHash());
+
+        CompletableFuture<CachedGrade> inMemory = grades.getIfPresent(key.cacheKey());
+        CachedGrade grade = inMemory != null && inMemory.isDone() ? inMemory.join() : null;
+        if (grade != null) {
+            l1Hits.increment();
+        } else {
+            grade = loadFromStore(key.cacheKey());
+            if (grade == null) {
+                misses.increment();
+                return null;
+            }
+            grades.put(key.cacheKey(), CompletableFuture.completedFuture(grade));
+            l2Hits.increment();
+        }
+        llmCallsSaved.increment();
+        return grade.toDto();
+    }
+
+    /**
+     * Lưu kết quả chấm thành công (L1 + L2)
+     */
+    public void put(Key key, EssayGradeResultDTO result) {
+        if (!enabled) {
+            return;
+        }
+        CachedGrade grade = CachedGrade.of(result);
+        grades.put(key.cacheKey(), CompletableFuture.completedFuture(grade));
+        saveToStore(key, grade);
+    }
+
+    /**
+     * Chuẩn hóa câu trả lời trước khi băm: NFKC, chữ thường, gộp khoảng trắng
+     */
+    static String normalizeAnswer(String answer) {
+        if (answer == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(answer, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+    }
+
+    private void invalidateIfReferenceChanged(Long questionId, String referenceHash) {
+        if (questionId == null || referenceHash.equals(knownReferences.getIfPresent(questionId))) {
+            return;
+        }
+        try {
+            int removed = repository.deleteStaleEntries(questionId, referenceHash);
+            if (removed > 0) {
+                invalidations.increment(removed);
+                logger.info("Reference answer of question {} changed, removed {} cached essay grades", questionId,
+                        removed);
+            }
+            knownReferences.put(questionId, referenceHash);
+        } catch (Exception e) {
+            logger.warn("Failed to invalidate cached essay grades for question {}: {}", questionId, e.getMessage());
+        }
+    }
+
+    private CachedGrade loadFromStore(String key) {
+        try {
+            return repository.findByCacheKey(key)
+                    .map(entry -> new CachedGrade(entry.getScore(), entry.getFeedback(),
+                            entry.getConfidence() != null ? entry.getConfidence() : 0.0))
+                    .orElse(null);
+        } catch (Exception e) {
+            logger.warn("Essay grade cache lookup failed, grading without cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveToStore(Key key, CachedGrade grade) {
+        EssayGradeCacheEntry entry = new EssayGradeCacheEntry();
+        entry.setCacheKey(key.cacheKey());
+        entry.setQuestionId(key.questionId());
+        entry.setReferenceHash(key.referenceHash());
+        entry.setScore(grade.score());
+        entry.setFeedback(grade.feedback());
+        entry.setConfidence(grade.confidence());
+        entry.setCreatedAt(new Date());
+        try {
+            repository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // Replica khác vừa lưu cùng khóa
+            logger.debug("Essay grade already cached for key {}", key.cacheKey());
+        } catch (Exception e) {
+            logger.warn("Failed to store essay grade in cache: {}", e.getMessage());
+        }
+    }
+
+    private double hitRatio() {
+        double hits = l1Hits.count() + l2Hits.count();
+        double total = hits + misses.count();
+        return total > 0 ? hits / total : 0.0;
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ai.grading.cache.lookups")
+                .description("Essay grading cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((value != null ? value : "").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record Key(String cacheKey, Long questionId, String referenceHash) {
+    }
+
+    // Giá trị bất biến trong cache; mỗi lần trả ra tạo DTO mới
+    private record CachedGrade(double score, String feedback, double confidence) {
+
+        static CachedGrade of(EssayGradeResultDTO result) {
+            return new CachedGrade(result.getScore(), result.getFeedback(), result.getConfidenceScore());
+        }
+
+        EssayGradeResultDTO toDto() {
+            EssayGradeResultDTO dto = new EssayGradeResultDTO();
+            dto.setScore(score);
+            dto.setFeedback(feedback);
+            dto.setConfidenceScore(confidence);
+            return dto;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.igcse.ai.service.llm;
 
+import com.igcse.ai.dto.aiChamDiem.EssayBatchGradeResultDTO;
 import com.igcse.ai.dto.aiChamDiem.EssayGradeResultDTO;
 
+import dev.langchain4j.service.Result;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.V;
@@ -30,10 +32,38 @@ public interface EssayGradingAiService {
 
                         Grade this answer now.
                         """)
-        EssayGradeResultDTO gradeEssay(
+        Result<EssayGradeResultDTO> gradeEssay(
                         @V("question") String question,
                         @V("maxScore") double maxScore,
                         @V("referenceAnswer") String referenceAnswer,
                         @V("studentAnswer") String studentAnswer,
                         @V("language") String language);
+
+        /**
+         * Chấm nhiều bài tự luận của cùng một lượt làm trong một request (xem
+         * EssayGradingStrategy.gradeBatch). essays gồm các khối "Essay #i".
+         */
+        @SystemMessage("""
+                        You are an expert IGCSE examiner. Your task is to grade student essay answers accurately and fairly.
+                        You will receive several independent essays, each with its own Question, Reference Answer and Max Score.
+                        Grade every essay on its own: never let one essay influence the score of another.
+
+                        Unclear or irrelevant answers should receive a low score.
+                        You must provide constructive feedback to help the student improve.
+                        You must also estimate your confidence in each grading (0.0 - 1.0) based on how well the student answer matches the reference key concepts.
+
+                        IMPORTANT: You MUST provide the feedback ONLY in the specified language: {{language}}.
+                        Do NOT mix languages. If the language is Vietnamese, all feedback MUST be in Vietnamese.
+                        """)
+        @UserMessage("""
+                        {{essays}}
+
+                        Language: {{language}}
+
+                        Grade all {{count}} essays now. Return exactly one result per essay, identified by its essay id.
+                        """)
+        Result<EssayBatchGradeResultDTO> gradeEssayBatch(
+                        @V("essays") String essays,
+                        @V("count") int count,
+                        @V("language") String language);
 }
@@ -0,0 +1,82 @@
+package com.igcse.ai.service.llm;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.Response;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bọc ChatLanguageModel: mỗi lời gọi phải qua circuit breaker "llm" (mạch mở
+ * thì ném CallNotPermittedException ngay, không chờ permit) rồi giữ một permit
+ * của LlmConcurrencyLimiter; latency/lỗi được báo lại cho cả hai
+ */
+public class LimitedChatLanguageModel implements ChatLanguageModel {
+
+    private final ChatLanguageModel delegate;
+    private final LlmConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
+
+    public LimitedChatLanguageModel(ChatLanguageModel delegate, LlmConcurrencyLimiter limiter,
+            CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        return call(() -> delegate.generate(messages));
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+        return call(() -> delegate.generate(messages, toolSpecifications));
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages, ToolSpecification toolSpecification) {
+        return call(() -> delegate.generate(messages, toolSpecification));
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        return call(() -> delegate.chat(request));
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    private <T> T call(Supplier<T> invocation) {
+        circuitBreaker.acquirePermission();
+        long start;
+        try {
+            start = limiter.acquire();
+        } catch (RuntimeException e) {
+            // Chưa gọi provider: trả lại lượt của breaker, không tính là lỗi
+            circuitBreaker.releasePermission();
+            throw e;
+        }
+        try {
+            T result = invocation.get();
+            circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            limiter.onSuccess(start);
+            return result;
+        } catch (RuntimeException | Error e) {
+            circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            limiter.onFailure(start, e);
+            throw e;
+        }
+    }
+}
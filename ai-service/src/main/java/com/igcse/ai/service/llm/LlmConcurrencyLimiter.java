@@ -0,0 +1,199 @@
+package com.igcse.ai.service.llm;
+
+import com.igcse.ai.exception.AIServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Giới hạn số lời gọi LLM đồng thời (dùng chung cho chấm tự luận, insight và
+ * lộ trình học), tự điều chỉnh theo AIMD:
+ *
+ * - Thành công, latency dưới ngưỡng và đang dùng gần hết limit: tăng cộng
+ * (+1/limit mỗi lời gọi, tức khoảng +1 mỗi vòng RTT).
+ * - HTTP 429 hoặc timeout: giảm nhân theo backoff-ratio.
+ * - Latency vượt ngưỡng: giảm nhẹ (latency-backoff-ratio).
+ * - Mỗi đợt nghẽn chỉ giảm một lần: tín hiệu của lời gọi bắt đầu trước lần
+ * giảm gần nhất bị bỏ qua, tránh limit sụp về min khi cả loạt request cùng chậm.
+ *
+ * Hết permit thì thread gọi chờ (tối đa acquire-timeout-ms) thay vì bắn thêm
+ * request vào provider đang quá tải. limit cũng quyết định số consumer của
+ * exam.grading.queue (GradingConsumerScaler).
+ *
+ * Metrics: ai_llm_limiter_limit, ai_llm_limiter_inflight,
+ * ai_llm_limiter_throttled_total, ai_llm_limiter_acquire_timeouts_total,
+ * ai_llm_call_duration_seconds{outcome=success|throttled|error}.
+ */
+@Component
+public class LlmConcurrencyLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(LlmConcurrencyLimiter.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final double latencyBackoffRatio;
+    private final long acquireTimeoutNanos;
+
+    // Đọc không khóa cho gauge/scaler; chỉ ghi khi giữ lock
+    private volatile double limit;
+    private volatile int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+
+    private final Counter throttled;
+    private final Counter acquireTimeouts;
+    private final Timer successCalls;
+    private final Timer throttledCalls;
+    private final Timer failedCalls;
+
+    public LlmConcurrencyLimiter(MeterRegistry meterRegistry,
+            @Value("${ai.llm.limiter.initial-limit:10}") int initialLimit,
+            @Value("${ai.llm.limiter.min-limit:1}") int minLimit,
+            @Value("${ai.llm.limiter.max-limit:50}") int maxLimit,
+            @Value("${ai.llm.limiter.latency-threshold-ms:20000}") long latencyThresholdMs,
+            @Value("${ai.llm.limiter.backoff-ratio:0.5}") double backoffRatio,
+            @Value("${ai.llm.limiter.latency-backoff-ratio:0.9}") double latencyBackoffRatio,
+            @Value("${ai.llm.limiter.acquire-timeout-ms:120000}") long acquireTimeoutMs) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid LLM limiter bounds: min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.backoffRatio = backoffRatio;
+        this.latencyBackoffRatio = latencyBackoffRatio;
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+
+        Gauge.builder("ai.llm.limiter.limit", this, LlmConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit of concurrent LLM calls")
+                .register(meterRegistry);
+        Gauge.builder("ai.llm.limiter.inflight", this, LlmConcurrencyLimiter::getInFlight)
+                .description("LLM calls currently in flight")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("ai.llm.limiter.throttled")
+                .description("LLM calls rejected by the provider (HTTP 429) or timed out")
+                .register(meterRegistry);
+        this.acquireTimeouts = Counter.builder("ai.llm.limiter.acquire.timeouts")
+                .description("LLM calls abandoned while waiting for a limiter permit")
+                .register(meterRegistry);
+        this.successCalls = callTimer(meterRegistry, "success");
+        this.throttledCalls = callTimer(meterRegistry, "throttled");
+        this.failedCalls = callTimer(meterRegistry, "error");
+    }
+
+    /**
+     * Chờ tới khi có permit; trả về thời điểm bắt đầu (nanoTime) để truyền lại
+     * cho onSuccess/onFailure
+     */
+    public long acquire() {
+        lock.lock();
+        try {
+            long remaining = acquireTimeoutNanos;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0L) {
+                    acquireTimeouts.increment();
+                    throw new AIServiceException("LLM concurrency limit reached, no permit within "
+                            + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + " ms", "LLM_OVERLOADED");
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            inFlight++;
+            return System.nanoTime();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIServiceException("Interrupted while waiting for an LLM permit", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long startNanos) {
+        long now = System.nanoTime();
+        long latency = now - startNanos;
+        successCalls.record(latency, TimeUnit.NANOSECONDS);
+        lock.lock();
+        try {
+            if (latency > latencyThresholdNanos) {
+                decrease(startNanos, now, latencyBackoffRatio, "latency " + TimeUnit.NANOSECONDS.toMillis(latency)
+                        + " ms");
+            } else if (inFlight >= limit / 2) {
+                // Chỉ nới limit khi đang thực sự dùng tới nó
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lỗi 429/timeout là tín hiệu quá tải; lỗi khác (key sai, parse...) không
+     * đổi limit
+     */
+    public void onFailure(long startNanos, Throwable error) {
+        long now = System.nanoTime();
+        boolean overload = LlmErrors.isOverload(error);
+        (overload ? throttledCalls : failedCalls).record(now - startNanos, TimeUnit.NANOSECONDS);
+        if (overload) {
+            throttled.increment();
+        }
+        lock.lock();
+        try {
+            if (overload) {
+                decrease(startNanos, now, backoffRatio, error.getClass().getSimpleName());
+            }
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int availablePermits() {
+        return Math.max(0, (int) limit - inFlight);
+    }
+
+    private void decrease(long startNanos, long now, double ratio, String reason) {
+        if (startNanos - lastDecreaseNanos < 0L) {
+            return;
+        }
+        double previous = limit;
+        limit = Math.max(minLimit, limit * ratio);
+        lastDecreaseNanos = now;
+        if ((int) previous != (int) limit) {
+            logger.warn("LLM concurrency limit lowered {} -> {} ({})", (int) previous, (int) limit, reason);
+        }
+    }
+
+    private void release() {
+        inFlight--;
+        permitReleased.signalAll();
+    }
+
+    private static Timer callTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("ai.llm.call.duration")
+                .description("Latency of LLM calls behind the concurrency limiter")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
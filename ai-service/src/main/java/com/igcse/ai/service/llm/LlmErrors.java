@@ -0,0 +1,63 @@
+package com.igcse.ai.service.llm;
+
+import com.igcse.ai.exception.AIServiceException;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+
+/**
+ * Phân loại lỗi khi gọi LLM (duyệt cả chuỗi cause)
+ */
+public final class LlmErrors {
+
+    private LlmErrors() {
+    }
+
+    /**
+     * Provider báo quá tải: HTTP 429 hoặc timeout
+     */
+    public static boolean isOverload(Throwable error) {
+        for (Throwable t = error; t != null; t = next(t)) {
+            if (t instanceof OpenAiHttpException http && http.code() == 429) {
+                return true;
+            }
+            if (t instanceof InterruptedIOException || t instanceof HttpTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lỗi tạm thời, gọi lại sau có thể thành công: quá tải, 5xx, lỗi mạng,
+     * circuit breaker đang mở, hết thời gian chờ permit của limiter.
+     * Lỗi 4xx khác (key sai, prompt quá dài...) không phải lỗi tạm thời.
+     */
+    public static boolean isTransient(Throwable error) {
+        if (isOverload(error)) {
+            return true;
+        }
+        for (Throwable t = error; t != null; t = next(t)) {
+            if (t instanceof CallNotPermittedException) {
+                return true;
+            }
+            if (t instanceof OpenAiHttpException http) {
+                return http.code() >= 500;
+            }
+            if (t instanceof AIServiceException ai && "LLM_OVERLOADED".equals(ai.getErrorCode())) {
+                return true;
+            }
+            if (t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable next(Throwable t) {
+        return t.getCause() != t ? t.getCause() : null;
+    }
+}
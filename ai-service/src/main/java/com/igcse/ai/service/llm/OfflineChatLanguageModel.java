@@ -0,0 +1,187 @@
+package com.igcse.ai.service.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ChatLanguageModel giả lập chạy cục bộ (ai.llm.provider=offline) để load test
+ * mà không gọi OpenAI.
+ *
+ * - Trả JSON hợp lệ cho cả 3 AI service (nhận diện qua system prompt). Nội
+ * dung chỉ phụ thuộc prompt: cùng câu trả lời luôn được cùng điểm.
+ * - Latency theo phân phối log-normal dựng từ p50/p99.
+ * - Tỉ lệ lỗi 503 và 429 cấu hình được; vượt max-concurrency lời gọi đồng thời
+ * thì trả 429 như provider thật bị rate limit.
+ * - Token ước lượng 4 ký tự/token để metrics token vẫn có số liệu.
+ */
+public class OfflineChatLanguageModel implements ChatLanguageModel {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // z của phân vị 99 (phân phối chuẩn)
+    private static final double Z_99 = 2.326;
+
+    private static final Pattern ESSAY_BLOCK = Pattern.compile(
+            "Essay #(\\d+)\\R(.*?)(?=\\R\\REssay #\\d+\\R|\\RLanguage:|\\z)", Pattern.DOTALL);
+    private static final Pattern MAX_SCORE = Pattern.compile("Max Score: ([0-9.]+)");
+    private static final Pattern STUDENT_ANSWER = Pattern.compile("Student Answer: (.*?)(?=\\RLanguage:|\\z)",
+            Pattern.DOTALL);
+
+    private final double logMedian;
+    private final double logSigma;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final int maxConcurrency;
+    private final Random random;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param latencyP50Ms   latency trung vị (ms)
+     * @param latencyP99Ms   latency phân vị 99 (ms), không nhỏ hơn p50
+     * @param errorRate      tỉ lệ lời gọi lỗi HTTP 503 (0..1)
+     * @param rateLimitRate  tỉ lệ lời gọi lỗi HTTP 429 (0..1)
+     * @param maxConcurrency số lời gọi đồng thời tối đa trước khi trả 429 (0 = không giới hạn)
+     * @param seed           seed cho latency/lỗi
+     */
+    public OfflineChatLanguageModel(long latencyP50Ms, long latencyP99Ms, double errorRate, double rateLimitRate,
+            int maxConcurrency, long seed) {
+        if (latencyP50Ms < 1 || latencyP99Ms < latencyP50Ms) {
+            throw new IllegalArgumentException("Invalid offline LLM latency: p50=" + latencyP50Ms + ", p99="
+                    + latencyP99Ms);
+        }
+        this.logMedian = Math.log(latencyP50Ms);
+        this.logSigma = Math.log((double) latencyP99Ms / latencyP50Ms) / Z_99;
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+        this.maxConcurrency = maxConcurrency;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        String system = "";
+        String user = "";
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage sm) {
+                system = sm.text();
+            } else if (message instanceof UserMessage um && um.hasSingleText()) {
+                user = um.singleText();
+            }
+        }
+
+        int concurrent = inFlight.incrementAndGet();
+        try {
+            double roll;
+            long latencyMs;
+            synchronized (random) {
+                roll = random.nextDouble();
+                latencyMs = Math.round(Math.exp(logMedian + logSigma * random.nextGaussian()));
+            }
+            if ((maxConcurrency > 0 && concurrent > maxConcurrency) || roll < rateLimitRate) {
+                // Provider từ chối ngay, không tốn thời gian sinh token
+                throw new OpenAiHttpException(429, "Rate limit reached (offline model)");
+            }
+            sleep(latencyMs);
+            if (roll < rateLimitRate + errorRate) {
+                throw new OpenAiHttpException(503, "Service unavailable (offline model)");
+            }
+
+            String json = respond(system, user);
+            int inputTokens = (system.length() + user.length()) / 4;
+            return Response.from(AiMessage.from(json), new TokenUsage(inputTokens, json.length() / 4));
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static String respond(String system, String user) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        if (system.contains("several independent essays")) {
+            List<Map<String, Object>> results = new ArrayList<>();
+            Matcher block = ESSAY_BLOCK.matcher(user);
+            while (block.find()) {
+                Map<String, Object> item = grade(block.group(2));
+                item.remove("confidenceReasoning");
+                Map<String, Object> withId = new LinkedHashMap<>();
+                withId.put("essayId", Integer.parseInt(block.group(1)));
+                withId.putAll(item);
+                results.add(withId);
+            }
+            body.put("results", results);
+        } else if (system.contains("IGCSE examiner")) {
+            body.putAll(grade(user));
+        } else if (system.contains("AIInsightDTO")) {
+            body.put("overallSummary", "Offline summary: steady IGCSE progress with room to improve.");
+            body.put("keyStrengths", List.of("Algebra", "Reading comprehension", "Consistent practice"));
+            body.put("areasForImprovement", List.of("Extended writing", "Exam timing", "Data analysis"));
+            body.put("actionPlan", "Review weak topics weekly and complete one timed past paper.");
+        } else if (system.contains("LearningRecommendationDTO")) {
+            body.put("weakTopics", List.of("Extended writing", "Data analysis"));
+            body.put("strongTopics", List.of("Algebra"));
+            body.put("recommendedResources", List.of("IGCSE past papers", "Topic revision notes", "Teacher Q&A"));
+            body.put("learningPathSuggestion", "Focus on weak topics first, then practise full papers.");
+            List<Map<String, Object>> steps = new ArrayList<>();
+            for (int i = 1; i <= 3; i++) {
+                Map<String, Object> step = new LinkedHashMap<>();
+                step.put("stepNumber", i);
+                step.put("title", "Step " + i);
+                step.put("description", "Offline roadmap step " + i);
+                step.put("duration", "1 week");
+                step.put("activities", List.of("Practice set " + i, "Review mistakes"));
+                steps.add(step);
+            }
+            body.put("roadmapSteps", steps);
+        } else {
+            return "OK";
+        }
+        try {
+            return MAPPER.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize offline LLM response", e);
+        }
+    }
+
+    /**
+     * Điểm xác định theo câu trả lời: làm tròn 0.5, trong [0, maxScore]
+     */
+    private static Map<String, Object> grade(String prompt) {
+        Matcher max = MAX_SCORE.matcher(prompt);
+        double maxScore = max.find() ? Double.parseDouble(max.group(1)) : 10.0;
+        Matcher answer = STUDENT_ANSWER.matcher(prompt);
+        String studentAnswer = answer.find() ? answer.group(1).strip() : prompt;
+
+        int bucket = Math.floorMod(studentAnswer.hashCode(), 101);
+        double score = Math.round(maxScore * bucket / 100.0 * 2) / 2.0;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("score", Math.min(score, maxScore));
+        result.put("feedback", "Offline feedback: " + bucket + "% of the reference key points covered.");
+        result.put("confidenceScore", 0.5 + bucket / 200.0);
+        result.put("confidenceReasoning", "Deterministic offline grading");
+        return result;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Offline LLM call interrupted", e);
+        }
+    }
+}
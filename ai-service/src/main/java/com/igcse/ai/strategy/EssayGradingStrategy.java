@@ -2,21 +2,56 @@ package com.igcse.ai.strategy;
 
 import com.igcse.ai.dto.aiChamDiem.AnswerDTO;
 import com.igcse.ai.dto.aiChamDiem.EssayAnswer;
+import com.igcse.ai.dto.aiChamDiem.EssayBatchGradeResultDTO;
+import com.igcse.ai.dto.aiChamDiem.EssayGradeResultDTO;
 import com.igcse.ai.dto.aiChamDiem.GradingResult;
+import com.igcse.ai.exception.GradingDeferredException;
+import com.igcse.ai.service.aiChamDiem.EssayGradeCache;
+import com.igcse.ai.service.llm.LlmErrors;
 
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.Result;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Component
 public class EssayGradingStrategy implements GradingStrategy {
+    private static final Logger logger = LoggerFactory.getLogger(EssayGradingStrategy.class);
 
     private final com.igcse.ai.service.llm.EssayGradingAiService essayGradingAiService;
     private final com.igcse.ai.service.common.ILanguageService languageService;
+    private final EssayGradeCache essayGradeCache;
+
+    // Token mỗi bài tự luận theo cách gọi (single: 1 bài/request, batch: chia đều cho các bài trong lô)
+    private final DistributionSummary singleTokens;
+    private final DistributionSummary batchTokens;
+    private final Counter batchFallbacks;
 
     public EssayGradingStrategy(
             com.igcse.ai.service.llm.EssayGradingAiService essayGradingAiService,
-            com.igcse.ai.service.common.ILanguageService languageService) {
+            com.igcse.ai.service.common.ILanguageService languageService,
+            EssayGradeCache essayGradeCache,
+            MeterRegistry meterRegistry) {
         this.essayGradingAiService = essayGradingAiService;
         this.languageService = languageService;
+        this.essayGradeCache = essayGradeCache;
+        this.singleTokens = tokenSummary(meterRegistry, "single");
+        this.batchTokens = tokenSummary(meterRegistry, "batch");
+        this.batchFallbacks = Counter.builder("ai.grading.essay.batch.fallbacks")
+                .description("Essays re-graded one by one after a missing or invalid batch result")
+                .register(meterRegistry);
     }
 
     @Override
@@ -28,13 +63,11 @@ public class EssayGradingStrategy implements GradingStrategy {
         EssayAnswer essayAnswer = (EssayAnswer) answer;
 
         // Default values to avoid AI errors
-        String question = essayAnswer.getQuestionText() != null ? essayAnswer.getQuestionText()
-                : "No question provided";
-        String reference = essayAnswer.getReferenceAnswer() != null ? essayAnswer.getReferenceAnswer()
-                : "No reference answer provided";
+        String question = questionOf(essayAnswer);
+        String reference = referenceOf(essayAnswer);
         String studentAnswer = essayAnswer.getStudentAnswer() != null ? essayAnswer.getStudentAnswer()
                 : "No answer provided";
-        double maxScore = essayAnswer.getMaxScore() != null ? essayAnswer.getMaxScore() : 10.0;
+        double maxScore = maxScoreOf(essayAnswer);
         String lang = language != null ? language : "English";
 
         try {
@@ -42,44 +75,36 @@ public class EssayGradingStrategy implements GradingStrategy {
             String aiLanguageName = languageService.getAiLanguageName(lang);
 
             // Kiểm tra câu trả lời trống
-            if (studentAnswer == null || studentAnswer.trim().isEmpty() || "No answer provided".equals(studentAnswer)) {
-                GradingResult gr = new GradingResult(
-                        answer.getQuestionId(),
-                        "ESSAY",
-                        0.0,
-                        maxScore,
-                        "No answer provided.",
-                        false,
-                        1.0, // Confidence 100% là 0 điểm
-                        "LOCAL_RULE_BASED");
-                gr.setTopic(answer.getTopic());
-                gr.setAssessmentObjective(answer.getAssessmentObjective());
-                return gr;
+            if (isBlankAnswer(studentAnswer)) {
+                return emptyAnswerResult(answer, maxScore);
             }
 
-            // Call LangChain4j AI Service
-            com.igcse.ai.dto.aiChamDiem.EssayGradeResultDTO result = essayGradingAiService.gradeEssay(
+            // Call LangChain4j AI Service (qua cache: câu trả lời trùng giữa các học sinh chỉ chấm một lần)
+            EssayGradeResultDTO result = essayGradeCache.getOrGrade(
+                    answer.getQuestionId(),
                     question,
-                    maxScore,
                     reference,
+                    maxScore,
+                    aiLanguageName,
                     studentAnswer,
-                    aiLanguageName);
+                    () -> recordTokens(singleTokens, essayGradingAiService.gradeEssay(
+                            question,
+                            maxScore,
+                            reference,
+                            studentAnswer,
+                            aiLanguageName), 1));
 
             // Output logic
-            GradingResult gr = new GradingResult(
-                    answer.getQuestionId(),
-                    "ESSAY",
-                    result.getScore(),
-                    maxScore,
-                    result.getFeedback(),
-                    result.getScore() >= maxScore * 0.5,
-                    result.getConfidenceScore(),
-                    "AI_GPT4_LANGCHAIN");
-            gr.setTopic(answer.getTopic());
-            gr.setAssessmentObjective(answer.getAssessmentObjective());
-            return gr;
+            return aiResult(answer, maxScore, result);
 
+        } catch (GradingDeferredException e) {
+            throw e;
         } catch (Exception e) {
+            if (LlmErrors.isTransient(e)) {
+                // LLM lỗi tạm thời/mạch đang mở: hoãn cả bài thi, không trả 0 điểm
+                throw new GradingDeferredException("Essay grading deferred for question " + answer.getQuestionId()
+                        + ": " + e.getMessage(), e);
+            }
             e.printStackTrace();
             // Fallback in case of AI failure
             GradingResult gr = new GradingResult(
@@ -97,6 +122,186 @@ public class EssayGradingStrategy implements GradingStrategy {
         }
     }
 
+    /**
+     * Chấm nhiều bài tự luận của cùng một lượt làm trong một lần gọi AI, kết quả
+     * theo đúng thứ tự essays.
+     * Bài trống hoặc đã có trong cache không gửi cho AI. Bài mà AI trả thiếu hoặc
+     * không hợp lệ (id lạ/trùng, điểm ngoài [0, maxScore]) và cả lô khi lỗi
+     * parse được chấm lại từng bài qua grade().
+     * Lỗi tạm thời của LLM ném GradingDeferredException (không chấm lại từng bài).
+     */
+    public List<GradingResult> gradeBatch(List<EssayAnswer> essays, String language) {
+        String lang = language != null ? language : "English";
+        String aiLanguageName = languageService.getAiLanguageName(lang);
+
+        GradingResult[] results = new GradingResult[essays.size()];
+        List<Integer> pending = new ArrayList<>();
+        List<EssayGradeCache.Key> pendingKeys = new ArrayList<>();
+        for (int i = 0; i < essays.size(); i++) {
+            EssayAnswer essay = essays.get(i);
+            double maxScore = maxScoreOf(essay);
+            if (isBlankAnswer(essay.getStudentAnswer())) {
+                results[i] = emptyAnswerResult(essay, maxScore);
+                continue;
+            }
+            EssayGradeCache.Key key = essayGradeCache.keyOf(essay.getQuestionId(), questionOf(essay),
+                    referenceOf(essay), maxScore, aiLanguageName, essay.getStudentAnswer());
+            EssayGradeResultDTO cached = essayGradeCache.getIfPresent(key);
+            if (cached != null) {
+                results[i] = aiResult(essay, maxScore, cached);
+            } else {
+                pending.add(i);
+                pendingKeys.add(key);
+            }
+        }
+
+        // Lô chỉ còn 1 bài: dùng prompt chấm từng bài như cũ
+        if (pending.size() > 1) {
+            Map<Integer, EssayBatchGradeResultDTO.Item> byEssayId = requestBatch(essays, pending, aiLanguageName);
+            for (int j = 0; j < pending.size(); j++) {
+                int i = pending.get(j);
+                EssayAnswer essay = essays.get(i);
+                double maxScore = maxScoreOf(essay);
+                EssayBatchGradeResultDTO.Item item = byEssayId.get(j + 1);
+                if (isValid(item, maxScore)) {
+                    EssayGradeResultDTO result = new EssayGradeResultDTO();
+                    result.setScore(item.getScore());
+                    result.setFeedback(item.getFeedback());
+                    result.setConfidenceScore(item.getConfidenceScore());
+                    essayGradeCache.put(pendingKeys.get(j), result);
+                    results[i] = aiResult(essay, maxScore, result);
+                } else {
+                    batchFallbacks.increment();
+                }
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = grade(essays.get(i), language);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Gọi AI cho các bài pending (đánh số "Essay #1..n" theo thứ tự pending).
+     * Trả về map rỗng nếu lỗi gọi/parse để caller chấm lại từng bài (trừ lỗi
+     * tạm thời của LLM).
+     */
+    private Map<Integer, EssayBatchGradeResultDTO.Item> requestBatch(List<EssayAnswer> essays, List<Integer> pending,
+            String aiLanguageName) {
+        StringBuilder prompt = new StringBuilder();
+        for (int j = 0; j < pending.size(); j++) {
+            EssayAnswer essay = essays.get(pending.get(j));
+            if (j > 0) {
+                prompt.append("\n\n");
+            }
+            prompt.append("Essay #").append(j + 1).append('\n')
+                    .append("Question: ").append(questionOf(essay)).append('\n')
+                    .append("Max Score: ").append(maxScoreOf(essay)).append('\n')
+                    .append("Reference Answer: ").append(referenceOf(essay)).append('\n')
+                    .append("Student Answer: ").append(essay.getStudentAnswer());
+        }
+
+        Map<Integer, EssayBatchGradeResultDTO.Item> byEssayId = new HashMap<>();
+        try {
+            EssayBatchGradeResultDTO response = recordTokens(batchTokens,
+                    essayGradingAiService.gradeEssayBatch(prompt.toString(), pending.size(), aiLanguageName),
+                    pending.size());
+            if (response == null || response.getResults() == null) {
+                logger.warn("Batch essay grading returned no results for {} essays", pending.size());
+                return byEssayId;
+            }
+            Set<Integer> duplicated = new HashSet<>();
+            for (EssayBatchGradeResultDTO.Item item : response.getResults()) {
+                if (item != null && byEssayId.putIfAbsent(item.getEssayId(), item) != null) {
+                    duplicated.add(item.getEssayId());
+                }
+            }
+            // Không biết kết quả nào đúng cho id bị trùng: chấm lại bài đó
+            duplicated.forEach(byEssayId::remove);
+        } catch (Exception e) {
+            if (LlmErrors.isTransient(e)) {
+                throw new GradingDeferredException("Batch essay grading deferred for " + pending.size()
+                        + " essays: " + e.getMessage(), e);
+            }
+            logger.warn("Batch essay grading failed for {} essays, grading one by one: {}", pending.size(),
+                    e.getMessage());
+        }
+        return byEssayId;
+    }
+
+    private static boolean isValid(EssayBatchGradeResultDTO.Item item, double maxScore) {
+        return item != null
+                && Double.isFinite(item.getScore())
+                && item.getScore() >= 0.0
+                && item.getScore() <= maxScore
+                && item.getFeedback() != null
+                && !item.getFeedback().isBlank();
+    }
+
+    private static <T> T recordTokens(DistributionSummary summary, Result<T> result, int essayCount) {
+        TokenUsage usage = result.tokenUsage();
+        if (usage != null && usage.totalTokenCount() != null) {
+            summary.record((double) usage.totalTokenCount() / essayCount);
+        }
+        return result.content();
+    }
+
+    private static DistributionSummary tokenSummary(MeterRegistry meterRegistry, String mode) {
+        return DistributionSummary.builder("ai.grading.essay.tokens")
+                .description("LLM tokens spent per graded essay")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    private static String questionOf(EssayAnswer essay) {
+        return essay.getQuestionText() != null ? essay.getQuestionText() : "No question provided";
+    }
+
+    private static String referenceOf(EssayAnswer essay) {
+        return essay.getReferenceAnswer() != null ? essay.getReferenceAnswer() : "No reference answer provided";
+    }
+
+    private static double maxScoreOf(EssayAnswer essay) {
+        return essay.getMaxScore() != null ? essay.getMaxScore() : 10.0;
+    }
+
+    private static boolean isBlankAnswer(String studentAnswer) {
+        return studentAnswer == null || studentAnswer.trim().isEmpty() || "No answer provided".equals(studentAnswer);
+    }
+
+    private static GradingResult emptyAnswerResult(AnswerDTO answer, double maxScore) {
+        GradingResult gr = new GradingResult(
+                answer.getQuestionId(),
+                "ESSAY",
+                0.0,
+                maxScore,
+                "No answer provided.",
+                false,
+                1.0, // Confidence 100% là 0 điểm
+                "LOCAL_RULE_BASED");
+        gr.setTopic(answer.getTopic());
+        gr.setAssessmentObjective(answer.getAssessmentObjective());
+        return gr;
+    }
+
+    private static GradingResult aiResult(AnswerDTO answer, double maxScore, EssayGradeResultDTO result) {
+        GradingResult gr = new GradingResult(
+                answer.getQuestionId(),
+                "ESSAY",
+                result.getScore(),
+                maxScore,
+                result.getFeedback(),
+                result.getScore() >= maxScore * 0.5,
+                result.getConfidenceScore(),
+                "AI_GPT4_LANGCHAIN");
+        gr.setTopic(answer.getTopic());
+        gr.setAssessmentObjective(answer.getAssessmentObjective());
+        return gr;
+    }
+
     @Override
     public boolean supports(String answerType) {
         return "ESSAY".equalsIgnoreCase(answerType);
@@ -0,0 +1,224 @@
+package com.igcse.ai.benchmark;
+
+import com.igcse.ai.config.RabbitConfig;
+import com.igcse.ai.dto.aiChamDiem.AnswerDTO;
+import com.igcse.ai.dto.aiChamDiem.DetailedGradingResultDTO;
+import com.igcse.ai.dto.aiChamDiem.EssayAnswer;
+import com.igcse.ai.dto.aiChamDiem.ExamAnswersDTO;
+import com.igcse.ai.listener.GradingMessageListener;
+import com.igcse.ai.service.llm.LlmConcurrencyLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark thông lượng chấm bài end-to-end qua RabbitMQ:
+ * exam.grading.exchange → GradingMessageListener → AIService.evaluateExamGetResult
+ * → exam.grading.benchmark.result.queue.
+ *
+ * Nằm trong test sources nên không vào artifact production. Chạy với profile
+ * benchmark và LLM giả lập (không tốn credit OpenAI), cần RabbitMQ + MySQL như
+ * khi chạy thật (nên dùng broker/DB riêng):
+ *
+ * mvn spring-boot:test-run -Dspring-boot.run.profiles=benchmark
+ * -Dspring-boot.run.arguments="--ai.llm.provider=offline --ai.benchmark.rates=2,5,10"
+ *
+ * Request gửi kèm reply-to = exam.grading.benchmark.result.queue nên kết quả
+ * không đi qua exam.grading.result.queue: benchmark không lấy (và ack) kết quả
+ * thật của exam-service. Chấm xong mỗi lần chạy, dòng ai_results và
+ * essay_grade_cache của bài thi giả (exam/question id từ attempt-id-base) bị xóa.
+ *
+ * Mỗi mức tải (bài thi/giây) gửi đều trong duration-seconds rồi chờ nhận đủ kết
+ * quả, in ra: thông lượng, queueing delay (gửi → listener bắt đầu chấm), latency
+ * chấm (listener bắt đầu → xong) và end-to-end, mỗi loại p50/p99.
+ */
+@Component
+@Profile("benchmark")
+public class GradingBenchmarkRunner implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(GradingBenchmarkRunner.class);
+
+    static final String RESULT_QUEUE_NAME = "exam.grading.benchmark.result.queue";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final LlmConcurrencyLimiter limiter;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationContext applicationContext;
+
+    @Value("${ai.benchmark.rates:2,5,10}")
+    private double[] rates;
+
+    @Value("${ai.benchmark.duration-seconds:30}")
+    private int durationSeconds;
+
+    @Value("${ai.benchmark.drain-timeout-seconds:300}")
+    private int drainTimeoutSeconds;
+
+    @Value("${ai.benchmark.essays-per-attempt:4}")
+    private int essaysPerAttempt;
+
+    @Value("${ai.benchmark.attempt-id-base:900000000000}")
+    private long attemptIdBase;
+
+    @Value("${ai.benchmark.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    // attemptId -> thời điểm gửi (epoch ms) của mức tải đang chạy
+    private final Map<Long, Long> sentAt = new ConcurrentHashMap<>();
+    private final List<long[]> samples = new ArrayList<>();
+    private final AtomicInteger received = new AtomicInteger();
+    private long nextAttemptId;
+
+    public GradingBenchmarkRunner(RabbitTemplate rabbitTemplate, LlmConcurrencyLimiter limiter,
+            JdbcTemplate jdbcTemplate, ApplicationContext applicationContext) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.limiter = limiter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        nextAttemptId = attemptIdBase;
+        List<String> report = new ArrayList<>();
+        try {
+            for (double rate : rates) {
+                report.add(runStep(rate));
+            }
+        } finally {
+            cleanUp();
+        }
+
+        logger.info("Grading benchmark ({} essays per attempt, {} s per step):", essaysPerAttempt,
+                durationSeconds);
+        report.forEach(line -> logger.info(line));
+
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    @RabbitListener(queuesToDeclare = @Queue(name = RESULT_QUEUE_NAME, durable = "false", autoDelete = "true"))
+    public void onResult(DetailedGradingResultDTO result,
+            @Header(name = GradingMessageListener.GRADING_STARTED_HEADER, required = false) Long startedAt,
+            @Header(name = GradingMessageListener.GRADING_FINISHED_HEADER, required = false) Long finishedAt) {
+        long now = System.currentTimeMillis();
+        Long sent = result.getAttemptId() != null ? sentAt.remove(result.getAttemptId()) : null;
+        if (sent == null || startedAt == null || finishedAt == null) {
+            return;
+        }
+        synchronized (samples) {
+            samples.add(new long[] { startedAt - sent, finishedAt - startedAt, now - sent });
+        }
+        received.incrementAndGet();
+    }
+
+    private String runStep(double rate) throws InterruptedException {
+        sentAt.clear();
+        synchronized (samples) {
+            samples.clear();
+        }
+        received.set(0);
+
+        int total = Math.max(1, (int) Math.round(rate * durationSeconds));
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        logger.info("Benchmark step: {} attempts at {}/s", total, rate);
+
+        long start = System.nanoTime();
+        long startMillis = System.currentTimeMillis();
+        for (int i = 0; i < total; i++) {
+            long wait = start + i * intervalNanos - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            ExamAnswersDTO attempt = syntheticAttempt(nextAttemptId++);
+            sentAt.put(attempt.getAttemptId(), System.currentTimeMillis());
+            rabbitTemplate.convertAndSend(RabbitConfig.EXCHANGE_NAME, RabbitConfig.ROUTING_KEY, attempt, message -> {
+                message.getMessageProperties().setReplyTo(RESULT_QUEUE_NAME);
+                return message;
+            });
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainTimeoutSeconds);
+        while (received.get() < total && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        double elapsedSeconds = (System.currentTimeMillis() - startMillis) / 1000.0;
+
+        long[][] sorted = new long[3][];
+        synchronized (samples) {
+            for (int k = 0; k < 3; k++) {
+                int column = k;
+                sorted[k] = samples.stream().mapToLong(s -> s[column]).sorted().toArray();
+            }
+        }
+        return String.format(
+                "rate=%.1f/s sent=%d completed=%d throughput=%.2f/s queueDelay p50=%dms p99=%dms"
+                        + " grading p50=%dms p99=%dms e2e p50=%dms p99=%dms llmLimit=%d",
+                rate, total, received.get(), received.get() / elapsedSeconds,
+                percentile(sorted[0], 0.50), percentile(sorted[0], 0.99),
+                percentile(sorted[1], 0.50), percentile(sorted[1], 0.99),
+                percentile(sorted[2], 0.50), percentile(sorted[2], 0.99),
+                limiter.getLimit());
+    }
+
+    /**
+     * Xóa kết quả và cache chấm của bài thi giả để không lẫn vào thống kê thật
+     */
+    private void cleanUp() {
+        int results = jdbcTemplate.update("DELETE FROM ai_results WHERE exam_id = ?", attemptIdBase);
+        int cached = jdbcTemplate.update("DELETE FROM essay_grade_cache WHERE question_id > ? AND question_id <= ?",
+                attemptIdBase, attemptIdBase + essaysPerAttempt);
+        logger.info("Benchmark cleanup: removed {} ai_results and {} essay_grade_cache rows", results, cached);
+    }
+
+    /**
+     * Bài thi giả: câu trả lời tự luận khác nhau giữa các lượt để không trúng
+     * cache chấm tự luận
+     */
+    private ExamAnswersDTO syntheticAttempt(long attemptId) {
+        List<AnswerDTO> answers = new ArrayList<>();
+        long questionId = 1;
+        for (int i = 0; i < essaysPerAttempt; i++, questionId++) {
+            answers.add(new EssayAnswer(attemptIdBase + questionId,
+                    "Benchmark answer " + attemptId + "-" + i
+                            + ": plants convert light energy into chemical energy stored in glucose.",
+                    "Explain how photosynthesis stores energy (" + i + ").",
+                    "Light energy is absorbed by chlorophyll and stored as chemical energy in glucose.",
+                    6.0));
+        }
+
+        ExamAnswersDTO attempt = new ExamAnswersDTO();
+        attempt.setAttemptId(attemptId);
+        attempt.setExamId(attemptIdBase);
+        attempt.setStudentId(attemptIdBase + attemptId % 100);
+        attempt.setLanguage("en");
+        attempt.setAnswers(answers);
+        return attempt;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0L;
+        }
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+}
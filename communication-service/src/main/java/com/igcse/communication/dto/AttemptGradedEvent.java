@@ -0,0 +1,16 @@
+package com.igcse.communication.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AttemptGradedEvent {
+    private Long attemptId;
+    private Long examId;
+    private Long userId;
+    private double totalScore;
+    private String gradingStatus;
+}
@@ -0,0 +1,36 @@
+package com.igcse.communication.service;
+
+import com.igcse.communication.dto.AttemptGradedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Đẩy kết quả chấm bài tới học sinh qua WebSocket (STOMP) ngay khi exam-service
+ * chấm xong, thay cho việc Frontend polling lại cả bài làm.
+ */
+@Service
+@RequiredArgsConstructor
+public class AttemptGradedListener {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @RabbitListener(bindings = @QueueBinding(
+        value = @Queue(value = "notification.attempt.graded.queue", durable = "true"),
+        exchange = @Exchange(value = "exam.notification.exchange", type = "topic"),
+        key = "exam.attempt.graded"
+    ))
+    public void handleAttemptGraded(AttemptGradedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        System.out.println(">>> [RabbitMQ] Bài làm #" + event.getAttemptId() + " đã chấm xong: " + event.getGradingStatus());
+
+        // Frontend subscribe /queue/attempts/{userId} (giống /queue/messages/{userId} của chat)
+        messagingTemplate.convertAndSend("/queue/attempts/" + event.getUserId(), event);
+    }
+}
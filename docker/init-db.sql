@@ -21,7 +21,11 @@ USE ai_db;
 -- - exam_db.questions: Câu hỏi
 --   + question_id: ID câu hỏi
 --   + content: Nội dung câu hỏi
---   + question_type: Loại câu hỏi ('MCQ' = Trắc nghiệm, 'ESSAY' = Tự luận)
+--   + question_type: Loại câu hỏi ('MCQ' = Trắc nghiệm, 'ESSAY' = Tự luận,
+--     'NUMERIC' = Điền số, 'SHORT_ANSWER' = Trả lời ngắn). DB cũ tạo cột dạng ENUM cần chạy:
+--     ALTER TABLE exam_db.questions MODIFY question_type VARCHAR(20);
+--   + numeric_answer / numeric_tolerance / numeric_unit: Đáp án câu NUMERIC
+--   + accepted_answers: Đáp án chấp nhận được của câu SHORT_ANSWER (mỗi dòng một đáp án)
 --   + essay_correct_answer: Đáp án đúng cho câu tự luận (chỉ có khi question_type = 'ESSAY')
 --
 -- - exam_db.exam_answers: Câu trả lời của học sinh
@@ -1,5 +1,6 @@
 package com.igsce.exam_service.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
@@ -11,6 +12,7 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.DefaultJackson2JavaTypeMapper;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -83,10 +85,70 @@ public class RabbitConfig {
         factory.setDefaultRequeueRejected(false);
         return factory;
     }
+
+    // Listener theo lô cho kết quả chấm: gom tối đa batchSize message, hoặc ít hơn
+    // nếu sau receiveTimeout không có thêm message
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${exam.grading.result.batch-size:100}") int batchSize,
+            @Value("${exam.grading.result.receive-timeout-ms:200}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setDefaultRequeueRejected(false);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        return factory;
+    }
     public static final String NOTIFICATION_EXCHANGE = "exam.notification.exchange";
+    public static final String CACHE_INVALIDATION_ROUTING_KEY = "exam.cache.invalidate";
+    // Lượt làm bài đã chấm xong (communication-service đẩy tới học sinh qua WebSocket)
+    public static final String ATTEMPT_GRADED_ROUTING_KEY = "exam.attempt.graded";
+    // Điểm mới của lượt làm (thống kê bài thi trên từng replica)
+    public static final String EXAM_SCORE_ROUTING_KEY = "exam.stats.score";
 
     @Bean
     public TopicExchange notificationExchange() {
         return new TopicExchange(NOTIFICATION_EXCHANGE);
     }
+
+    // Queue riêng cho từng replica để nhận broadcast vô hiệu hóa cache bài thi
+    @Bean
+    public Queue examCacheInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding examCacheInvalidationBinding(Queue examCacheInvalidationQueue, TopicExchange notificationExchange) {
+        return BindingBuilder.bind(examCacheInvalidationQueue).to(notificationExchange)
+                .with(CACHE_INVALIDATION_ROUTING_KEY);
+    }
+
+    // Queue riêng cho từng replica để đánh thức các request long-poll trạng thái chấm
+    @Bean
+    public Queue attemptGradedQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding attemptGradedBinding(Queue attemptGradedQueue, TopicExchange notificationExchange) {
+        return BindingBuilder.bind(attemptGradedQueue).to(notificationExchange)
+                .with(ATTEMPT_GRADED_ROUTING_KEY);
+    }
+
+    // Queue riêng cho từng replica để cập nhật thống kê điểm trong bộ nhớ
+    @Bean
+    public Queue examScoreQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding examScoreBinding(Queue examScoreQueue, TopicExchange notificationExchange) {
+        return BindingBuilder.bind(examScoreQueue).to(notificationExchange)
+                .with(EXAM_SCORE_ROUTING_KEY);
+    }
 }
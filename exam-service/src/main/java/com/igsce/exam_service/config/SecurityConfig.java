@@ -1,7 +1,9 @@
 package com.igsce.exam_service.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -29,8 +31,15 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable()) // Tắt CSRF cho API
                 .cors(cors -> cors.configurationSource(corsConfigurationSource())) // Cấu hình CORS
                 .authorizeHttpRequests(auth -> auth
+                        // Async dispatch của long-poll (DeferredResult): request gốc đã được xác thực
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Cho phép health check không cần token
                         .requestMatchers("/api/exams/health").permitAll()
+                        // Ảnh câu hỏi được thẻ <img> tải trực tiếp (không gửi kèm token);
+                        // URL là SHA-256 của nội dung nên không đoán được
+                        .requestMatchers(HttpMethod.GET, "/api/exams/images/*").permitAll()
+                        // Cho phép Prometheus scrape metrics
+                        .requestMatchers("/actuator/**").permitAll()
                         // Cho phép truy cập Swagger (nếu có)
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**").permitAll()
                         // Các API khác bắt buộc phải có Token
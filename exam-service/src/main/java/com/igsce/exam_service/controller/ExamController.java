@@ -2,15 +2,43 @@ package com.igsce.exam_service.controller;
 
 import com.igsce.exam_service.entity.*;
 import com.igsce.exam_service.enums.GradingStatus;
+import com.igsce.exam_service.enums.QuestionType;
 import com.igsce.exam_service.service.*;
+import com.igsce.exam_service.service.analysis.ItemAnalysisService;
+import com.igsce.exam_service.service.attempt.AttemptPaperService;
+import com.igsce.exam_service.service.attempt.AttemptStatusNotifier;
+import com.igsce.exam_service.service.bank.QuestionBankService;
+import com.igsce.exam_service.service.cache.CachedExam;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.service.export.AttemptColumn;
+import com.igsce.exam_service.service.export.ExportFormat;
+import com.igsce.exam_service.service.export.ExportLayout;
+import com.igsce.exam_service.service.export.GradebookExportService;
+import com.igsce.exam_service.service.importer.QuestionImportFormat;
+import com.igsce.exam_service.service.importer.QuestionImportService;
+import com.igsce.exam_service.service.draft.DraftAnswerService;
+import com.igsce.exam_service.service.proctoring.ProctoringService;
+import com.igsce.exam_service.service.stats.ExamStatisticsService;
 import com.igsce.exam_service.util.SecurityUtils;
 import com.igsce.exam_service.dto.*;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import lombok.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/exams")
@@ -20,6 +48,20 @@ import java.util.Map;
 public class ExamController {
 
     private final ExamService examService;
+    private final DraftAnswerService draftAnswerService;
+    private final ExamStatisticsService examStatisticsService;
+    private final ItemAnalysisService itemAnalysisService;
+    private final AttemptStatusNotifier attemptStatusNotifier;
+    private final GradebookExportService gradebookExportService;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final QuestionImportService questionImportService;
+    private final QuestionBankService questionBankService;
+    private final ProctoringService proctoringService;
+    private final AttemptPaperService attemptPaperService;
+
+    // Timeout async riêng cho export (các endpoint async khác giữ mặc định)
+    @Value("${exam.export.timeout-ms:600000}")
+    private long exportTimeoutMs;
 
     @GetMapping("/health")
     public Map<String, String> health() {
@@ -27,15 +69,74 @@ public class ExamController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Exam>> getExams() {
+    public ResponseEntity<List<ExamSummaryDTO>> getExams() {
         return ResponseEntity.ok(examService.getAllExams());
     }
 
+    /**
+     * Catalog bài thi phân trang (keyset): GET
+     * /api/exams/catalog?afterId=&size=&active=&endsAfter=&endsBefore=
+     * Chi tiết câu hỏi chỉ load khi mở từng bài qua GET /api/exams/{examId}
+     */
+    @GetMapping("/catalog")
+    public ResponseEntity<ExamCatalogPage> getExamCatalog(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endsAfter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endsBefore) {
+        return ResponseEntity.ok(examService.getExamCatalog(afterId, size, active, endsAfter, endsBefore));
+    }
+
     @GetMapping("/{examId}")
     public Exam getExam(@PathVariable Long examId) {
         return examService.getExamById(examId);
     }
 
+    /**
+     * Thống kê điểm của bài thi (histogram, trung bình, percentile, top-K) (TEACHER/ADMIN)
+     * URL: GET /api/exams/{examId}/statistics
+     */
+    @GetMapping("/{examId}/statistics")
+    public ResponseEntity<?> getExamStatistics(@PathVariable Long examId) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        return examStatisticsService.getStatistics(examId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Phân tích câu hỏi cho giáo viên: độ khó (p-value), độ phân biệt
+     * (point-biserial) và tỉ lệ chọn từng phương án (TEACHER/ADMIN)
+     * URL: GET /api/exams/{examId}/item-analysis
+     */
+    @GetMapping("/{examId}/item-analysis")
+    public ResponseEntity<?> getItemAnalysis(@PathVariable Long examId) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        return itemAnalysisService.analyzeExam(examId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Tính lại thống kê item analysis của bài thi từ exam_answers (TEACHER/ADMIN)
+     * URL: POST /api/exams/{examId}/item-analysis/rebuild
+     */
+    @PostMapping("/{examId}/item-analysis/rebuild")
+    public ResponseEntity<?> rebuildItemAnalysis(@PathVariable Long examId) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        if (!itemAnalysisService.rebuildExam(examId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("message", "Item analysis rebuilt"));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteExam(@PathVariable Long id) {
         examService.deleteExam(id);
@@ -47,6 +148,90 @@ public class ExamController {
         return ResponseEntity.ok(examService.getExamAttempt(attemptId));
     }
 
+    /**
+     * Đề thi của lượt làm bài (không kèm đáp án). Bài isStrict: thứ tự câu hỏi và
+     * lựa chọn riêng cho từng lượt làm, cố định qua các lần tải lại trang.
+     * URL: GET /api/exams/attempt/{attemptId}/paper
+     */
+    @GetMapping("/attempt/{attemptId}/paper")
+    public ResponseEntity<AttemptPaperDTO> getAttemptPaper(@PathVariable Long attemptId) {
+        Long userId = SecurityUtils.getCurrentUserId();
+        return attemptPaperService.getPaper(attemptId, userId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Trạng thái chấm của lượt làm bài (long-poll, fallback cho WebSocket).
+     * Nếu gửi kèm `since` (trạng thái client đang thấy), request được giữ lại tối
+     * đa waitMs cho tới khi trạng thái thay đổi. Chỉ chủ lượt làm (người khác nhận 404).
+     * URL: GET /api/exams/attempt/{attemptId}/status?since=PENDING&waitMs=25000
+     */
+    @GetMapping("/attempt/{attemptId}/status")
+    public DeferredResult<ResponseEntity<AttemptStatusDTO>> getAttemptStatus(
+            @PathVariable Long attemptId,
+            @RequestParam(required = false) GradingStatus since,
+            @RequestParam(defaultValue = "0") long waitMs) {
+        return attemptStatusNotifier.awaitChange(attemptId, SecurityUtils.getCurrentUserId(), since, waitMs);
+    }
+
+    /**
+     * Export bảng điểm (stream, không giữ toàn bộ dữ liệu trong bộ nhớ) (TEACHER/ADMIN)
+     * URL: GET /api/exams/{examId}/export?format=csv|xlsx&layout=attempts|matrix|answers
+     * &columns=userId,totalScore
+     *
+     * Chạy async với timeout riêng (exam.export.timeout-ms), ghi thẳng ra
+     * response; quá số export đồng thời thì trả 503.
+     */
+    @GetMapping("/{examId}/export")
+    public WebAsyncTask<ResponseEntity<?>> exportGradebook(
+            @PathVariable Long examId,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "matrix") String layout,
+            @RequestParam(required = false) List<String> columns,
+            HttpServletResponse response) {
+        // Kiểm tra quyền trên thread của request (trước khi chuyển sang async)
+        boolean allowed = SecurityUtils.isTeacherOrAdmin();
+        return new WebAsyncTask<>(exportTimeoutMs, () -> {
+            if (!allowed) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("error", "Teacher or admin role required"));
+            }
+            ExportFormat exportFormat;
+            ExportLayout exportLayout;
+            List<AttemptColumn> attemptColumns;
+            try {
+                exportFormat = ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+                exportLayout = ExportLayout.valueOf(layout.toUpperCase(Locale.ROOT));
+                attemptColumns = AttemptColumn.parse(columns);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+
+            Optional<CachedExam> cachedExam = examDefinitionCache.find(examId);
+            if (cachedExam.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!gradebookExportService.tryAcquireExport()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(Map.of("error", "Too many exports in progress, try again later"));
+            }
+            try {
+                String fileName = "exam-" + examId + "-" + exportLayout.name().toLowerCase(Locale.ROOT) + "."
+                        + exportFormat.getExtension();
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+                response.setContentType(exportFormat.getContentType());
+                gradebookExportService.export(cachedExam.get(), exportFormat, exportLayout, attemptColumns,
+                        response.getOutputStream());
+                response.flushBuffer();
+            } finally {
+                gradebookExportService.releaseExport();
+            }
+            // Đã ghi xong response
+            return null;
+        });
+    }
+
     @GetMapping("/attempts/{examId}")
     public ResponseEntity<List<ExamAttempt>> getAttemptsByExamId(@PathVariable Long examId) {
         return ResponseEntity.ok(examService.getAttemptsByExamId(examId));
@@ -62,10 +247,91 @@ public class ExamController {
         }
     }
 
+    /**
+     * Lịch sử làm bài của học sinh đang đăng nhập (keyset, mới nhất trước): GET
+     * /api/exams/history?size=20&cursorSubmittedAt=&cursorId=
+     * Trang sau dùng nextCursor {submittedAt, attemptId} của trang trước.
+     */
     @GetMapping("/history")
-    public ResponseEntity<List<ExamAttempt>> getHistory() {
+    public ResponseEntity<?> getHistory(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorSubmittedAt,
+            @RequestParam(required = false) Long cursorId,
+            @RequestParam(defaultValue = "20") int size) {
         Long userId = SecurityUtils.getCurrentUserId();
-        return ResponseEntity.ok(examService.getAttemptsByUserId(userId));
+        try {
+            return ResponseEntity.ok(examService.getAttemptHistory(userId, cursorSubmittedAt, cursorId, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Tìm câu hỏi trong ngân hàng (mọi bài thi), không phân biệt dấu, xếp hạng BM25 (TEACHER/ADMIN)
+     * URL: GET /api/exams/questions/search?q=quang hop&type=MCQ&topic=Sinh học&limit=20
+     */
+    @GetMapping("/questions/search")
+    public ResponseEntity<?> searchQuestionBank(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) QuestionType type,
+            @RequestParam(required = false) String topic,
+            @RequestParam(defaultValue = "20") int limit) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        return ResponseEntity.ok(questionBankService.search(q, type, topic, limit));
+    }
+
+    /**
+     * Lấy lại câu hỏi từ ngân hàng vào cuối bài thi (TEACHER/ADMIN)
+     * URL: POST /api/exams/{examId}/questions/from-bank
+     * Body: { "questionIds": [12, 15] }
+     */
+    @PostMapping("/{examId}/questions/from-bank")
+    public ResponseEntity<?> reuseBankQuestions(@PathVariable Long examId, @RequestBody BankReuseRequest request) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        try {
+            return questionBankService.reuseQuestions(examId, request.getQuestionIds())
+                    .<ResponseEntity<?>>map(ids -> ResponseEntity.ok(Map.of("questionIds", ids)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Import câu hỏi hàng loạt vào cuối bài thi (đọc stream, ghi JDBC batch)
+     * URL: POST /api/exams/{examId}/questions/import?format=json|csv&skipInvalid=false
+     * Body: mảng QuestionRequest (hoặc {"questions": [...]}) / file CSV có dòng tiêu đề
+     * Có dòng lỗi và skipInvalid=false: không lưu gì, trả 422 kèm danh sách lỗi
+     * Chỉ TEACHER/ADMIN
+     */
+    @PostMapping("/{examId}/questions/import")
+    public ResponseEntity<?> importQuestions(
+            @PathVariable Long examId,
+            @RequestParam(defaultValue = "json") String format,
+            @RequestParam(defaultValue = "false") boolean skipInvalid,
+            InputStream body) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        QuestionImportFormat importFormat;
+        try {
+            importFormat = QuestionImportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unsupported import format: " + format));
+        }
+
+        try {
+            return questionImportService.importQuestions(examId, importFormat, body, skipInvalid)
+                    .<ResponseEntity<?>>map(result -> ResponseEntity
+                            .status(result.isCommitted() ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY)
+                            .body(result))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @PostMapping("/start")
@@ -85,6 +351,74 @@ public class ExamController {
         return ResponseEntity.ok(examService.submitExam(request.getAttemptId(), request.getAnswers()));
     }
 
+    /**
+     * Autosave bản nháp khi đang làm bài (chỉ ghi vào bộ đệm, flush định kỳ)
+     * URL: POST /api/exams/draft  body: { attemptId, answers: [...] }
+     */
+    @PostMapping("/draft")
+    public ResponseEntity<?> saveDraft(@RequestBody SubmitExamRequest request) {
+        Long userId = SecurityUtils.getCurrentUserId();
+        return switch (draftAnswerService.saveDraft(request.getAttemptId(), userId, request.getAnswers())) {
+            case ACCEPTED -> ResponseEntity.noContent().build();
+            case ATTEMPT_CLOSED -> ResponseEntity.status(409).body(Map.of("message", "Bài làm đã nộp hoặc không tồn tại"));
+            case TOO_LARGE -> ResponseEntity.status(413).body(Map.of("message", "Câu trả lời quá dài"));
+            case BUFFER_FULL -> ResponseEntity.status(503).header("Retry-After", "1").build();
+        };
+    }
+
+    /**
+     * Lấy bản nháp mới nhất để khôi phục bài đang làm (vd: sau khi tải lại trang)
+     */
+    @GetMapping("/draft/{attemptId}")
+    public ResponseEntity<List<StudentAnswerDTO>> getDraft(@PathVariable Long attemptId) {
+        Long userId = SecurityUtils.getCurrentUserId();
+        return draftAnswerService.getDraft(attemptId, userId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Nhận lô sự kiện giám sát thi (chuyển tab, mất focus, dán...) của bài thi isStrict
+     * URL: POST /api/exams/attempt/{attemptId}/proctoring
+     * Body: { events: [{ type: "TAB_HIDDEN", occurredAt: 1760000000000 }, ...] }
+     */
+    @PostMapping("/attempt/{attemptId}/proctoring")
+    public ResponseEntity<?> recordProctoringEvents(@PathVariable Long attemptId,
+            @RequestBody ProctoringEventBatch request) {
+        Long userId = SecurityUtils.getCurrentUserId();
+        return switch (proctoringService.record(attemptId, userId, request.getEvents())) {
+            case ACCEPTED -> ResponseEntity.noContent().build();
+            case ATTEMPT_CLOSED -> ResponseEntity.status(409).body(Map.of("message", "Bài làm đã nộp hoặc không tồn tại"));
+            case NOT_STRICT -> ResponseEntity.badRequest().body(Map.of("message", "Bài thi không bật chế độ giám sát"));
+            case TOO_MANY_EVENTS -> ResponseEntity.status(413).body(Map.of("message", "Quá nhiều sự kiện trong một lần gửi"));
+            case BUFFER_FULL -> ResponseEntity.status(503).header("Retry-After", "1").build();
+        };
+    }
+
+    /**
+     * Tổng hợp số lần vi phạm theo từng lượt làm bài (TEACHER/ADMIN)
+     * URL: GET /api/exams/{examId}/proctoring/summary
+     */
+    @GetMapping("/{examId}/proctoring/summary")
+    public ResponseEntity<?> getProctoringSummary(@PathVariable Long examId) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        return ResponseEntity.ok(proctoringService.getSummary(examId));
+    }
+
+    /**
+     * Log sự kiện giám sát chi tiết của một lượt làm bài (TEACHER/ADMIN)
+     * URL: GET /api/exams/attempt/{attemptId}/proctoring/events
+     */
+    @GetMapping("/attempt/{attemptId}/proctoring/events")
+    public ResponseEntity<?> getProctoringEvents(@PathVariable Long attemptId) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        return ResponseEntity.ok(proctoringService.getEvents(attemptId));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<?> updateExam(@PathVariable Long id, @RequestBody CreateExamRequest request) {
         examService.updateExam(id, request);
@@ -128,4 +462,21 @@ public class ExamController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * API chấm tay nhiều câu (nhiều học sinh) trong một request: cập nhật theo lô,
+     * mỗi lượt làm bài chỉ tính lại tổng điểm một lần (TEACHER/ADMIN)
+     * URL: POST /api/exams/grading/bulk-update
+     */
+    @PostMapping("/grading/bulk-update")
+    public ResponseEntity<?> bulkUpdateManualGrades(@RequestBody BulkGradingRequest request) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Teacher or admin role required"));
+        }
+        try {
+            return ResponseEntity.ok(examService.bulkUpdateManualGrades(request.getItems()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.igsce.exam_service.controller;
+
+import com.igsce.exam_service.service.storage.BlobStore;
+import com.igsce.exam_service.service.storage.QuestionImageMigrationJob;
+import com.igsce.exam_service.service.storage.QuestionImageService;
+import com.igsce.exam_service.util.SecurityUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/exams/images")
+@RequiredArgsConstructor
+public class QuestionImageController {
+
+    private final BlobStore blobStore;
+    private final QuestionImageMigrationJob migrationJob;
+
+    /**
+     * Phục vụ ảnh câu hỏi theo hash. Nội dung không bao giờ đổi theo hash nên
+     * ETag mạnh = hash và Cache-Control: immutable. Header Range được Spring xử
+     * lý tự động (206 Partial Content) vì body là Resource.
+     */
+    @GetMapping("/{hash}")
+    public ResponseEntity<Resource> getImage(@PathVariable String hash, WebRequest request) throws IOException {
+        String etag = "\"" + hash + "\"";
+        if (BlobStore.isValidHash(hash) && request.checkNotModified(etag)) {
+            return null; // 304 Not Modified
+        }
+
+        Optional<Resource> resource = blobStore.open(hash);
+        if (resource.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .contentType(sniff(resource.get()))
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header("X-Content-Type-Options", "nosniff")
+                .body(resource.get());
+    }
+
+    /**
+     * Chuyển ảnh Base64 cũ trong DB sang blob store (TEACHER/ADMIN)
+     * URL: POST /api/exams/images/migrate?batchSize=50
+     */
+    @PostMapping("/migrate")
+    public ResponseEntity<?> migrateInlineImages(@RequestParam(defaultValue = "0") int batchSize) {
+        if (!SecurityUtils.isTeacherOrAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "Teacher or admin role required"));
+        }
+        try {
+            return ResponseEntity.ok(migrationJob.run(batchSize));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    private MediaType sniff(Resource resource) throws IOException {
+        byte[] header = new byte[12];
+        try (InputStream in = resource.getInputStream()) {
+            int read = in.readNBytes(header, 0, header.length);
+            return QuestionImageService.sniffMediaType(header, read);
+        }
+    }
+}
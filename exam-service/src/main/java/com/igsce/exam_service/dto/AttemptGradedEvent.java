@@ -0,0 +1,21 @@
+package com.igsce.exam_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sự kiện một lượt làm bài vừa được chấm xong (AI chấm hoặc giáo viên chấm lại).
+ * communication-service đẩy sự kiện này tới học sinh qua WebSocket, các replica
+ * exam-service dùng để trả lời các request long-poll trạng thái.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AttemptGradedEvent {
+    private Long attemptId;
+    private Long examId;
+    private Long userId;
+    private double totalScore;
+    private String gradingStatus; // AI_GRADED hoặc COMPLETED
+}
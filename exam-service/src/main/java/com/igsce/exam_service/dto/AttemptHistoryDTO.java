@@ -0,0 +1,35 @@
+package com.igsce.exam_service.dto;
+
+import com.igsce.exam_service.enums.GradingStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng lịch sử làm bài của học sinh (không kèm Exam/câu trả lời).
+ * Các cột lấy từ idx_attempts_user_history, riêng examTitle join theo PK exams.
+ */
+@Data
+@NoArgsConstructor
+public class AttemptHistoryDTO {
+    private Long attemptId;
+    private Long examId;
+    private String examTitle;
+    private int attemptNumber;
+    private LocalDateTime submittedAt;
+    private double totalScore;
+    private GradingStatus gradingStatus;
+
+    // Dùng cho JPQL constructor expression
+    public AttemptHistoryDTO(Long attemptId, Long examId, String examTitle, Integer attemptNumber,
+            LocalDateTime submittedAt, Double totalScore, GradingStatus gradingStatus) {
+        this.attemptId = attemptId;
+        this.examId = examId;
+        this.examTitle = examTitle;
+        this.attemptNumber = attemptNumber != null ? attemptNumber : 1;
+        this.submittedAt = submittedAt;
+        this.totalScore = totalScore != null ? totalScore : 0.0;
+        this.gradingStatus = gradingStatus;
+    }
+}
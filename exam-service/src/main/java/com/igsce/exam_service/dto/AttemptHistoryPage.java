@@ -0,0 +1,30 @@
+package com.igsce.exam_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Một trang lịch sử làm bài (keyset pagination theo submittedAt, attemptId
+ * giảm dần). inProgress (các lượt chưa nộp) chỉ có ở trang đầu.
+ * nextCursor = null khi đã hết dữ liệu.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttemptHistoryPage {
+    private List<AttemptHistoryDTO> inProgress;
+    private List<AttemptHistoryDTO> items;
+    private Cursor nextCursor;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Cursor {
+        private LocalDateTime submittedAt;
+        private Long attemptId;
+    }
+}
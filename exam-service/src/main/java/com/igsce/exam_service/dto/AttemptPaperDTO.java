@@ -0,0 +1,52 @@
+package com.igsce.exam_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.igsce.exam_service.enums.QuestionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Đề thi phát cho một lượt làm bài: không kèm đáp án, câu hỏi và lựa chọn
+ * theo thứ tự riêng của lượt làm (xem AttemptPaperService)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttemptPaperDTO {
+    private Long attemptId;
+    private Long examId;
+    private String title;
+    private int duration;
+
+    @JsonProperty("isStrict")
+    private boolean strict;
+
+    private LocalDateTime deadline;
+    private boolean submitted;
+    private List<PaperQuestion> questions;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PaperQuestion {
+        private Long questionId;
+        private String content;
+        private double score;
+        private QuestionType questionType;
+        private String image;
+        private String numericUnit;
+        private List<PaperOption> options;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PaperOption {
+        private Long optionId;
+        private String content;
+    }
+}
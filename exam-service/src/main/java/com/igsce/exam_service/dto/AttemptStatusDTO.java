@@ -0,0 +1,18 @@
+package com.igsce.exam_service.dto;
+
+import com.igsce.exam_service.enums.GradingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Trạng thái chấm của một lượt làm bài (không kèm câu trả lời/câu hỏi)
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AttemptStatusDTO {
+    private Long attemptId;
+    private GradingStatus gradingStatus;
+    private double totalScore;
+}
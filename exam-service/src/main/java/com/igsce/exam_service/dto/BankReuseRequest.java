@@ -0,0 +1,13 @@
+package com.igsce.exam_service.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Lấy lại câu hỏi từ ngân hàng vào bài thi (theo đúng thứ tự gửi lên)
+ */
+@Data
+public class BankReuseRequest {
+    private List<Long> questionIds;
+}
@@ -0,0 +1,13 @@
+package com.igsce.exam_service.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Chấm tay nhiều câu trả lời (có thể thuộc nhiều lượt làm bài) trong một request
+ */
+@Data
+public class BulkGradingRequest {
+    private List<ManualGradingRequest> items;
+}
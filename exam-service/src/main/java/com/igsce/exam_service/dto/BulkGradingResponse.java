@@ -0,0 +1,36 @@
+package com.igsce.exam_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả chấm tay theo lô: trạng thái của từng item theo đúng thứ tự gửi lên
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkGradingResponse {
+    private int updatedCount;
+    private int failedCount;
+    private int attemptCount; // Số lượt làm bài được tính lại tổng điểm
+    private List<ItemResult> items;
+
+    public enum Outcome {
+        UPDATED,
+        NOT_FOUND,      // Không có câu trả lời answerId thuộc lượt làm attemptId
+        INVALID_SCORE,  // Thiếu điểm, điểm âm hoặc vượt điểm tối đa của câu
+        DUPLICATE       // answerId lặp lại trong request (chỉ item cuối được áp dụng)
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private Long attemptId;
+        private Long answerId;
+        private Outcome outcome;
+    }
+}
@@ -15,6 +15,7 @@ public class CreateExamRequest {
     private String description;
     private int duration;
     private int maxAttempts;
+    private LocalDateTime startTime;
     private LocalDateTime endTime;
 
     // Field này quan trọng để set trạng thái bài thi (Frontend có gửi lên)
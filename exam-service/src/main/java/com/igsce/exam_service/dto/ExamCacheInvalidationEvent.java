@@ -0,0 +1,17 @@
+package com.igsce.exam_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Message broadcast giữa các replica exam-service để vô hiệu hóa cache bài thi
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExamCacheInvalidationEvent {
+    private Long examId;
+    private long revision;
+    private String originNodeId; // Replica đã phát ra message (bỏ qua message của chính mình)
+}
@@ -0,0 +1,19 @@
+package com.igsce.exam_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Một trang của catalog bài thi (keyset pagination theo examId).
+ * nextCursor = null khi đã hết dữ liệu.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExamCatalogPage {
+    private List<ExamSummaryDTO> items;
+    private Long nextCursor;
+}
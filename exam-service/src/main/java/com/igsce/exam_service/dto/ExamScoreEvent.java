@@ -0,0 +1,22 @@
+package com.igsce.exam_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Điểm mới của một lượt làm, broadcast (qua outbox) cho mọi replica
+ * exam-service để thống kê bài thi trong bộ nhớ không bị lệch giữa các replica
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExamScoreEvent {
+    private Long examId;
+    private Long attemptId;
+    private Long userId;
+    private double totalScore;
+    // Phiên bản điểm của attempt (exam_attempts.score_version): outbox không giữ thứ tự
+    // giữa các message nên replica bỏ sự kiện có phiên bản không mới hơn bản đang giữ
+    private long scoreVersion;
+}
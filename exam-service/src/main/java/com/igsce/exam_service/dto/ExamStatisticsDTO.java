@@ -0,0 +1,47 @@
+package com.igsce.exam_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thống kê điểm của một bài thi (chỉ tính các lượt đã nộp).
+ * Histogram chia theo % điểm tối đa, percentile được ước lượng từ histogram.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExamStatisticsDTO {
+    private Long examId;
+    private long attemptCount;
+    private double maxScore;
+    private double mean;
+    private double stdDev;
+    private Double min;
+    private Double max;
+    private Map<String, Double> percentiles;
+    private List<HistogramBin> histogram;
+    private List<LeaderboardEntry> leaderboard;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HistogramBin {
+        private double fromScore;
+        private double toScore;
+        private long count;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LeaderboardEntry {
+        private int rank;
+        private Long attemptId;
+        private Long userId;
+        private double score;
+    }
+}
@@ -0,0 +1,47 @@
+package com.igsce.exam_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Thông tin tóm tắt của bài thi cho trang danh sách (không kèm câu hỏi/ảnh).
+ * questionCount và totalScore được tính bằng aggregate query.
+ */
+@Data
+@NoArgsConstructor
+public class ExamSummaryDTO {
+    private Long examId;
+    private String title;
+    private String description;
+    private int duration;
+    private LocalDateTime endTime;
+
+    @JsonProperty("isActive")
+    private boolean isActive;
+
+    @JsonProperty("isStrict")
+    private Boolean isStrict;
+
+    private int maxAttempts;
+    private long questionCount;
+    private double totalScore;
+
+    // Dùng cho JPQL constructor expression
+    public ExamSummaryDTO(Long examId, String title, String description, Integer duration,
+            LocalDateTime endTime, Boolean isActive, Boolean isStrict, Integer maxAttempts,
+            Long questionCount, Double totalScore) {
+        this.examId = examId;
+        this.title = title;
+        this.description = description;
+        this.duration = duration != null ? duration : 0;
+        this.endTime = endTime;
+        this.isActive = Boolean.TRUE.equals(isActive);
+        this.isStrict = isStrict != null ? isStrict : false;
+        this.maxAttempts = maxAttempts != null ? maxAttempts : 1;
+        this.questionCount = questionCount != null ? questionCount : 0;
+        this.totalScore = totalScore != null ? totalScore : 0.0;
+    }
+}
@@ -18,4 +18,7 @@ public class GradingResultCallbackDTO {
     private String overallFeedback;
 
     private Double confidence;
+
+    // Thời điểm AI chấm (epoch ms) - phiên bản kết quả, dùng để bỏ kết quả cũ/gửi lại
+    private Long gradedAt;
 }
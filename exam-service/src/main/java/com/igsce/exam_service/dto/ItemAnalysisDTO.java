@@ -0,0 +1,43 @@
+package com.igsce.exam_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.igsce.exam_service.enums.QuestionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Phân tích một câu hỏi:
+ * - pValue: độ khó = điểm trung bình / điểm tối đa (MCQ: tỉ lệ trả lời đúng)
+ * - discrimination: hệ số tương quan point-biserial giữa điểm câu và tổng điểm
+ * (null nếu chưa đủ dữ liệu hoặc phương sai bằng 0)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemAnalysisDTO {
+    private Long questionId;
+    private int orderIndex;
+    private QuestionType questionType;
+    private String content;
+    private long responses;
+    private Double pValue;
+    private Double discrimination;
+    private List<OptionStats> options;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OptionStats {
+        private Long optionId;
+        private String content;
+
+        @JsonProperty("isCorrect")
+        private boolean isCorrect;
+
+        private long selections;
+        private double share; // Tỉ lệ chọn trên tổng số lượt trả lời câu này
+    }
+}
@@ -0,0 +1,24 @@
+package com.igsce.exam_service.dto;
+
+import com.igsce.exam_service.enums.ProctoringEventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Lô sự kiện giám sát thi do trình duyệt gom lại và gửi một lần
+ */
+@Data
+public class ProctoringEventBatch {
+    private List<Event> events;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Event {
+        private ProctoringEventType type;
+        private Long occurredAt; // Epoch millis theo đồng hồ client (server kẹp lại nếu lệch quá xa)
+    }
+}
@@ -0,0 +1,23 @@
+package com.igsce.exam_service.dto;
+
+import com.igsce.exam_service.enums.ProctoringEventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Số lần vi phạm theo từng loại của một lượt làm bài (bài thi isStrict)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProctoringSummaryDTO {
+    private Long attemptId;
+    private Long userId;
+    private Map<ProctoringEventType, Long> counts;
+    private long totalViolations;
+    private LocalDateTime lastEventAt;
+}
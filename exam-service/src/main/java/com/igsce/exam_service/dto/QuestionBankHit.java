@@ -0,0 +1,23 @@
+package com.igsce.exam_service.dto;
+
+import com.igsce.exam_service.enums.QuestionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một kết quả tìm kiếm trong ngân hàng câu hỏi (GET /api/exams/questions/search)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuestionBankHit {
+    private Long questionId;
+    private Long examId; // Bài thi chứa câu gốc
+    private String content;
+    private QuestionType questionType;
+    private String topic;
+    private double score;
+    private String image; // URL ảnh trong blob store (ảnh inline chưa migrate không trả về)
+    private float relevance; // Điểm BM25 (0 khi truy vấn rỗng)
+}
@@ -0,0 +1,31 @@
+package com.igsce.exam_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả import ngân hàng câu hỏi. Mặc định import là all-or-nothing: chỉ
+ * cần một dòng lỗi thì không câu nào được lưu (committed = false).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuestionImportResponse {
+    private int importedCount;
+    private int rejectedCount;
+    private boolean committed;
+    private long elapsedMs;
+    private List<RowError> errors; // Tối đa QuestionImportService.MAX_REPORTED_ERRORS dòng
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        // JSON: vị trí trong mảng (từ 1); CSV: số thứ tự bản ghi, dòng tiêu đề là 1
+        private int row;
+        private String message;
+    }
+}
@@ -12,15 +12,26 @@ public class QuestionRequest {
     private Double score;
     private Integer orderIndex;
 
-    // Enum: MCQ hoặc ESSAY
+    // Enum: MCQ, ESSAY, NUMERIC hoặc SHORT_ANSWER
     private QuestionType questionType;
 
+    // Chủ đề (tùy chọn), dùng để lọc trong ngân hàng câu hỏi
+    private String topic;
+
     // Field chứa chuỗi Base64 của ảnh
     private String image;
 
     // Đáp án tham khảo cho câu tự luận (chỉ dùng cho ESSAY)
     private String essayCorrectAnswer;
 
+    // Đáp án chấm tự động cho NUMERIC
+    private Double numericAnswer;
+    private Double numericTolerance;
+    private String numericUnit;
+
+    // Đáp án chấp nhận được cho SHORT_ANSWER (mỗi dòng một đáp án)
+    private String acceptedAnswers;
+
     // Danh sách các lựa chọn (chỉ dùng cho MCQ)
     private List<OptionRequest> options;
 }
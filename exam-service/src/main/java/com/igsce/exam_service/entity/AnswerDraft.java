@@ -0,0 +1,40 @@
+package com.igsce.exam_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Bản nháp câu trả lời (autosave) của một attempt đang làm.
+ * Mỗi (attemptId, questionId) chỉ giữ bản mới nhất; bị xóa khi nộp bài.
+ * Ghi/đọc qua DraftAnswerStore (JDBC batch upsert).
+ */
+@Entity
+@Table(name = "answer_drafts")
+@IdClass(AnswerDraft.Key.class)
+@Data
+public class AnswerDraft {
+
+    @Id
+    private Long attemptId;
+
+    @Id
+    private Long questionId;
+
+    private Long selectedOptionId;
+
+    @Column(columnDefinition = "TEXT")
+    private String textAnswer;
+
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long attemptId;
+        private Long questionId;
+    }
+}
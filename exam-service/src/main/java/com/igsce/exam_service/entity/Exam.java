@@ -25,6 +25,9 @@ public class Exam {
     private String description;
     private int duration;
 
+    // Thời điểm mở bài thi (null = mở ngay); dùng để làm nóng cache trước giờ thi
+    private LocalDateTime startTime;
+
     private LocalDateTime endTime;
 
     @JsonProperty("isActive")
@@ -36,7 +39,11 @@ public class Exam {
 
     private int maxAttempts = 1; // Số lần làm bài tối đa, mặc định là 1
 
-    @OneToMany(mappedBy = "exam", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    // Tăng mỗi lần sửa/xóa bài thi, dùng để vô hiệu hóa cache giữa các replica
+    private long revision;
+
+    // LAZY: câu hỏi chỉ được load khi mở chi tiết bài thi (qua ExamDefinitionCache)
+    @OneToMany(mappedBy = "exam", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference 
     private List<Question> questions = new ArrayList<>();
 
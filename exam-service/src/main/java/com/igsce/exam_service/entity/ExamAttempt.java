@@ -5,13 +5,22 @@ import lombok.*;
 
 import java.util.*;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.igsce.exam_service.enums.GradingStatus;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "exam_attempts")
+@Table(name = "exam_attempts", uniqueConstraints = {
+        // Mỗi (bài thi, học sinh) chỉ có một lượt làm với mỗi số thứ tự
+        @UniqueConstraint(name = "uk_attempt_exam_user_number", columnNames = { "exam_id", "user_id", "attempt_number" })
+}, indexes = {
+        // Covering index cho lịch sử làm bài (GET /api/exams/history): keyset theo
+        // (submitted_at, attempt_id) của từng học sinh, không phải đọc dòng của bảng
+        @Index(name = "idx_attempts_user_history", columnList = "user_id, submitted_at, attempt_id, exam_id, "
+                + "attempt_number, total_score, grading_status")
+})
 @Data
 public class ExamAttempt {
 
@@ -20,11 +29,23 @@ public class ExamAttempt {
     private Long attemptId;
 
     private Long userId;
+    private Integer attemptNumber; // Lượt làm thứ mấy của học sinh trong bài thi (1..maxAttempts)
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private LocalDateTime submittedAt; // Thời điểm nộp bài
+    private LocalDateTime deadline; // Hạn nộp bài phía server (null = không giới hạn)
     private double totalScore;
 
+    // Phiên bản điểm: tăng mỗi lần total_score được tính lại, để thống kê (ExamScoreEvent)
+    // bỏ qua sự kiện điểm cũ đến muộn
+    @JsonIgnore
+    private long scoreVersion;
+
+    // Seed xáo thứ tự câu hỏi/lựa chọn của bài isStrict (null = theo orderIndex).
+    // Thứ tự được tính lại từ seed mỗi lần phát đề (AttemptPaperService), không lưu hoán vị.
+    @JsonIgnore
+    private Long shuffleSeed;
+
     @Enumerated(EnumType.STRING)
     private GradingStatus gradingStatus = GradingStatus.PENDING;
 
@@ -55,6 +76,7 @@ public class ExamAttempt {
     }
 
     public void recalculateTotalScore() {
+        this.scoreVersion++;
         if (this.answers == null) {
             this.totalScore = 0;
             return;
@@ -0,0 +1,37 @@
+package com.igsce.exam_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Sổ ghi các kết quả AI đã áp dụng, theo (attemptId, questionId).
+ * resultVersion là gradedAt của kết quả đã áp dụng: message gửi lại (cùng phiên bản)
+ * bị bỏ qua, kết quả chấm lại (phiên bản mới hơn) được áp dụng đè lên.
+ */
+@Entity
+@Table(name = "grading_result_ledger")
+@IdClass(GradingResultLedger.Key.class)
+@Data
+public class GradingResultLedger {
+
+    @Id
+    private Long attemptId;
+
+    @Id
+    private Long questionId;
+
+    private Long resultVersion;
+
+    private LocalDateTime processedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long attemptId;
+        private Long questionId;
+    }
+}
@@ -0,0 +1,36 @@
+package com.igsce.exam_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Message chờ gửi sang RabbitMQ (transactional outbox).
+ * Được ghi cùng transaction với thay đổi nghiệp vụ, OutboxRelay gửi đi rồi xóa.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Data
+@NoArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String exchange;
+
+    @Column(nullable = false)
+    private String routingKey;
+
+    // Header __TypeId__ do Jackson2JsonMessageConverter sinh ra
+    private String typeId;
+
+    @Column(columnDefinition = "LONGTEXT", nullable = false)
+    private String payload;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
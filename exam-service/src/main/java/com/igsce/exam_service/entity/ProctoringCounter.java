@@ -0,0 +1,48 @@
+package com.igsce.exam_service.entity;
+
+import com.igsce.exam_service.enums.ProctoringEventType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Bộ đếm vi phạm theo (attempt, loại sự kiện), cộng dồn mỗi lần flush để giáo
+ * viên xem tổng hợp mà không phải quét log sự kiện.
+ * Ghi/đọc qua ProctoringStore (JDBC batch upsert).
+ */
+@Entity
+@Table(name = "proctoring_counters", indexes = @Index(name = "idx_proctoring_counters_exam", columnList = "exam_id"))
+@IdClass(ProctoringCounter.Key.class)
+@Data
+public class ProctoringCounter {
+
+    @Id
+    private Long attemptId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(length = 20)
+    private ProctoringEventType eventType;
+
+    @Column(name = "exam_id")
+    private Long examId;
+
+    private Long userId;
+
+    private long eventCount;
+
+    private LocalDateTime lastEventAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long attemptId;
+        private ProctoringEventType eventType;
+    }
+}
@@ -0,0 +1,33 @@
+package com.igsce.exam_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Log sự kiện giám sát thi dạng gọn: mỗi lần flush ghi một dòng cho mỗi
+ * attempt, chứa toàn bộ sự kiện của lần đó (mỗi dòng "epochMillis TYPE").
+ * Ghi/đọc qua ProctoringStore.
+ */
+@Entity
+@Table(name = "proctoring_event_chunks", indexes = @Index(name = "idx_proctoring_chunks_attempt", columnList = "attempt_id"))
+@Data
+public class ProctoringEventChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long chunkId;
+
+    @Column(name = "attempt_id")
+    private Long attemptId;
+
+    private int eventCount;
+
+    private LocalDateTime firstEventAt;
+
+    private LocalDateTime lastEventAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String events;
+}
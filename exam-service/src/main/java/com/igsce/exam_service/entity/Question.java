@@ -1,15 +1,19 @@
 package com.igsce.exam_service.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import lombok.*;
 import java.util.List;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.igsce.exam_service.enums.*;
 import java.util.ArrayList;
 
 @Entity
-@Table(name = "questions")
+@Table(name = "questions", indexes = @Index(name = "idx_questions_source", columnList = "source_question_id"))
 @Data
 public class Question {
 
@@ -23,15 +27,45 @@ public class Question {
     private double score;
     private int orderIndex;
 
+    // Lưu dạng VARCHAR thay vì kiểu ENUM của MySQL (xem docker/init-db.sql)
     @Enumerated(EnumType.STRING)
-    private QuestionType questionType; // MCQ hoặc ESSAY
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(length = 20)
+    private QuestionType questionType; // MCQ, ESSAY, NUMERIC hoặc SHORT_ANSWER
+
+    // Chủ đề để lọc khi tìm trong ngân hàng câu hỏi (vd: "Quang hợp")
+    @Column(length = 100)
+    private String topic;
+
+    // Câu gốc trong ngân hàng nếu câu này được lấy lại từ bài thi khác
+    // (null = câu gốc, được đưa vào chỉ mục tìm kiếm)
+    @Column(name = "source_question_id")
+    private Long sourceQuestionId;
 
     // Chỉ dùng cho Tự luận (Đáp án tham khảo cho giáo viên)
     @Column(columnDefinition = "TEXT")
     private String essayCorrectAnswer;
 
+    // Chỉ dùng cho NUMERIC: đáp án, sai số tuyệt đối cho phép và đơn vị (vd: "m/s")
+    private Double numericAnswer;
+    private Double numericTolerance;
+
+    @Column(length = 32)
+    private String numericUnit;
+
+    // Chỉ dùng cho SHORT_ANSWER: mỗi dòng một đáp án chấp nhận được
+    // (xem ShortAnswerMatcher: "kw:" = từ khóa, "/.../" = regex)
+    @Column(columnDefinition = "TEXT")
+    private String acceptedAnswers;
+
+    // Ảnh Base64 inline kiểu cũ - chỉ còn ở dữ liệu chưa migrate sang blob store
     @Column(name = "image", columnDefinition = "LONGTEXT")
-    private String image;
+    @JsonIgnore
+    private String inlineImage;
+
+    // SHA-256 của ảnh trong blob store (xem QuestionImageService)
+    @Column(name = "image_hash", length = 64)
+    private String imageHash;
 
     @ManyToOne
     @JoinColumn(name = "exam_id")
@@ -42,7 +76,23 @@ public class Question {
     @JsonManagedReference
     private List<QuestionOption> options = new ArrayList<>();
 
+    // Không serialize bài làm của học sinh kèm đề thi
     @OneToMany(mappedBy = "question", cascade = CascadeType.ALL, orphanRemoval = true)
+    @JsonIgnore
     private List<Answer> answers;
 
+    /**
+     * Giá trị "image" trả cho Frontend (dùng trực tiếp làm src của thẻ img):
+     * URL tới blob store nếu đã có hash, ngược lại là dữ liệu inline cũ.
+     */
+    @JsonProperty("image")
+    public String getImage() {
+        if (imageHash != null) {
+            return IMAGE_URL_PREFIX + imageHash;
+        }
+        return inlineImage;
+    }
+
+    public static final String IMAGE_URL_PREFIX = "/api/exams/images/";
+
 }
@@ -0,0 +1,36 @@
+package com.igsce.exam_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tổng tích lũy cho phân tích câu hỏi (item analysis), cộng dồn theo delta.
+ * x = điểm câu / điểm tối đa của câu (0..1), y = tổng điểm của lượt làm.
+ */
+@Entity
+@Table(name = "question_item_stats", indexes = @Index(name = "idx_item_stats_exam", columnList = "exam_id"))
+@Data
+public class QuestionItemStats {
+
+    @Id
+    private Long questionId;
+
+    @Column(name = "exam_id")
+    private Long examId;
+
+    private long responses;
+    @Column(name = "sum_x")
+    private double sumX;
+    @Column(name = "sum_x2")
+    private double sumX2;
+    @Column(name = "sum_y")
+    private double sumY;
+    @Column(name = "sum_y2")
+    private double sumY2;
+    @Column(name = "sum_xy")
+    private double sumXy;
+
+    private LocalDateTime updatedAt;
+}
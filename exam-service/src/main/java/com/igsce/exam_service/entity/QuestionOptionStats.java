@@ -0,0 +1,35 @@
+package com.igsce.exam_service.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Số lần mỗi lựa chọn của câu trắc nghiệm được chọn (phân tích phương án nhiễu)
+ */
+@Entity
+@Table(name = "question_option_stats", indexes = @Index(name = "idx_option_stats_exam", columnList = "exam_id"))
+@IdClass(QuestionOptionStats.Key.class)
+@Data
+public class QuestionOptionStats {
+
+    @Id
+    private Long questionId;
+
+    @Id
+    private Long optionId;
+
+    @Column(name = "exam_id")
+    private Long examId;
+
+    private long selections;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long questionId;
+        private Long optionId;
+    }
+}
@@ -0,0 +1,10 @@
+package com.igsce.exam_service.enums;
+
+public enum ProctoringEventType {
+    TAB_HIDDEN,       // Chuyển tab / thu nhỏ trình duyệt (visibilitychange)
+    FOCUS_LOST,       // Cửa sổ mất focus (click ra ứng dụng khác)
+    PASTE,
+    COPY,
+    CONTEXT_MENU,     // Mở chuột phải
+    FULLSCREEN_EXIT
+}
@@ -1,6 +1,8 @@
 package com.igsce.exam_service.enums;
 
 public enum QuestionType {
-    MCQ,    // Trắc nghiệm (Multiple Choice Question)
-    ESSAY   // Tự luận
+    MCQ,          // Trắc nghiệm (Multiple Choice Question)
+    ESSAY,        // Tự luận
+    NUMERIC,      // Điền số (có sai số cho phép và đơn vị)
+    SHORT_ANSWER  // Trả lời ngắn (so khớp đáp án/từ khóa/regex)
 }
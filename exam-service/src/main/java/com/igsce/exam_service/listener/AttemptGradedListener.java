@@ -0,0 +1,20 @@
+package com.igsce.exam_service.listener;
+
+import com.igsce.exam_service.dto.AttemptGradedEvent;
+import com.igsce.exam_service.service.attempt.AttemptStatusNotifier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class AttemptGradedListener {
+
+    private final AttemptStatusNotifier attemptStatusNotifier;
+
+    // Mỗi replica có 1 queue riêng: request long-poll có thể đang chờ ở bất kỳ replica nào
+    @RabbitListener(queues = "#{attemptGradedQueue.name}")
+    public void receiveAttemptGraded(AttemptGradedEvent event) {
+        attemptStatusNotifier.onAttemptGraded(event);
+    }
+}
@@ -0,0 +1,26 @@
+package com.igsce.exam_service.listener;
+
+import com.igsce.exam_service.dto.ExamCacheInvalidationEvent;
+import com.igsce.exam_service.service.bank.QuestionBankService;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ExamCacheInvalidationListener {
+
+    private final ExamDefinitionCache examDefinitionCache;
+    private final QuestionBankService questionBankService;
+
+    // Mỗi replica có 1 queue riêng (anonymous, auto-delete) bind vào notification exchange
+    @RabbitListener(queues = "#{examCacheInvalidationQueue.name}")
+    public void receiveInvalidation(ExamCacheInvalidationEvent event) {
+        examDefinitionCache.onRemoteInvalidation(event);
+        // Nội dung câu hỏi có thể đã đổi -> cập nhật chỉ mục ngân hàng câu hỏi của replica này
+        if (!examDefinitionCache.isOwnEvent(event)) {
+            questionBankService.onRemoteExamChange(event.getExamId());
+        }
+    }
+}
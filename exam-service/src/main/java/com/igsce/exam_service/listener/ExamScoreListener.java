@@ -0,0 +1,20 @@
+package com.igsce.exam_service.listener;
+
+import com.igsce.exam_service.dto.ExamScoreEvent;
+import com.igsce.exam_service.service.stats.ExamStatisticsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ExamScoreListener {
+
+    private final ExamStatisticsService examStatisticsService;
+
+    // Mỗi replica có 1 queue riêng: thống kê của bài thi có thể đang nằm trong bộ nhớ của bất kỳ replica nào
+    @RabbitListener(queues = "#{examScoreQueue.name}")
+    public void receiveScore(ExamScoreEvent event) {
+        examStatisticsService.onScoreEvent(event);
+    }
+}
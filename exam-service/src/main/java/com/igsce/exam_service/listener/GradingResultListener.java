@@ -1,32 +1,45 @@
 package com.igsce.exam_service.listener;
 
 import com.igsce.exam_service.dto.GradingResultCallbackDTO;
-import com.igsce.exam_service.service.ExamService;
+import com.igsce.exam_service.service.grading.GradingResultBatchProcessor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 @RequiredArgsConstructor
 public class GradingResultListener {
 
-    private final ExamService examService;
+    private final GradingResultBatchProcessor gradingResultBatchProcessor;
 
-    @RabbitListener(queues = "exam.grading.result.queue")
-    public void receiveGradingResult(GradingResultCallbackDTO resultDTO) {
-        System.out.println(
-                ">>> [RabbitMQ - ExamService] Received grading result for attemptId: " + resultDTO.getAttemptId());
+    /**
+     * Nhận tối đa exam.grading.result.batch-size kết quả mỗi lần và áp dụng
+     * trong một transaction. Nếu cả lô lỗi thì xử lý lại từng message để một
+     * message hỏng không kéo theo cả lô.
+     */
+    @RabbitListener(queues = "exam.grading.result.queue", containerFactory = "batchRabbitListenerContainerFactory")
+    public void receiveGradingResults(List<GradingResultCallbackDTO> results) {
+        System.out.println(">>> [RabbitMQ - ExamService] Received " + results.size() + " grading results");
         try {
-            boolean success = examService.updateGradingResultFromAI(resultDTO);
-            if (success) {
-                System.out.println(">>> [RabbitMQ - ExamService] Successfully updated grading result for attemptId: "
-                        + resultDTO.getAttemptId());
-            } else {
-                System.err.println(">>> [RabbitMQ - ExamService] Failed to update grading result for attemptId: "
-                        + resultDTO.getAttemptId());
+            int updated = gradingResultBatchProcessor.apply(results);
+            System.out.println(">>> [RabbitMQ - ExamService] Batch applied, updated " + updated + " answers");
+        } catch (Exception e) {
+            System.err.println(">>> [RabbitMQ - ExamService] Batch failed (" + e.getMessage()
+                    + "), falling back to per-message processing");
+            for (GradingResultCallbackDTO result : results) {
+                applySingle(result);
             }
+        }
+    }
+
+    private void applySingle(GradingResultCallbackDTO result) {
+        try {
+            gradingResultBatchProcessor.apply(List.of(result));
         } catch (Exception e) {
-            System.err.println(">>> [RabbitMQ - ExamService] Error processing grading result: " + e.getMessage());
+            System.err.println(">>> [RabbitMQ - ExamService] Error processing grading result for attemptId "
+                    + result.getAttemptId() + ": " + e.getMessage());
             e.printStackTrace();
         }
     }
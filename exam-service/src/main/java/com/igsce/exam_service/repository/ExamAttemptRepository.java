@@ -1,15 +1,91 @@
 package com.igsce.exam_service.repository;
 
+import com.igsce.exam_service.dto.AttemptHistoryDTO;
 import com.igsce.exam_service.entity.*;
 import com.igsce.exam_service.enums.GradingStatus;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.*;
 
 public interface ExamAttemptRepository extends JpaRepository<ExamAttempt, Long> {
-    List<ExamAttempt> findByUserId(Long userId);
     int countByExam_ExamIdAndUserId(Long examId, Long userId);
     List<ExamAttempt> findByExam_ExamIdOrderBySubmittedAtDesc(Long examId);
     List<ExamAttempt> findByGradingStatus(GradingStatus status);
+
+    @Query("SELECT a.exam.examId FROM ExamAttempt a WHERE a.attemptId = :attemptId")
+    Optional<Long> findExamIdByAttemptId(@Param("attemptId") Long attemptId);
+
+    // Khóa dòng attempt khi nộp bài (tránh nộp trùng giữa client và auto-submit)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM ExamAttempt a WHERE a.attemptId = :attemptId")
+    Optional<ExamAttempt> findByIdForUpdate(@Param("attemptId") Long attemptId);
+
+    // Attempt đang mở (chưa nộp): [examId, userId]
+    @Query("SELECT a.exam.examId, a.userId FROM ExamAttempt a WHERE a.attemptId = :attemptId AND a.submittedAt IS NULL")
+    List<Object[]> findOpenAttempt(@Param("attemptId") Long attemptId);
+
+    // Trạng thái chấm [gradingStatus, totalScore] của lượt làm thuộc userId (long-poll, không load câu trả lời)
+    @Query("SELECT a.gradingStatus, a.totalScore FROM ExamAttempt a "
+            + "WHERE a.attemptId = :attemptId AND a.userId = :userId")
+    List<Object[]> findGradingStatus(@Param("attemptId") Long attemptId, @Param("userId") Long userId);
+
+    // [examId, userId, shuffleSeed, deadline, submittedAt] để phát đề cho lượt làm bài
+    @Query("SELECT a.exam.examId, a.userId, a.shuffleSeed, a.deadline, a.submittedAt FROM ExamAttempt a "
+            + "WHERE a.attemptId = :attemptId")
+    List<Object[]> findPaperHeader(@Param("attemptId") Long attemptId);
+
+    // Điểm các lượt đã nộp của một bài thi: [attemptId, userId, totalScore, scoreVersion] (keyset theo attemptId)
+    @Query("SELECT a.attemptId, a.userId, a.totalScore, a.scoreVersion FROM ExamAttempt a "
+            + "WHERE a.exam.examId = :examId AND a.submittedAt IS NOT NULL AND a.attemptId > :afterId "
+            + "ORDER BY a.attemptId")
+    List<Object[]> findSubmittedScores(@Param("examId") Long examId, @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    // Các attempt chưa nộp: [attemptId, deadline, startTime, exam.duration, exam.endTime]
+    @Query("SELECT a.attemptId, a.deadline, a.startTime, e.duration, e.endTime FROM ExamAttempt a JOIN a.exam e "
+            + "WHERE a.submittedAt IS NULL AND a.attemptId > :afterId ORDER BY a.attemptId")
+    List<Object[]> findOpenAttemptDeadlines(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Lịch sử đã nộp của học sinh, mới nhất trước. Trang đầu và các trang sau
+    // tách thành 2 query để MySQL luôn quét range trên idx_attempts_user_history
+    // (không có nhánh ":cursor IS NULL OR ...")
+    @Query("""
+            SELECT new com.igsce.exam_service.dto.AttemptHistoryDTO(
+                a.attemptId, e.examId, e.title, a.attemptNumber, a.submittedAt, a.totalScore, a.gradingStatus)
+            FROM ExamAttempt a JOIN a.exam e
+            WHERE a.userId = :userId AND a.submittedAt IS NOT NULL
+            ORDER BY a.submittedAt DESC, a.attemptId DESC
+            """)
+    List<AttemptHistoryDTO> findSubmittedHistory(@Param("userId") Long userId, Pageable pageable);
+
+    // Trang sau con trỏ (submittedAt, attemptId) của dòng cuối trang trước
+    @Query("""
+            SELECT new com.igsce.exam_service.dto.AttemptHistoryDTO(
+                a.attemptId, e.examId, e.title, a.attemptNumber, a.submittedAt, a.totalScore, a.gradingStatus)
+            FROM ExamAttempt a JOIN a.exam e
+            WHERE a.userId = :userId AND a.submittedAt <= :cursorSubmittedAt
+              AND (a.submittedAt < :cursorSubmittedAt OR a.attemptId < :cursorId)
+            ORDER BY a.submittedAt DESC, a.attemptId DESC
+            """)
+    List<AttemptHistoryDTO> findSubmittedHistoryBefore(@Param("userId") Long userId,
+            @Param("cursorSubmittedAt") LocalDateTime cursorSubmittedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable);
+
+    // Các lượt đang làm (chưa nộp) của học sinh
+    @Query("""
+            SELECT new com.igsce.exam_service.dto.AttemptHistoryDTO(
+                a.attemptId, e.examId, e.title, a.attemptNumber, a.submittedAt, a.totalScore, a.gradingStatus)
+            FROM ExamAttempt a JOIN a.exam e
+            WHERE a.userId = :userId AND a.submittedAt IS NULL
+            ORDER BY a.attemptId DESC
+            """)
+    List<AttemptHistoryDTO> findInProgressHistory(@Param("userId") Long userId, Pageable pageable);
 }
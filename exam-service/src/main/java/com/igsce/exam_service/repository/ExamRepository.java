@@ -1,7 +1,50 @@
 package com.igsce.exam_service.repository;
 
+import com.igsce.exam_service.dto.ExamSummaryDTO;
 import com.igsce.exam_service.entity.*;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 public interface ExamRepository extends JpaRepository<Exam, Long> {
-}
\ No newline at end of file
+
+    // Load bài thi kèm danh sách câu hỏi (options load riêng để tránh MultipleBagFetchException)
+    @Query("SELECT DISTINCT e FROM Exam e LEFT JOIN FETCH e.questions WHERE e.examId = :examId")
+    Optional<Exam> findWithQuestionsByExamId(@Param("examId") Long examId);
+
+    // Catalog: chỉ lấy cột tóm tắt + số câu/tổng điểm bằng aggregate, không load câu hỏi/ảnh.
+    // Keyset pagination theo examId (afterId = examId cuối cùng của trang trước).
+    @Query("""
+            SELECT new com.igsce.exam_service.dto.ExamSummaryDTO(
+                e.examId, e.title, e.description, e.duration, e.endTime, e.isActive, e.isStrict, e.maxAttempts,
+                COUNT(q), COALESCE(SUM(q.score), 0.0))
+            FROM Exam e LEFT JOIN e.questions q
+            WHERE (:afterId IS NULL OR e.examId > :afterId)
+              AND (:active IS NULL OR e.isActive = :active)
+              AND (:endsAfter IS NULL OR e.endTime IS NULL OR e.endTime > :endsAfter)
+              AND (:endsBefore IS NULL OR e.endTime <= :endsBefore)
+            GROUP BY e.examId, e.title, e.description, e.duration, e.endTime, e.isActive, e.isStrict, e.maxAttempts
+            ORDER BY e.examId ASC
+            """)
+    List<ExamSummaryDTO> findSummaries(@Param("afterId") Long afterId,
+            @Param("active") Boolean active,
+            @Param("endsAfter") LocalDateTime endsAfter,
+            @Param("endsBefore") LocalDateTime endsBefore,
+            Pageable pageable);
+
+    // Tăng revision = khóa dòng exams tới hết transaction (cùng khóa với QuestionImportService),
+    // để hai request thêm câu hỏi song song không đọc trùng orderIndex
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Exam e SET e.revision = e.revision + 1 WHERE e.examId = :examId")
+    int incrementRevision(@Param("examId") Long examId);
+
+    // Bài thi đang active sắp mở trong khoảng [from, to] (làm nóng cache)
+    @Query("SELECT e.examId FROM Exam e WHERE e.isActive = true AND e.startTime BETWEEN :from AND :to")
+    List<Long> findActiveExamIdsStartingBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
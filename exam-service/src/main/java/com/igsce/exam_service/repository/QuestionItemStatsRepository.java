@@ -0,0 +1,10 @@
+package com.igsce.exam_service.repository;
+
+import com.igsce.exam_service.entity.QuestionItemStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface QuestionItemStatsRepository extends JpaRepository<QuestionItemStats, Long> {
+    List<QuestionItemStats> findByExamId(Long examId);
+}
@@ -0,0 +1,10 @@
+package com.igsce.exam_service.repository;
+
+import com.igsce.exam_service.entity.QuestionOptionStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface QuestionOptionStatsRepository extends JpaRepository<QuestionOptionStats, QuestionOptionStats.Key> {
+    List<QuestionOptionStats> findByExamId(Long examId);
+}
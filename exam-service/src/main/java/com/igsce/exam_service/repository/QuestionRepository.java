@@ -1,7 +1,49 @@
 package com.igsce.exam_service.repository;
 
 import com.igsce.exam_service.entity.*;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface QuestionRepository extends JpaRepository<Question, Long> {
+
+    // Load toàn bộ câu hỏi + lựa chọn của một bài thi trong 1 query (fetch join)
+    @Query("SELECT DISTINCT q FROM Question q LEFT JOIN FETCH q.options WHERE q.exam.examId = :examId")
+    List<Question> findAllWithOptionsByExamId(@Param("examId") Long examId);
+
+    // Migration ảnh: từng lô [questionId, inlineImage] còn ảnh inline (keyset theo questionId)
+    @Query("SELECT q.questionId, q.inlineImage FROM Question q "
+            + "WHERE q.inlineImage IS NOT NULL AND q.imageHash IS NULL AND q.questionId > :afterId "
+            + "ORDER BY q.questionId")
+    List<Object[]> findInlineImageBatch(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Ngân hàng câu hỏi: từng lô [questionId, examId, content, questionType, topic]
+    // của các câu gốc (không phải bản lấy lại từ bài khác), keyset theo questionId
+    @Query("SELECT q.questionId, q.exam.examId, q.content, q.questionType, q.topic FROM Question q "
+            + "WHERE q.sourceQuestionId IS NULL AND q.questionId > :afterId ORDER BY q.questionId")
+    List<Object[]> findBankIndexBatch(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT q.questionId, q.exam.examId, q.content, q.questionType, q.topic FROM Question q "
+            + "WHERE q.sourceQuestionId IS NULL AND q.exam.examId = :examId")
+    List<Object[]> findBankIndexRowsByExamId(@Param("examId") Long examId);
+
+    // Kết quả tìm kiếm: [questionId, examId, content, questionType, topic, score, imageHash]
+    @Query("SELECT q.questionId, q.exam.examId, q.content, q.questionType, q.topic, q.score, q.imageHash "
+            + "FROM Question q WHERE q.questionId IN :ids")
+    List<Object[]> findBankSummaries(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT q FROM Question q LEFT JOIN FETCH q.options WHERE q.questionId IN :ids")
+    List<Question> findAllWithOptionsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT COALESCE(MAX(q.orderIndex) + 1, 0) FROM Question q WHERE q.exam.examId = :examId")
+    int findNextOrderIndex(@Param("examId") Long examId);
+
+    @Modifying
+    @Query("UPDATE Question q SET q.imageHash = :hash, q.inlineImage = NULL WHERE q.questionId = :questionId")
+    int moveImageToBlobStore(@Param("questionId") Long questionId, @Param("hash") String hash);
 }
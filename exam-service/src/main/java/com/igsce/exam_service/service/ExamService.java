@@ -1,17 +1,37 @@
 package com.igsce.exam_service.service;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.time.LocalDateTime;
 
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.igsce.exam_service.config.RabbitConfig;
 import com.igsce.exam_service.repository.*;
 import com.igsce.exam_service.entity.*;
 import com.igsce.exam_service.enums.GradingStatus;
 import com.igsce.exam_service.enums.QuestionType;
 import com.igsce.exam_service.dto.*;
+import com.igsce.exam_service.service.analysis.ItemAnalysisService;
+import com.igsce.exam_service.service.analysis.ItemResponse;
+import com.igsce.exam_service.service.attempt.AttemptSlotAllocator;
+import com.igsce.exam_service.service.bank.QuestionBankService;
+import com.igsce.exam_service.service.cache.CachedExam;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.service.draft.DraftAnswerService;
+import com.igsce.exam_service.service.expiry.ExamExpiryScheduler;
+import com.igsce.exam_service.service.grading.GradingResultBatchProcessor;
+import com.igsce.exam_service.service.outbox.OutboxPublisher;
+import com.igsce.exam_service.service.scoring.AnswerKey;
+import com.igsce.exam_service.service.scoring.ScoringEngine;
+import com.igsce.exam_service.service.scoring.ScoringEngine.ScoredAnswer;
+import com.igsce.exam_service.service.stats.ExamStatisticsService;
+import com.igsce.exam_service.service.storage.QuestionImageService;
+import com.igsce.exam_service.util.TransactionUtils;
 
 @Service
 public class ExamService {
@@ -20,71 +40,170 @@ public class ExamService {
     private final ExamAttemptRepository attemptRepository;
     private final QuestionRepository questionRepository;
     private final AnswerRepository answerRepository;
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxPublisher outboxPublisher;
+    private final GradingResultBatchProcessor gradingResultBatchProcessor;
+    private final ExamExpiryScheduler examExpiryScheduler;
+    private final DraftAnswerService draftAnswerService;
+    private final ExamStatisticsService examStatisticsService;
+    private final AttemptSlotAllocator attemptSlotAllocator;
+    private final ItemAnalysisService itemAnalysisService;
+    private final ScoringEngine scoringEngine;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final QuestionImageService questionImageService;
+    private final QuestionBankService questionBankService;
+    private final TransactionTemplate transactionTemplate;
 
     public ExamService(ExamRepository examRepository,
             ExamAttemptRepository attemptRepository,
             QuestionRepository questionRepository,
             AnswerRepository answerRepository,
-            RabbitTemplate rabbitTemplate) {
+            OutboxPublisher outboxPublisher,
+            GradingResultBatchProcessor gradingResultBatchProcessor,
+            ExamExpiryScheduler examExpiryScheduler,
+            DraftAnswerService draftAnswerService,
+            ExamStatisticsService examStatisticsService,
+            AttemptSlotAllocator attemptSlotAllocator,
+            ItemAnalysisService itemAnalysisService,
+            ScoringEngine scoringEngine,
+            ExamDefinitionCache examDefinitionCache,
+            QuestionImageService questionImageService,
+            QuestionBankService questionBankService,
+            PlatformTransactionManager transactionManager) {
         this.examRepository = examRepository;
         this.attemptRepository = attemptRepository;
         this.questionRepository = questionRepository;
         this.answerRepository = answerRepository;
-        this.rabbitTemplate = rabbitTemplate;
+        this.outboxPublisher = outboxPublisher;
+        this.gradingResultBatchProcessor = gradingResultBatchProcessor;
+        this.examExpiryScheduler = examExpiryScheduler;
+        this.draftAnswerService = draftAnswerService;
+        this.examStatisticsService = examStatisticsService;
+        this.attemptSlotAllocator = attemptSlotAllocator;
+        this.itemAnalysisService = itemAnalysisService;
+        this.scoringEngine = scoringEngine;
+        this.examDefinitionCache = examDefinitionCache;
+        this.questionImageService = questionImageService;
+        this.questionBankService = questionBankService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
+    public static final int CATALOG_MAX_PAGE_SIZE = 100;
+    public static final int HISTORY_MAX_PAGE_SIZE = 100;
+    public static final int BULK_GRADING_MAX_ITEMS = 2000;
+
+    /**
+     * Danh sách bài thi dạng tóm tắt (không load câu hỏi/ảnh vào heap)
+     */
     @Transactional(readOnly = true)
-    public List<Exam> getAllExams() {
-        try {
-            List<Exam> exams = examRepository.findAll();
-            // Force load questions to avoid lazy loading exception
-            exams.forEach(exam -> {
-                if (exam.getQuestions() != null) {
-                    exam.getQuestions().size(); // Trigger lazy loading
-                }
-            });
-            return exams;
-        } catch (Exception e) {
-            System.err.println("Error in getAllExams: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+    public List<ExamSummaryDTO> getAllExams() {
+        return examRepository.findSummaries(null, null, null, null, Pageable.unpaged());
+    }
+
+    /**
+     * Catalog bài thi có phân trang keyset theo examId và lọc phía server
+     */
+    @Transactional(readOnly = true)
+    public ExamCatalogPage getExamCatalog(Long afterId, int size, Boolean active,
+            LocalDateTime endsAfter, LocalDateTime endsBefore) {
+        int pageSize = Math.max(1, Math.min(size, CATALOG_MAX_PAGE_SIZE));
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        List<ExamSummaryDTO> rows = examRepository.findSummaries(afterId, active, endsAfter, endsBefore,
+                PageRequest.of(0, pageSize + 1));
+
+        Long nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            nextCursor = rows.get(pageSize - 1).getExamId();
         }
+        return new ExamCatalogPage(rows, nextCursor);
     }
 
     public Exam getExamById(Long examId) {
-        return examRepository.findById(examId)
+        return examDefinitionCache.find(examId)
+                .map(CachedExam::exam)
                 .orElseThrow();
     }
 
-    public List<ExamAttempt> getAttemptsByUserId(Long userId) {
-        return attemptRepository.findByUserId(userId);
+    /**
+     * Lịch sử làm bài của học sinh (keyset theo submittedAt, attemptId giảm dần).
+     * Trang đầu (không có con trỏ) kèm các lượt đang làm dở.
+     */
+    public AttemptHistoryPage getAttemptHistory(Long userId, LocalDateTime cursorSubmittedAt, Long cursorId,
+            int size) {
+        if ((cursorSubmittedAt == null) != (cursorId == null)) {
+            throw new IllegalArgumentException("cursorSubmittedAt and cursorId must be given together");
+        }
+        int pageSize = Math.max(1, Math.min(size, HISTORY_MAX_PAGE_SIZE));
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<AttemptHistoryDTO> rows = cursorId == null
+                ? attemptRepository.findSubmittedHistory(userId, limit)
+                : attemptRepository.findSubmittedHistoryBefore(userId, cursorSubmittedAt, cursorId, limit);
+        List<AttemptHistoryDTO> inProgress = cursorId == null
+                ? attemptRepository.findInProgressHistory(userId, PageRequest.of(0, HISTORY_MAX_PAGE_SIZE))
+                : List.of();
+
+        AttemptHistoryPage.Cursor nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            AttemptHistoryDTO last = rows.get(pageSize - 1);
+            nextCursor = new AttemptHistoryPage.Cursor(last.getSubmittedAt(), last.getAttemptId());
+        }
+        return new AttemptHistoryPage(inProgress, rows, nextCursor);
     }
 
     public List<ExamAttempt> getAttemptsByStatus(GradingStatus status) {
         return attemptRepository.findByGradingStatus(status);
     }
 
+    @Transactional
     public void updateManualGrade(Long attemptId, Long answerId, Double newScore, String feedback) {
+        // Khóa lượt làm trước khi đọc đóng góp cũ: kết quả AI/chấm tay song song phải chờ,
+        // nếu không cả hai cùng trừ một "before" và item analysis bị lệch
+        ExamAttempt attempt = attemptRepository.findByIdForUpdate(attemptId)
+                .orElseThrow(() -> new RuntimeException("Attempt not found"));
+        List<ItemResponse> before = itemAnalysisService.loadResponses(List.of(attemptId));
+
         // Tìm câu trả lời
         Answer answer = answerRepository.findById(answerId)
                 .orElseThrow(() -> new RuntimeException("Answer not found"));
 
         // Lưu điểm giáo viên chấm (Override)
         answer.applyTeacherGrading(newScore, feedback);
-        answerRepository.save(answer);
+        answerRepository.saveAndFlush(answer);
 
         // Tính lại tổng điểm toàn bài
-        ExamAttempt attempt = attemptRepository.findById(attemptId)
-                .orElseThrow(() -> new RuntimeException("Attempt not found"));
-
         attempt.recalculateTotalScore();
 
         // Nếu muốn, có thể đổi trạng thái bài thi thành COMPLETED luôn tại đây
         // hoặc chờ giáo viên nhấn nút "Hoàn tất" riêng.
         attempt.setGradingStatus(GradingStatus.COMPLETED);
 
-        attemptRepository.save(attempt);
+        // Flush để item analysis (JDBC) đọc được điểm mới trong cùng transaction
+        attemptRepository.saveAndFlush(attempt);
+        examStatisticsService.recordScoreAfterCommit(attempt.getExam().getExamId(), attemptId,
+                attempt.getUserId(), attempt.getTotalScore(), attempt.getScoreVersion());
+        itemAnalysisService.recordAfterCommit(before, itemAnalysisService.loadResponses(List.of(attemptId)));
+
+        // Thông báo điểm mới cho học sinh (gửi sau khi COMMIT qua outbox)
+        outboxPublisher.publish(RabbitConfig.NOTIFICATION_EXCHANGE, RabbitConfig.ATTEMPT_GRADED_ROUTING_KEY,
+                new AttemptGradedEvent(attemptId, attempt.getExam().getExamId(), attempt.getUserId(),
+                        attempt.getTotalScore(), attempt.getGradingStatus().name()));
+    }
+
+    /**
+     * Chấm tay theo lô (xem GradingResultBatchProcessor.applyManualGrades)
+     */
+    public BulkGradingResponse bulkUpdateManualGrades(List<ManualGradingRequest> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách chấm điểm trống");
+        }
+        if (items.size() > BULK_GRADING_MAX_ITEMS) {
+            throw new IllegalArgumentException("Tối đa " + BULK_GRADING_MAX_ITEMS + " câu mỗi lần chấm");
+        }
+        return gradingResultBatchProcessor.applyManualGrades(items);
     }
 
     @Transactional(readOnly = true)
@@ -128,69 +247,6 @@ public class ExamService {
         return attempts;
     }
 
-    @Async("taskExecutor")
-    public void gradeEssaysAsync(Long attemptId) {
-        System.out.println(">>> [ExamService] Starting async grading for attemptId: " + attemptId);
-        try {
-            // 1. Lấy dữ liệu bài làm từ DB
-            ExamAttempt attempt = attemptRepository.findById(attemptId)
-                    .orElseThrow(() -> new RuntimeException("Attempt not found: " + attemptId));
-
-            // Force fetch questions/answers
-            if (attempt.getAnswers() != null) {
-                attempt.getAnswers().size();
-                attempt.getAnswers().forEach(a -> {
-                    if (a.getQuestion() != null) {
-                        a.getQuestion().getQuestionType();
-                        a.getQuestion().getEssayCorrectAnswer();
-                    }
-                });
-            }
-
-            // 2. Build ExamAnswersDTO để gửi đi
-            ExamAnswersDTO dto = new ExamAnswersDTO();
-            dto.setAttemptId(attemptId);
-            dto.setStudentId(attempt.getUserId());
-            dto.setExamId(attempt.getExam() != null ? attempt.getExam().getExamId() : null);
-            dto.setLanguage("vi"); // Mặc định hoặc lấy từ user preference
-
-            List<AnswerDTO> answerDTOs = new ArrayList<>();
-            if (attempt.getAnswers() != null) {
-                for (Answer ans : attempt.getAnswers()) {
-                    Question q = ans.getQuestion();
-                    if (q == null)
-                        continue;
-
-                    if (q.getQuestionType() == QuestionType.ESSAY) {
-                        EssayAnswer essay = new EssayAnswer();
-                        essay.setQuestionId(q.getQuestionId());
-                        essay.setStudentAnswer(ans.getTextAnswer());
-                        essay.setQuestionText(q.getContent());
-                        essay.setReferenceAnswer(q.getEssayCorrectAnswer());
-                        essay.setMaxScore(q.getScore());
-                        answerDTOs.add(essay);
-                    } else {
-                        // Có thể thêm trắc nghiệm nếu muốn AI phân tích
-                    }
-                }
-            }
-            dto.setAnswers(answerDTOs);
-
-            // 3. Gửi Message qua RabbitMQ
-            System.out.println(">>> [ExamService] Sending grading request to RabbitMQ via exchange: "
-                    + com.igsce.exam_service.config.RabbitConfig.EXCHANGE_NAME);
-            rabbitTemplate.convertAndSend(
-                    com.igsce.exam_service.config.RabbitConfig.EXCHANGE_NAME,
-                    com.igsce.exam_service.config.RabbitConfig.ROUTING_KEY,
-                    dto);
-            System.out.println(">>> [ExamService] Message sent successfully!");
-
-        } catch (Exception e) {
-            System.err.println(">>> [ExamService] Exception sending to RabbitMQ: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     @Transactional
     public Exam createExam(CreateExamRequest request) {
         try {
@@ -205,6 +261,7 @@ public class ExamService {
             exam.setDescription(request.getDescription());
             exam.setDuration(request.getDuration());
             exam.setActive(request.isActive());
+            exam.setStartTime(request.getStartTime());
             exam.setEndTime(request.getEndTime());
             exam.setMaxAttempts(request.getMaxAttempts() < 1 ? 1 : request.getMaxAttempts());
             exam.setIsStrict(request.getIsStrict() != null ? request.getIsStrict() : false);
@@ -224,6 +281,7 @@ public class ExamService {
                         question.setContent(qRequest.getContent());
                         question.setScore(qRequest.getScore());
                         question.setQuestionType(qRequest.getQuestionType());
+                        question.setTopic(qRequest.getTopic());
 
                         // [FIX 3] LOGIC CHỐNG LỖI NULL
                         // Nếu Frontend có gửi thứ tự -> dùng của Frontend
@@ -235,13 +293,11 @@ public class ExamService {
                         }
                         currentIndex++; // Tăng số thứ tự cho câu sau
 
-                        // Lưu ảnh Base64
-                        question.setImage(qRequest.getImage());
+                        // Ảnh Base64 được lưu vào blob store, câu hỏi chỉ giữ hash
+                        questionImageService.applyImage(question, qRequest.getImage());
 
-                        // Lưu đáp án tham khảo cho câu ESSAY
-                        if (qRequest.getQuestionType() == QuestionType.ESSAY) {
-                            question.setEssayCorrectAnswer(qRequest.getEssayCorrectAnswer());
-                        }
+                        // Lưu đáp án tham khảo cho câu ESSAY / đáp án chấm tự động
+                        applyAnswerKeyFields(question, qRequest);
 
                         // Note: essayCorrectAnswer không có trong QuestionRequest DTO
                         // Có thể thêm vào DTO sau nếu cần
@@ -281,18 +337,11 @@ public class ExamService {
             System.out.println("Saving exam to database...");
             Exam savedExam = examRepository.save(exam);
             System.out.println("Exam saved successfully with ID: " + savedExam.getExamId());
-            try {
-                ExamCreatedEvent event = new ExamCreatedEvent(
-                        savedExam.getExamId(),
-                        savedExam.getTitle(),
-                        savedExam.getDescription());
-
-                // Sử dụng Exchange chuyên cho notification (khai báo bên dưới)
-                rabbitTemplate.convertAndSend("exam.notification.exchange", "exam.created", event);
-                System.out.println(">>> Đã gửi sự kiện tạo Exam sang RabbitMQ: " + savedExam.getTitle());
-            } catch (Exception ex) {
-                System.err.println("Lỗi gửi RabbitMQ (không ảnh hưởng transaction chính): " + ex.getMessage());
-            }
+            examDefinitionCache.invalidateAfterCommit(savedExam.getExamId(), savedExam.getRevision());
+            questionBankService.reindexExamAfterCommit(savedExam.getExamId());
+            // Ghi sự kiện vào outbox cùng transaction, OutboxRelay sẽ gửi sang RabbitMQ
+            outboxPublisher.publish(RabbitConfig.NOTIFICATION_EXCHANGE, "exam.created",
+                    new ExamCreatedEvent(savedExam.getExamId(), savedExam.getTitle(), savedExam.getDescription()));
 
             return savedExam;
         } catch (Exception e) {
@@ -316,53 +365,116 @@ public class ExamService {
         }
     }
 
+    @Transactional
     public void deleteExam(Long id) {
-        Exam exam = examRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy bài thi với ID: " + id));
+        // Tăng revision bằng UPDATE nguyên tử (khóa dòng exams) rồi mới đọc lại entity,
+        // để hai lần sửa/xóa song song không cùng ghi một revision
+        if (examRepository.incrementRevision(id) == 0) {
+            throw new RuntimeException("Không tìm thấy bài thi với ID: " + id);
+        }
+        Exam exam = examRepository.findById(id).orElseThrow();
 
         exam.setActive(false);
         examRepository.save(exam);
+        examDefinitionCache.invalidateAfterCommit(id, exam.getRevision());
+        examStatisticsService.invalidateAfterCommit(id);
     }
 
     public ExamAttempt startExam(Long examId, Long userId) {
 
-        Exam exam = examRepository.findById(examId)
+        Exam exam = examDefinitionCache.find(examId)
+                .map(CachedExam::exam)
                 .orElseThrow(() -> new RuntimeException("Exam not found"));
 
         if (!exam.isActive()) {
             throw new RuntimeException("Exam is not active");
         }
 
+        if (exam.getStartTime() != null && LocalDateTime.now().isBefore(exam.getStartTime())) {
+            throw new RuntimeException("Bài thi chưa mở, thời gian bắt đầu: " + exam.getStartTime());
+        }
+
         if (exam.getEndTime() != null && LocalDateTime.now().isAfter(exam.getEndTime())) {
             throw new RuntimeException("Bài thi đã hết hạn vào lúc: " + exam.getEndTime());
         }
 
-        int currentAttempts = attemptRepository.countByExam_ExamIdAndUserId(examId, userId);
-        if (currentAttempts >= exam.getMaxAttempts()) {
-            throw new RuntimeException(
-                    "Bạn đã hết lượt làm bài! (" + currentAttempts + " / " + exam.getMaxAttempts() + " lần)");
-        }
+        // Giữ lượt làm bài (không vượt maxAttempts kể cả khi bấm "Bắt đầu" đồng thời)
+        LocalDateTime now = LocalDateTime.now();
+        ExamAttempt savedAttempt = attemptSlotAllocator.reserve(examId, userId, exam.getMaxAttempts(), attempt -> {
+            attempt.setStartTime(now);
+            attempt.setDeadline(ExamExpiryScheduler.computeDeadline(now, exam.getDuration(), exam.getEndTime()));
+            attempt.setTotalScore(0);
+            // Bài isStrict: mỗi lượt làm có thứ tự câu hỏi/lựa chọn riêng
+            if (Boolean.TRUE.equals(exam.getIsStrict())) {
+                attempt.setShuffleSeed(ThreadLocalRandom.current().nextLong());
+            }
+        });
+        // Hẹn giờ tự nộp bài khi hết thời gian làm
+        TransactionUtils.afterCommit(
+                () -> examExpiryScheduler.schedule(savedAttempt.getAttemptId(), savedAttempt.getDeadline()));
+        return savedAttempt;
+    }
 
-        ExamAttempt attempt = new ExamAttempt();
-        attempt.setExam(exam);
-        attempt.setUserId(userId);
-        attempt.setStartTime(LocalDateTime.now());
-        attempt.setTotalScore(0);
+    public boolean submitExam(Long attemptId, List<StudentAnswerDTO> userAnswers) {
+        // Lấy đáp án từ cache TRƯỚC khi mở transaction (cache miss không phải giữ 2
+        // connection cùng lúc)
+        Long examId = attemptRepository.findExamIdByAttemptId(attemptId)
+                .orElseThrow(() -> new RuntimeException("Not found"));
+        CachedExam cachedExam = examDefinitionCache.get(examId);
+        // Ghi bản nháp còn trong bộ đệm xuống DB để gộp trong transaction nộp bài
+        draftAnswerService.flushAttempt(attemptId);
+
+        boolean submitted = Boolean.TRUE.equals(
+                transactionTemplate.execute(status -> submitExamInTransaction(attemptId, userAnswers, cachedExam)));
+        examExpiryScheduler.cancel(attemptId);
+        draftAnswerService.onSubmitted(attemptId);
+        return submitted;
+    }
 
-        return attemptRepository.save(attempt);
+    /**
+     * Tự nộp bài khi hết giờ (gọi từ ExamExpiryScheduler) với các bản nháp đã
+     * autosave. Bỏ qua nếu bài đã được nộp. Trả về true nếu đã nộp.
+     */
+    public boolean autoSubmitExpired(Long attemptId) {
+        Optional<Long> examId = attemptRepository.findExamIdByAttemptId(attemptId);
+        if (examId.isEmpty()) {
+            return false;
+        }
+        CachedExam cachedExam = examDefinitionCache.get(examId.get());
+        draftAnswerService.flushAttempt(attemptId);
+
+        // Nộp các bản nháp đã autosave (bài đã nộp được bỏ qua trong submitExamInTransaction)
+        boolean submitted = Boolean.TRUE.equals(
+                transactionTemplate.execute(status -> submitExamInTransaction(attemptId, List.of(), cachedExam)));
+        draftAnswerService.onSubmitted(attemptId);
+        return submitted;
     }
 
-    @Transactional
-    public boolean submitExam(Long attemptId, List<StudentAnswerDTO> userAnswers) {
+    /**
+     * Nộp bài dưới khóa FOR UPDATE, dùng chung cho submitExam và
+     * autoSubmitExpired. Trả về false nếu bài đã nộp.
+     */
+    private boolean submitExamInTransaction(Long attemptId, List<StudentAnswerDTO> userAnswers, CachedExam cachedExam) {
+        AnswerKey answerKey = cachedExam.answerKey();
 
-        ExamAttempt attempt = attemptRepository.findById(attemptId)
+        ExamAttempt attempt = attemptRepository.findByIdForUpdate(attemptId)
                 .orElseThrow(() -> new RuntimeException("Not found"));
 
-        // Kiểm tra xem đã nộp chưa (tránh spam)
+        // Đã nộp (nộp trùng, hoặc hết giờ và đã được tự nộp): không chấm lại, không
+        // thêm Answer, không gửi yêu cầu chấm AI lần nữa
         if (attempt.getSubmittedAt() != null) {
-            // throw new RuntimeException("Bài đã nộp rồi"); // Hoặc return false tùy logic
+            System.out.println(">>> [ExamService] Attempt " + attemptId + " đã nộp, bỏ qua lần nộp lại");
+            return false;
         }
-        attempt.setSubmittedAt(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        // Nộp sau deadline + grace: chỉ chấm bản nháp đã autosave, bỏ câu trả lời gửi kèm
+        if (userAnswers != null && !userAnswers.isEmpty()
+                && examExpiryScheduler.isPastGrace(attempt.getDeadline(), now)) {
+            System.out.println(">>> [ExamService] Attempt " + attemptId + " nộp quá hạn, bỏ " + userAnswers.size()
+                    + " câu trả lời gửi kèm");
+            userAnswers = List.of();
+        }
+        attempt.setSubmittedAt(now);
 
         double totalScore = 0;
         List<Answer> answersToSave = new ArrayList<>();
@@ -370,154 +482,161 @@ public class ExamService {
         // Đánh dấu có câu essay cần AI chấm
         boolean hasEssayQuestions = false;
 
-        for (StudentAnswerDTO dto : userAnswers) {
-            Question question = questionRepository.findById(dto.getQuestionId()).orElse(null);
-            if (question == null)
+        // Bản nháp autosave + payload nộp bài (payload thắng)
+        List<StudentAnswerDTO> answers = draftAnswerService.mergeForSubmit(attemptId, userAnswers);
+
+        for (StudentAnswerDTO dto : answers) {
+            ScoredAnswer scored = scoringEngine.score(answerKey, dto);
+            if (scored == null)
                 continue;
 
             Answer answer = new Answer();
             answer.setAttempt(attempt);
-            answer.setQuestion(question);
+            answer.setQuestion(questionRepository.getReferenceById(scored.questionId()));
 
-            double score = 0;
-
-            // --- LOGIC CHẤM ĐIỂM ---
-            if (question.getQuestionType() == QuestionType.MCQ) {
-                // 1. Xử lý Trắc nghiệm (Chấm ngay lập tức)
+            if (scored.questionType() == QuestionType.MCQ) {
+                // Trắc nghiệm (Chấm ngay lập tức)
                 answer.setSelectedOptionId(dto.getSelectedOptionId());
-
-                QuestionOption correctOption = question.getOptions().stream()
-                        .filter(QuestionOption::isCorrect)
-                        .findFirst().orElse(null);
-
-                boolean isCorrect = correctOption != null
-                        && correctOption.getOptionId().equals(dto.getSelectedOptionId());
-
-                if (isCorrect) {
-                    score = question.getScore();
-                    answer.setFeedback("Chính xác");
-                } else {
-                    answer.setFeedback("Sai");
-                }
-
-                totalScore += score;
-                answer.setScore(score);
-
             } else {
-                // 2. Xử lý Tự luận (Gửi cho AI)
+                // Tự luận / điền số / trả lời ngắn
                 answer.setTextAnswer(dto.getTextAnswer());
-                answer.setScore(0.0); // Tạm thời 0
-                answer.setFeedback("Đang chấm điểm..."); // Đánh dấu để Frontend biết
+            }
 
-                // Đánh dấu có câu essay để gọi AI chấm
+            if (scored.needsAiGrading()) {
+                // Gửi cho AI
                 hasEssayQuestions = true;
             }
 
+            answer.setScore(scored.score());
+            answer.setFeedback(scored.feedback());
+            totalScore += scored.score();
+
             answersToSave.add(answer);
         }
 
         attempt.setAnswers(answersToSave);
-        attempt.setTotalScore(totalScore); // Điểm này mới chỉ gồm trắc nghiệm
+        attempt.setTotalScore(totalScore); // Điểm này mới chỉ gồm các câu chấm tự động
+        attempt.setScoreVersion(attempt.getScoreVersion() + 1);
 
         // Lưu lần 1
         ExamAttempt savedAttempt = attemptRepository.save(attempt);
-
-        // [ASYNC] Gọi AI chấm điểm chạy ngầm - Chỉ gọi sau khi Transaction COMMIT thành
-        // công
+        examStatisticsService.recordScoreAfterCommit(cachedExam.examId(), savedAttempt.getAttemptId(),
+                savedAttempt.getUserId(), totalScore, savedAttempt.getScoreVersion());
+        // Chỉ lần nộp đầu tới được đây (submittedAt được kiểm tra dưới khóa FOR UPDATE),
+        // nên lượt làm chưa có đóng góp cũ nào để trừ
+        itemAnalysisService.recordAfterCommit(List.of(),
+                toItemResponses(cachedExam.examId(), answersToSave, answerKey, totalScore));
+
+        // Yêu cầu AI chấm tự luận được ghi vào outbox cùng transaction: chỉ gửi khi
+        // bài nộp đã COMMIT, và không bị mất nếu RabbitMQ đang gián đoạn
         if (hasEssayQuestions) {
-            final Long finalAttemptId = savedAttempt.getAttemptId();
-            if (org.springframework.transaction.support.TransactionSynchronizationManager.isActualTransactionActive()) {
-                org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
-                        new org.springframework.transaction.support.TransactionSynchronization() {
-                            @Override
-                            public void afterCommit() {
-                                gradeEssaysAsync(finalAttemptId);
-                            }
-                        });
-            } else {
-                gradeEssaysAsync(finalAttemptId);
-            }
+            outboxPublisher.publish(RabbitConfig.EXCHANGE_NAME, RabbitConfig.ROUTING_KEY,
+                    buildGradingRequest(savedAttempt, cachedExam));
         }
 
         return true;
     }
 
     /**
-     * Nhận callback từ AI service và cập nhật điểm vào DB
+     * Đáp án theo loại câu hỏi: đáp án tham khảo (ESSAY) hoặc đáp án chấm tự
+     * động (NUMERIC, SHORT_ANSWER). Các field không thuộc loại câu được xóa.
+     * Dùng chung với QuestionImportService.
      */
-    @Transactional
-    public boolean updateGradingResultFromAI(GradingResultCallbackDTO callback) {
-        System.out.println(">>> [ExamService] Received callback for attemptId: " + callback.getAttemptId());
+    public static void applyAnswerKeyFields(Question question, QuestionRequest qRequest) {
+        QuestionType type = qRequest.getQuestionType();
+        if (type == QuestionType.ESSAY) {
+            question.setEssayCorrectAnswer(qRequest.getEssayCorrectAnswer());
+        }
 
-        ExamAttempt attempt = attemptRepository.findById(callback.getAttemptId()).orElse(null);
-        if (attempt == null) {
-            System.err.println(">>> [ExamService] Error: Attempt not found with ID: " + callback.getAttemptId());
-            return false;
+        boolean numeric = type == QuestionType.NUMERIC;
+        question.setNumericAnswer(numeric ? qRequest.getNumericAnswer() : null);
+        question.setNumericTolerance(numeric ? qRequest.getNumericTolerance() : null);
+        question.setNumericUnit(numeric ? qRequest.getNumericUnit() : null);
+        question.setAcceptedAnswers(type == QuestionType.SHORT_ANSWER ? qRequest.getAcceptedAnswers() : null);
+    }
+
+    private List<ItemResponse> toItemResponses(Long examId, List<Answer> answers, AnswerKey answerKey,
+            double totalScore) {
+        List<ItemResponse> responses = new ArrayList<>(answers.size());
+        for (Answer answer : answers) {
+            Long questionId = answer.getQuestion().getQuestionId();
+            responses.add(ItemResponse.of(examId, questionId, answer.getSelectedOptionId(), answer.getScore(),
+                    answerKey.scoreAt(answerKey.indexOf(questionId)), totalScore));
         }
+        return responses;
+    }
 
-        // Force init
-        if (attempt.getAnswers() != null)
-            attempt.getAnswers().size();
-
-        double additionalScore = 0;
-        int updatedCount = 0;
-        boolean hasAiGraded = false;
-
-        // Duyệt qua kết quả AI trả về
-        if (callback.getAnswerScores() != null) {
-            System.out.println(">>> [ExamService] Processing " + callback.getAnswerScores().size() + " scores from AI");
-            for (Map<String, Object> answerScore : callback.getAnswerScores()) {
-                Long questionId = ((Number) answerScore.get("questionId")).longValue();
-                Double score = ((Number) answerScore.get("score")).doubleValue();
-                String feedback = (String) answerScore.get("feedback");
-
-                // Tìm câu trả lời tương ứng trong DB (dựa vào QuestionID)
-                for (Answer ans : attempt.getAnswers()) {
-                    // Kiểm tra null safety cho question
-                    if (ans.getQuestion() != null && ans.getQuestion().getQuestionId().equals(questionId)) {
-                        ans.applyAiGrading(score, feedback != null ? feedback : "AI đã chấm");
-
-                        // Lưu lại answer
-                        answerRepository.save(ans);
-
-                        System.out.println(">>> [ExamService] AI graded question " + questionId + ": " + score);
-
-                        additionalScore += score;
-                        updatedCount++;
-                        hasAiGraded = true;
-                        break;
-                    }
-                }
-            }
+    /**
+     * Tạo message yêu cầu AI chấm các câu tự luận của một lượt làm bài.
+     * Nội dung câu hỏi/đáp án tham khảo lấy từ bài thi trong cache. Các câu đã
+     * chấm tự động khi nộp (MCQ, NUMERIC/SHORT_ANSWER có đáp án) không gửi đi.
+     */
+    private ExamAnswersDTO buildGradingRequest(ExamAttempt attempt, CachedExam cachedExam) {
+        Map<Long, Question> questionsById = new HashMap<>();
+        for (Question q : cachedExam.exam().getQuestions()) {
+            questionsById.put(q.getQuestionId(), q);
         }
 
-        System.out.println(
-                ">>> [ExamService] Updated " + updatedCount + " answers. Additional Score: " + additionalScore);
+        ExamAnswersDTO dto = new ExamAnswersDTO();
+        dto.setAttemptId(attempt.getAttemptId());
+        dto.setStudentId(attempt.getUserId());
+        dto.setExamId(cachedExam.examId());
+        dto.setLanguage("vi"); // Mặc định hoặc lấy từ user preference
+
+        List<AnswerDTO> answerDTOs = new ArrayList<>();
+        AnswerKey answerKey = cachedExam.answerKey();
+        for (Answer ans : attempt.getAnswers()) {
+            Question q = questionsById.get(ans.getQuestion().getQuestionId());
+            if (q == null)
+                continue;
+            int index = answerKey.indexOf(q.getQuestionId());
+            if (index < 0 || answerKey.isGradedLocally(index))
+                continue;
+
+            EssayAnswer essay = new EssayAnswer();
+            essay.setQuestionId(q.getQuestionId());
+            essay.setStudentAnswer(ans.getTextAnswer());
+            essay.setQuestionText(q.getContent());
+            essay.setReferenceAnswer(q.getEssayCorrectAnswer());
+            essay.setMaxScore(q.getScore());
+            answerDTOs.add(essay);
+        }
+        dto.setAnswers(answerDTOs);
+        return dto;
+    }
 
-        // Cộng thêm điểm tự luận vào tổng điểm
-        attempt.setTotalScore(attempt.getTotalScore() + additionalScore);
+    /**
+     * Nhận callback từ AI service và cập nhật điểm vào DB
+     */
+    public boolean updateGradingResultFromAI(GradingResultCallbackDTO callback) {
+        System.out.println(">>> [ExamService] Received callback for attemptId: " + callback.getAttemptId());
 
-        if (hasAiGraded) {
-            attempt.setGradingStatus(GradingStatus.AI_GRADED);
-        } else {
-            // Nếu không có câu tự luận nào (hoặc lỗi), có thể coi là hoàn thành
-            attempt.setGradingStatus(GradingStatus.COMPLETED);
+        if (callback.getAttemptId() == null || !attemptRepository.existsById(callback.getAttemptId())) {
+            System.err.println(">>> [ExamService] Error: Attempt not found with ID: " + callback.getAttemptId());
+            return false;
         }
 
-        attemptRepository.save(attempt);
+        // Dùng chung đường xử lý lô (idempotent) với GradingResultListener
+        int updatedCount = gradingResultBatchProcessor.apply(List.of(callback));
+        System.out.println(">>> [ExamService] Updated " + updatedCount + " answers for attemptId: "
+                + callback.getAttemptId());
         return true;
     }
 
     @Transactional
     public Exam updateExam(Long examId, CreateExamRequest request) {
-        Exam exam = examRepository.findById(examId)
-                .orElseThrow(() -> new RuntimeException("Exam not found"));
+        // Khóa bài thi + tăng revision trước khi đọc (như deleteExam)
+        if (examRepository.incrementRevision(examId) == 0) {
+            throw new RuntimeException("Exam not found");
+        }
+        Exam exam = examRepository.findById(examId).orElseThrow();
 
         // 1. Cập nhật thông tin chung
         exam.setTitle(request.getTitle());
         exam.setDescription(request.getDescription());
         exam.setDuration(request.getDuration());
         exam.setActive(request.isActive());
+        exam.setStartTime(request.getStartTime());
         exam.setEndTime(request.getEndTime());
         exam.setMaxAttempts(request.getMaxAttempts() < 1 ? 1 : request.getMaxAttempts());
         exam.setIsStrict(request.getIsStrict() != null ? request.getIsStrict() : false);
@@ -558,12 +677,11 @@ public class ExamService {
                 question.setContent(qRequest.getContent());
                 question.setScore(qRequest.getScore());
                 question.setQuestionType(qRequest.getQuestionType());
+                question.setTopic(qRequest.getTopic());
                 question.setOrderIndex(qRequest.getOrderIndex() != null ? qRequest.getOrderIndex() : currentIndex++);
-                question.setImage(qRequest.getImage());
+                questionImageService.applyImage(question, qRequest.getImage());
 
-                if (qRequest.getQuestionType() == QuestionType.ESSAY) {
-                    question.setEssayCorrectAnswer(qRequest.getEssayCorrectAnswer());
-                }
+                applyAnswerKeyFields(question, qRequest);
 
                 // --- XỬ LÝ OPTIONS (Tương tự logic Question để giữ lại Option ID cho Answers)
                 // ---
@@ -581,7 +699,12 @@ public class ExamService {
             // Exam có cài đặt orphanRemoval = true
         }
 
-        return examRepository.save(exam);
+        Exam savedExam = examRepository.save(exam);
+        examDefinitionCache.invalidateAfterCommit(examId, savedExam.getRevision());
+        questionBankService.reindexExamAfterCommit(examId);
+        // Điểm tối đa có thể đã đổi -> dựng lại histogram ở lần đọc sau
+        examStatisticsService.invalidateAfterCommit(examId);
+        return savedExam;
     }
 
     // Helper method để cập nhật Options mà không làm mất ID
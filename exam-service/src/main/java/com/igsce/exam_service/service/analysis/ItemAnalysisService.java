@@ -0,0 +1,301 @@
+package com.igsce.exam_service.service.analysis;
+
+import com.igsce.exam_service.dto.ItemAnalysisDTO;
+import com.igsce.exam_service.dto.ItemAnalysisDTO.OptionStats;
+import com.igsce.exam_service.entity.Question;
+import com.igsce.exam_service.entity.QuestionItemStats;
+import com.igsce.exam_service.entity.QuestionOption;
+import com.igsce.exam_service.entity.QuestionOptionStats;
+import com.igsce.exam_service.repository.QuestionItemStatsRepository;
+import com.igsce.exam_service.repository.QuestionOptionStatsRepository;
+import com.igsce.exam_service.service.cache.CachedExam;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.util.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Phân tích câu hỏi (item analysis) cập nhật tăng dần, không cần quét lại bảng
+ * exam_answers.
+ *
+ * - Mỗi câu trả lời đóng góp (n, Σx, Σx², Σy, Σy², Σxy) vào câu hỏi và +1 vào
+ * lựa chọn đã chọn. Khi điểm thay đổi (AI/giáo viên chấm) thì đóng góp cũ của
+ * cả lượt làm được trừ đi và đóng góp mới được cộng vào (O(1) mỗi câu trả lời).
+ * - Delta được gộp trong bộ nhớ sau khi transaction COMMIT và flush định kỳ
+ * bằng batch upsert cộng dồn (phép cộng giao hoán nên các replica flush song
+ * song không xung đột).
+ * - Endpoint đọc trực tiếp các tổng đã lưu: số liệu trễ tối đa một chu kỳ flush.
+ * - Delta chỉ nằm trong bộ nhớ tới lần flush, nên replica chết đột ngột làm
+ * tổng bị lệch; rebuildExam tính lại toàn bộ tổng của một bài thi từ
+ * exam_answers.
+ */
+@Service
+public class ItemAnalysisService {
+
+    private static final String UPSERT_ITEM_SQL = "INSERT INTO question_item_stats "
+            + "(question_id, exam_id, responses, sum_x, sum_x2, sum_y, sum_y2, sum_xy, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+            + "responses = responses + VALUES(responses), sum_x = sum_x + VALUES(sum_x), "
+            + "sum_x2 = sum_x2 + VALUES(sum_x2), sum_y = sum_y + VALUES(sum_y), "
+            + "sum_y2 = sum_y2 + VALUES(sum_y2), sum_xy = sum_xy + VALUES(sum_xy), updated_at = VALUES(updated_at)";
+
+    private static final String UPSERT_OPTION_SQL = "INSERT INTO question_option_stats "
+            + "(question_id, option_id, exam_id, selections) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE selections = selections + VALUES(selections)";
+
+    // Đóng góp hiện tại của các lượt làm đã nộp (x chuẩn hóa theo điểm tối đa của câu)
+    private static final String RESPONSES_SQL = "SELECT a.exam_id, e.question_id, e.selected_option_id, e.score, "
+            + "q.score, a.total_score FROM exam_answers e "
+            + "JOIN exam_attempts a ON a.attempt_id = e.attempt_id "
+            + "JOIN questions q ON q.question_id = e.question_id "
+            + "WHERE e.attempt_id IN (:attemptIds) AND a.submitted_at IS NOT NULL";
+
+    // Tính lại tổng của cả bài thi, cùng cách chuẩn hóa với ItemResponse.of
+    private static final String REBUILD_ITEMS_SQL = "INSERT INTO question_item_stats "
+            + "(question_id, exam_id, responses, sum_x, sum_x2, sum_y, sum_y2, sum_xy, updated_at) "
+            + "SELECT r.question_id, r.exam_id, COUNT(*), SUM(r.x), SUM(r.x * r.x), SUM(r.y), SUM(r.y * r.y), "
+            + "SUM(r.x * r.y), ? FROM (SELECT a.exam_id, e.question_id, "
+            + "CASE WHEN q.score > 0 THEN LEAST(GREATEST(COALESCE(e.score, 0) / q.score, 0), 1) ELSE 0 END AS x, "
+            + "COALESCE(a.total_score, 0) AS y FROM exam_answers e "
+            + "JOIN exam_attempts a ON a.attempt_id = e.attempt_id "
+            + "JOIN questions q ON q.question_id = e.question_id "
+            + "WHERE a.exam_id = ? AND a.submitted_at IS NOT NULL) r "
+            + "GROUP BY r.question_id, r.exam_id";
+
+    private static final String REBUILD_OPTIONS_SQL = "INSERT INTO question_option_stats "
+            + "(question_id, option_id, exam_id, selections) "
+            + "SELECT e.question_id, e.selected_option_id, a.exam_id, COUNT(*) FROM exam_answers e "
+            + "JOIN exam_attempts a ON a.attempt_id = e.attempt_id "
+            + "WHERE a.exam_id = ? AND a.submitted_at IS NOT NULL AND e.selected_option_id IS NOT NULL "
+            + "GROUP BY e.question_id, e.selected_option_id, a.exam_id";
+
+    private final ConcurrentHashMap<Long, ItemDelta> itemDeltas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<OptionKey, Long> optionDeltas = new ConcurrentHashMap<>();
+    // flush và rebuild không chạy xen nhau: upsert của delta cũ ghi sau rebuild sẽ bị cộng trùng
+    private final Object writeLock = new Object();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final QuestionItemStatsRepository itemStatsRepository;
+    private final QuestionOptionStatsRepository optionStatsRepository;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final TransactionTemplate transactionTemplate;
+
+    public ItemAnalysisService(JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            QuestionItemStatsRepository itemStatsRepository,
+            QuestionOptionStatsRepository optionStatsRepository,
+            ExamDefinitionCache examDefinitionCache,
+            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.itemStatsRepository = itemStatsRepository;
+        this.optionStatsRepository = optionStatsRepository;
+        this.examDefinitionCache = examDefinitionCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Đọc đóng góp hiện tại của các lượt làm (dùng làm "before"/"after" khi chấm lại)
+     */
+    public List<ItemResponse> loadResponses(Collection<Long> attemptIds) {
+        if (attemptIds.isEmpty()) {
+            return List.of();
+        }
+        return namedJdbcTemplate.query(RESPONSES_SQL, new MapSqlParameterSource("attemptIds", attemptIds),
+                (rs, rowNum) -> ItemResponse.of(
+                        rs.getLong(1),
+                        rs.getLong(2),
+                        rs.getObject(3, Long.class),
+                        rs.getDouble(4),
+                        rs.getDouble(5),
+                        rs.getDouble(6)));
+    }
+
+    /**
+     * Sau khi COMMIT: trừ đóng góp cũ (removed) và cộng đóng góp mới (added)
+     */
+    public void recordAfterCommit(List<ItemResponse> removed, List<ItemResponse> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> {
+            removed.forEach(r -> accumulate(r, -1));
+            added.forEach(r -> accumulate(r, 1));
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${exam.item-analysis.flush-interval-ms:5000}")
+    public void flush() {
+        synchronized (writeLock) {
+            flushDeltas();
+        }
+    }
+
+    private void flushDeltas() {
+        Map<Long, ItemDelta> items = drain(itemDeltas);
+        Map<OptionKey, Long> options = drain(optionDeltas);
+        if (items.isEmpty() && options.isEmpty()) {
+            return;
+        }
+
+        try {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> itemArgs = new ArrayList<>(items.size());
+            items.forEach((questionId, d) -> itemArgs.add(new Object[] { questionId, d.examId, d.n, d.sumX,
+                    d.sumX2, d.sumY, d.sumY2, d.sumXy, now }));
+            List<Object[]> optionArgs = new ArrayList<>(options.size());
+            options.forEach((key, count) -> optionArgs.add(new Object[] { key.questionId(), key.optionId(),
+                    key.examId(), count }));
+
+            if (!itemArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_ITEM_SQL, itemArgs);
+            }
+            if (!optionArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_OPTION_SQL, optionArgs);
+            }
+        } catch (Exception e) {
+            // Trả delta lại để flush lần sau (phép cộng nên thứ tự không quan trọng)
+            items.forEach((questionId, d) -> itemDeltas.merge(questionId, d, ItemDelta::plus));
+            options.forEach((key, count) -> optionDeltas.merge(key, count, Long::sum));
+            System.err.println(">>> [ItemAnalysis] Flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Xóa và tính lại thống kê của bài thi từ exam_answers (sau khi replica chết
+     * mất delta, hoặc nghi số liệu bị lệch). Delta chưa flush của bài thi này
+     * trên replica hiện tại bị bỏ vì đã nằm trong exam_answers; delta của replica
+     * khác (tối đa một chu kỳ flush) vẫn có thể cộng trùng, nên chạy lúc ít bài nộp.
+     *
+     * @return false nếu bài thi không tồn tại
+     */
+    public boolean rebuildExam(Long examId) {
+        if (examDefinitionCache.find(examId).isEmpty()) {
+            return false;
+        }
+        synchronized (writeLock) {
+            itemDeltas.values().removeIf(d -> examId.equals(d.examId()));
+            optionDeltas.keySet().removeIf(key -> examId.equals(key.examId()));
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM question_item_stats WHERE exam_id = ?", examId);
+                jdbcTemplate.update("DELETE FROM question_option_stats WHERE exam_id = ?", examId);
+                jdbcTemplate.update(REBUILD_ITEMS_SQL, Timestamp.valueOf(LocalDateTime.now()), examId);
+                jdbcTemplate.update(REBUILD_OPTIONS_SQL, examId);
+            });
+        }
+        System.out.println(">>> [ItemAnalysis] Rebuilt item statistics for exam " + examId);
+        return true;
+    }
+
+    /**
+     * Phân tích toàn bộ câu hỏi của bài thi, theo thứ tự câu
+     */
+    public Optional<List<ItemAnalysisDTO>> analyzeExam(Long examId) {
+        Optional<CachedExam> cachedExam = examDefinitionCache.find(examId);
+        if (cachedExam.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<Long, QuestionItemStats> items = itemStatsRepository.findByExamId(examId).stream()
+                .collect(Collectors.toMap(QuestionItemStats::getQuestionId, Function.identity()));
+        Map<Long, Long> selections = optionStatsRepository.findByExamId(examId).stream()
+                .collect(Collectors.toMap(QuestionOptionStats::getOptionId, QuestionOptionStats::getSelections));
+
+        List<ItemAnalysisDTO> result = new ArrayList<>();
+        List<Question> questions = new ArrayList<>(cachedExam.get().exam().getQuestions());
+        questions.sort(Comparator.comparingInt(Question::getOrderIndex));
+
+        for (Question question : questions) {
+            QuestionItemStats stats = items.get(question.getQuestionId());
+            long n = stats != null ? stats.getResponses() : 0;
+
+            List<OptionStats> options = new ArrayList<>();
+            if (question.getOptions() != null) {
+                for (QuestionOption option : question.getOptions()) {
+                    long count = selections.getOrDefault(option.getOptionId(), 0L);
+                    options.add(new OptionStats(option.getOptionId(), option.getContent(), option.isCorrect(),
+                            count, n > 0 ? (double) count / n : 0));
+                }
+            }
+
+            result.add(new ItemAnalysisDTO(
+                    question.getQuestionId(),
+                    question.getOrderIndex(),
+                    question.getQuestionType(),
+                    question.getContent(),
+                    n,
+                    n > 0 ? stats.getSumX() / n : null,
+                    n > 1 ? pointBiserial(stats) : null,
+                    options));
+        }
+        return Optional.of(result);
+    }
+
+    // r = (nΣxy − ΣxΣy) / sqrt((nΣx² − (Σx)²)(nΣy² − (Σy)²))
+    private static Double pointBiserial(QuestionItemStats s) {
+        double n = s.getResponses();
+        double varX = n * s.getSumX2() - s.getSumX() * s.getSumX();
+        double varY = n * s.getSumY2() - s.getSumY() * s.getSumY();
+        if (varX <= 1e-12 || varY <= 1e-12) {
+            return null;
+        }
+        return (n * s.getSumXy() - s.getSumX() * s.getSumY()) / Math.sqrt(varX * varY);
+    }
+
+    private void accumulate(ItemResponse r, int sign) {
+        itemDeltas.merge(r.questionId(), ItemDelta.of(r, sign), ItemDelta::plus);
+        if (r.optionId() != null) {
+            optionDeltas.merge(new OptionKey(r.examId(), r.questionId(), r.optionId()), (long) sign, Long::sum);
+        }
+    }
+
+    // Lấy và xóa từng key một cách nguyên tử (writer đang merge vào key đó sẽ tạo entry mới)
+    private static <K, V> Map<K, V> drain(ConcurrentHashMap<K, V> source) {
+        Map<K, V> drained = new HashMap<>();
+        for (K key : source.keySet()) {
+            V value = source.remove(key);
+            if (value != null) {
+                drained.put(key, value);
+            }
+        }
+        return drained;
+    }
+
+    private record OptionKey(Long examId, Long questionId, Long optionId) {
+    }
+
+    // Delta bất biến: merge() tạo object mới nên không cần khóa
+    private record ItemDelta(Long examId, long n, double sumX, double sumX2, double sumY, double sumY2,
+            double sumXy) {
+
+        static ItemDelta of(ItemResponse r, int sign) {
+            double x = r.itemScore();
+            double y = r.totalScore();
+            return new ItemDelta(r.examId(), sign, sign * x, sign * x * x, sign * y, sign * y * y, sign * x * y);
+        }
+
+        ItemDelta plus(ItemDelta other) {
+            return new ItemDelta(examId, n + other.n, sumX + other.sumX, sumX2 + other.sumX2,
+                    sumY + other.sumY, sumY2 + other.sumY2, sumXy + other.sumXy);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.igsce.exam_service.service.analysis;
+
+/**
+ * Đóng góp của một câu trả lời vào thống kê câu hỏi.
+ *
+ * @param itemScore  điểm câu đã chuẩn hóa về 0..1
+ * @param totalScore tổng điểm của lượt làm
+ * @param optionId   lựa chọn đã chọn (null nếu không phải MCQ/không chọn)
+ */
+public record ItemResponse(
+        Long examId,
+        Long questionId,
+        Long optionId,
+        double itemScore,
+        double totalScore) {
+
+    public static ItemResponse of(Long examId, Long questionId, Long optionId, double score, double maxScore,
+            double totalScore) {
+        double normalized = maxScore > 0 ? Math.min(Math.max(score / maxScore, 0), 1) : 0;
+        return new ItemResponse(examId, questionId, optionId, normalized, totalScore);
+    }
+}
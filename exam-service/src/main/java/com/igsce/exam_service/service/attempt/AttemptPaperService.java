@@ -0,0 +1,93 @@
+package com.igsce.exam_service.service.attempt;
+
+import com.igsce.exam_service.dto.AttemptPaperDTO;
+import com.igsce.exam_service.dto.AttemptPaperDTO.PaperOption;
+import com.igsce.exam_service.dto.AttemptPaperDTO.PaperQuestion;
+import com.igsce.exam_service.entity.Exam;
+import com.igsce.exam_service.entity.Question;
+import com.igsce.exam_service.entity.QuestionOption;
+import com.igsce.exam_service.repository.ExamAttemptRepository;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.util.SeededShuffle;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Phát đề cho một lượt làm bài (không kèm đáp án).
+ *
+ * - Bài isStrict: thứ tự câu hỏi và lựa chọn được xáo theo attempt.shuffleSeed,
+ * tính lại mỗi lần phát đề (O(n), một int[] cho mỗi danh sách) thay vì lưu
+ * hoán vị cho từng attempt.
+ * - Thứ tự lựa chọn của mỗi câu dùng seed con suy ra từ questionId nên không
+ * đổi khi giáo viên thêm/bớt câu khác.
+ * - Bài làm gửi lên theo questionId/optionId nên khi chấm không cần đảo ngược
+ * hoán vị: AnswerKey trong ExamDefinitionCache được dùng nguyên như cũ.
+ */
+@Service
+public class AttemptPaperService {
+
+    private final ExamAttemptRepository attemptRepository;
+    private final ExamDefinitionCache examDefinitionCache;
+
+    public AttemptPaperService(ExamAttemptRepository attemptRepository, ExamDefinitionCache examDefinitionCache) {
+        this.attemptRepository = attemptRepository;
+        this.examDefinitionCache = examDefinitionCache;
+    }
+
+    /**
+     * Trả về rỗng nếu attempt không tồn tại hoặc không thuộc về userId
+     */
+    public Optional<AttemptPaperDTO> getPaper(Long attemptId, Long userId) {
+        List<Object[]> rows = attemptRepository.findPaperHeader(attemptId);
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        // [examId, userId, shuffleSeed, deadline, submittedAt]
+        Object[] row = rows.get(0);
+        if (!Objects.equals(row[1], userId)) {
+            return Optional.empty();
+        }
+        return examDefinitionCache.find((Long) row[0])
+                .map(cached -> buildPaper(attemptId, cached.exam(), (Long) row[2], (LocalDateTime) row[3],
+                        row[4] != null));
+    }
+
+    static AttemptPaperDTO buildPaper(Long attemptId, Exam exam, Long shuffleSeed, LocalDateTime deadline,
+            boolean submitted) {
+        // Câu hỏi trong cache đã sắp theo orderIndex (ExamDefinitionLoader)
+        List<Question> questions = exam.getQuestions();
+        int n = questions.size();
+        int[] order = shuffleSeed != null ? SeededShuffle.permutation(n, shuffleSeed) : null;
+
+        List<PaperQuestion> paperQuestions = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Question question = questions.get(order != null ? order[i] : i);
+            paperQuestions.add(toPaperQuestion(question, shuffleSeed));
+        }
+
+        return new AttemptPaperDTO(attemptId, exam.getExamId(), exam.getTitle(), exam.getDuration(),
+                Boolean.TRUE.equals(exam.getIsStrict()), deadline, submitted, paperQuestions);
+    }
+
+    private static PaperQuestion toPaperQuestion(Question question, Long shuffleSeed) {
+        List<QuestionOption> options = question.getOptions() != null ? question.getOptions() : List.of();
+        int m = options.size();
+        int[] order = shuffleSeed != null && m > 1
+                ? SeededShuffle.permutation(m, SeededShuffle.derive(shuffleSeed, question.getQuestionId()))
+                : null;
+
+        List<PaperOption> paperOptions = new ArrayList<>(m);
+        for (int i = 0; i < m; i++) {
+            QuestionOption option = options.get(order != null ? order[i] : i);
+            paperOptions.add(new PaperOption(option.getOptionId(), option.getContent()));
+        }
+
+        return new PaperQuestion(question.getQuestionId(), question.getContent(), question.getScore(),
+                question.getQuestionType(), question.getImage(), question.getNumericUnit(), paperOptions);
+    }
+}
@@ -0,0 +1,84 @@
+package com.igsce.exam_service.service.attempt;
+
+import com.igsce.exam_service.entity.ExamAttempt;
+import com.igsce.exam_service.repository.ExamAttemptRepository;
+import com.igsce.exam_service.repository.ExamRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Cấp lượt làm bài (attempt slot) cho (exam, user) mà không vượt maxAttempts.
+ *
+ * - Trong một replica: lock theo stripe của (examId, userId), các học sinh khác
+ * nhau gần như không tranh chấp nhau (không có lock toàn bảng).
+ * - Giữa các replica: unique (exam_id, user_id, attempt_number). Hai request
+ * cùng lấy một số thứ tự thì chỉ một insert thành công, request còn lại đếm
+ * lại và thử số kế tiếp.
+ */
+@Component
+public class AttemptSlotAllocator {
+
+    private static final int MAX_RETRIES = 3;
+
+    private final ExamAttemptRepository attemptRepository;
+    private final ExamRepository examRepository;
+    private final ReentrantLock[] stripes;
+
+    public AttemptSlotAllocator(ExamAttemptRepository attemptRepository,
+            ExamRepository examRepository,
+            @Value("${exam.start.lock-stripes:1024}") int stripeCount) {
+        this.attemptRepository = attemptRepository;
+        this.examRepository = examRepository;
+        int size = Integer.highestOneBit(Math.max(stripeCount, 1) * 2 - 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Tạo attempt mới với attemptNumber kế tiếp. Ném RuntimeException nếu đã hết lượt.
+     *
+     * @param initializer điền các field còn lại của attempt trước khi lưu
+     */
+    public ExamAttempt reserve(Long examId, Long userId, int maxAttempts, Consumer<ExamAttempt> initializer) {
+        ReentrantLock lock = stripes[stripeIndex(examId, userId)];
+        lock.lock();
+        try {
+            for (int retry = 0; retry < MAX_RETRIES; retry++) {
+                int used = attemptRepository.countByExam_ExamIdAndUserId(examId, userId);
+                if (used >= maxAttempts) {
+                    throw new RuntimeException(
+                            "Bạn đã hết lượt làm bài! (" + used + " / " + maxAttempts + " lần)");
+                }
+
+                ExamAttempt attempt = new ExamAttempt();
+                attempt.setExam(examRepository.getReferenceById(examId));
+                attempt.setUserId(userId);
+                attempt.setAttemptNumber(used + 1);
+                initializer.accept(attempt);
+
+                try {
+                    return attemptRepository.saveAndFlush(attempt);
+                } catch (DataIntegrityViolationException e) {
+                    // Replica khác vừa lấy số thứ tự này -> đếm lại
+                    System.err.println(">>> [ExamService] Attempt slot " + (used + 1) + " of exam " + examId
+                            + " taken concurrently for user " + userId + ", retrying");
+                }
+            }
+            throw new RuntimeException("Không thể bắt đầu bài thi lúc này, vui lòng thử lại");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stripeIndex(Long examId, Long userId) {
+        int h = 31 * Long.hashCode(examId) + Long.hashCode(userId);
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+}
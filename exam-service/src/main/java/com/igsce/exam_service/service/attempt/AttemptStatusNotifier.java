@@ -0,0 +1,121 @@
+package com.igsce.exam_service.service.attempt;
+
+import com.igsce.exam_service.dto.AttemptGradedEvent;
+import com.igsce.exam_service.dto.AttemptStatusDTO;
+import com.igsce.exam_service.enums.GradingStatus;
+import com.igsce.exam_service.repository.ExamAttemptRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-poll trạng thái chấm của lượt làm bài (fallback khi client không giữ
+ * được WebSocket).
+ *
+ * Request được giữ lại (DeferredResult, không chiếm thread servlet) cho tới khi
+ * nhận AttemptGradedEvent của lượt làm đó hoặc hết thời gian chờ. Mỗi request
+ * chỉ đọc 2 cột của exam_attempts thay vì load cả bài làm + câu hỏi.
+ * Chỉ chủ lượt làm xem được trạng thái (người khác nhận 404, như /paper).
+ */
+@Service
+public class AttemptStatusNotifier {
+
+    private final ConcurrentHashMap<Long, Set<DeferredResult<ResponseEntity<AttemptStatusDTO>>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final ExamAttemptRepository attemptRepository;
+    private final long maxWaitMs;
+    private final int maxWaiters;
+
+    public AttemptStatusNotifier(ExamAttemptRepository attemptRepository,
+            MeterRegistry meterRegistry,
+            @Value("${exam.attempt-status.max-wait-ms:30000}") long maxWaitMs,
+            @Value("${exam.attempt-status.max-waiters:10000}") int maxWaiters) {
+        this.attemptRepository = attemptRepository;
+        this.maxWaitMs = maxWaitMs;
+        this.maxWaiters = maxWaiters;
+
+        Gauge.builder("exam.attempt.status.waiters", waiting, AtomicInteger::get)
+                .description("Long-poll requests waiting for a grading result")
+                .register(meterRegistry);
+    }
+
+    public Optional<AttemptStatusDTO> getStatus(Long attemptId, Long userId) {
+        List<Object[]> rows = attemptRepository.findGradingStatus(attemptId, userId);
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Object[] row = rows.get(0);
+        return Optional.of(new AttemptStatusDTO(attemptId, (GradingStatus) row[0], ((Number) row[1]).doubleValue()));
+    }
+
+    /**
+     * Trả về ngay nếu trạng thái hiện tại khác `since`; ngược lại chờ tối đa
+     * waitMs (bị giới hạn bởi exam.attempt-status.max-wait-ms) rồi trả về trạng
+     * thái mới nhất.
+     */
+    public DeferredResult<ResponseEntity<AttemptStatusDTO>> awaitChange(Long attemptId, Long userId,
+            GradingStatus since, long waitMs) {
+        long timeoutMs = Math.min(Math.max(waitMs, 0), maxWaitMs);
+        DeferredResult<ResponseEntity<AttemptStatusDTO>> result = new DeferredResult<>(timeoutMs > 0 ? timeoutMs : null);
+
+        // Kiểm tra quyền sở hữu trước khi đăng ký chờ: sự kiện chấm xong không được
+        // trả trạng thái cho request của người khác
+        Optional<AttemptStatusDTO> initial = getStatus(attemptId, userId);
+        if (initial.isEmpty() || since == null || timeoutMs == 0 || waiting.get() >= maxWaiters
+                || initial.get().getGradingStatus() != since) {
+            result.setResult(initial.map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build()));
+            return result;
+        }
+
+        // Đăng ký trước rồi mới đọc trạng thái: sự kiện đến giữa hai bước vẫn đánh thức được request
+        waiters.computeIfAbsent(attemptId, id -> ConcurrentHashMap.newKeySet()).add(result);
+        waiting.incrementAndGet();
+        result.onCompletion(() -> {
+            waiting.decrementAndGet();
+            waiters.computeIfPresent(attemptId, (id, set) -> {
+                set.remove(result);
+                return set.isEmpty() ? null : set;
+            });
+        });
+        result.onTimeout(() -> result.setResult(currentResponse(attemptId, userId)));
+
+        Optional<AttemptStatusDTO> current = getStatus(attemptId, userId);
+        if (current.isEmpty() || current.get().getGradingStatus() != since) {
+            result.setResult(current.map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build()));
+        }
+        return result;
+    }
+
+    /**
+     * Nhận sự kiện chấm xong (từ RabbitMQ, mọi replica) và trả kết quả cho các request đang chờ
+     */
+    public void onAttemptGraded(AttemptGradedEvent event) {
+        if (event == null || event.getAttemptId() == null) {
+            return;
+        }
+        Set<DeferredResult<ResponseEntity<AttemptStatusDTO>>> pending = waiters.remove(event.getAttemptId());
+        if (pending == null) {
+            return;
+        }
+
+        AttemptStatusDTO status = new AttemptStatusDTO(event.getAttemptId(),
+                GradingStatus.valueOf(event.getGradingStatus()), event.getTotalScore());
+        for (DeferredResult<ResponseEntity<AttemptStatusDTO>> result : pending) {
+            result.setResult(ResponseEntity.ok(status));
+        }
+    }
+
+    private ResponseEntity<AttemptStatusDTO> currentResponse(Long attemptId, Long userId) {
+        return getStatus(attemptId, userId).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+    }
+}
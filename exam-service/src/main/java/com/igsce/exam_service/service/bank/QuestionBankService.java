@@ -0,0 +1,276 @@
+package com.igsce.exam_service.service.bank;
+
+import com.igsce.exam_service.dto.QuestionBankHit;
+import com.igsce.exam_service.entity.Exam;
+import com.igsce.exam_service.entity.Question;
+import com.igsce.exam_service.entity.QuestionOption;
+import com.igsce.exam_service.enums.QuestionType;
+import com.igsce.exam_service.repository.ExamRepository;
+import com.igsce.exam_service.repository.QuestionRepository;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.service.stats.ExamStatisticsService;
+import com.igsce.exam_service.service.storage.QuestionImageService;
+import com.igsce.exam_service.util.TransactionUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ngân hàng câu hỏi: tìm kiếm trên toàn bộ câu hỏi của mọi bài thi và lấy lại
+ * câu hỏi vào bài thi khác.
+ *
+ * - Chỉ mục (QuestionSearchIndex) được dựng khi khởi động từ DB và cập nhật
+ * theo từng bài thi sau khi createExam/updateExam/import commit. Replica khác
+ * cập nhật theo message vô hiệu hóa cache bài thi.
+ * - Mọi thao tác ghi chỉ mục chạy tuần tự trên một thread riêng, nên cập nhật
+ * đến trong lúc đang dựng lại chỉ mục vẫn được áp dụng sau cùng.
+ * - Lấy lại câu hỏi tạo một bản sao trong bài thi đích và ghi sourceQuestionId
+ * về câu gốc: bài làm, điểm và thống kê vẫn gắn với câu hỏi của từng bài thi,
+ * ảnh dùng chung hash trong blob store nên không bị nhân bản. Bản sao không
+ * được đưa vào chỉ mục, kết quả tìm kiếm chỉ gồm câu gốc.
+ *
+ * Metrics: exam_bank_search (thời gian tra chỉ mục), exam_bank_index_documents.
+ */
+@Service
+public class QuestionBankService {
+
+    public static final int SEARCH_MAX_LIMIT = 100;
+    public static final int REUSE_MAX_QUESTIONS = 200;
+    private static final int INDEX_BATCH_SIZE = 5000;
+
+    private final QuestionRepository questionRepository;
+    private final ExamRepository examRepository;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final ExamStatisticsService examStatisticsService;
+    private final QuestionImageService questionImageService;
+    private final QuestionSearchIndex index = new QuestionSearchIndex();
+    private final ExecutorService indexer;
+    private final Timer searchTimer;
+
+    @Value("${exam.bank.index-on-startup:true}")
+    private boolean indexOnStartup;
+
+    public QuestionBankService(QuestionRepository questionRepository,
+            ExamRepository examRepository,
+            ExamDefinitionCache examDefinitionCache,
+            ExamStatisticsService examStatisticsService,
+            QuestionImageService questionImageService,
+            MeterRegistry meterRegistry) {
+        this.questionRepository = questionRepository;
+        this.examRepository = examRepository;
+        this.examDefinitionCache = examDefinitionCache;
+        this.examStatisticsService = examStatisticsService;
+        this.questionImageService = questionImageService;
+        this.indexer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "question-bank-indexer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.searchTimer = Timer.builder("exam.bank.search")
+                .description("Question bank index lookup time")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("exam.bank.index.documents", index, QuestionSearchIndex::size)
+                .description("Questions in the question bank search index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Dựng chỉ mục từ DB (keyset theo questionId) trên thread indexer
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        if (!indexOnStartup) {
+            return;
+        }
+        indexer.execute(() -> {
+            long startNanos = System.nanoTime();
+            long afterId = 0;
+            try {
+                while (true) {
+                    List<Object[]> batch = questionRepository.findBankIndexBatch(afterId,
+                            PageRequest.of(0, INDEX_BATCH_SIZE));
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    for (Object[] row : batch) {
+                        putRow(row);
+                        afterId = (Long) row[0];
+                    }
+                }
+                System.out.println(">>> [QuestionBank] Indexed " + index.size() + " questions in "
+                        + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+            } catch (Exception e) {
+                System.err.println(">>> [QuestionBank] Index rebuild stopped after question " + afterId + ": "
+                        + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Cập nhật chỉ mục cho các câu hỏi của bài thi sau khi transaction hiện tại
+     * commit
+     */
+    public void reindexExamAfterCommit(Long examId) {
+        TransactionUtils.afterCommit(() -> indexer.execute(() -> reindexExam(examId)));
+    }
+
+    /**
+     * Bài thi đã đổi trên replica khác (examId = null: chỉ là xóa cache hàng
+     * loạt, vd: migrate ảnh, không đổi nội dung câu hỏi)
+     */
+    public void onRemoteExamChange(Long examId) {
+        if (examId != null) {
+            indexer.execute(() -> reindexExam(examId));
+        }
+    }
+
+    private void reindexExam(Long examId) {
+        try {
+            Set<Long> stale = index.questionsOfExam(examId);
+            for (Object[] row : questionRepository.findBankIndexRowsByExamId(examId)) {
+                putRow(row);
+                stale.remove((Long) row[0]);
+            }
+            stale.forEach(index::remove);
+        } catch (Exception e) {
+            System.err.println(">>> [QuestionBank] Reindex failed for exam " + examId + ": " + e.getMessage());
+        }
+    }
+
+    // [questionId, examId, content, questionType, topic]
+    private void putRow(Object[] row) {
+        index.put((Long) row[0], (Long) row[1], (String) row[2], (QuestionType) row[3], (String) row[4]);
+    }
+
+    /**
+     * Tìm câu hỏi theo nội dung (BM25, không phân biệt dấu), lọc theo loại câu
+     * và chủ đề
+     */
+    @Transactional(readOnly = true)
+    public List<QuestionBankHit> search(String query, QuestionType type, String topic, int limit) {
+        int size = Math.max(1, Math.min(limit, SEARCH_MAX_LIMIT));
+        List<QuestionSearchIndex.Hit> hits = searchTimer.record(() -> index.search(query, type, topic, size));
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Object[]> rows = new HashMap<>();
+        List<Long> ids = hits.stream().map(QuestionSearchIndex.Hit::questionId).toList();
+        for (Object[] row : questionRepository.findBankSummaries(ids)) {
+            rows.put((Long) row[0], row);
+        }
+
+        List<QuestionBankHit> result = new ArrayList<>(hits.size());
+        for (QuestionSearchIndex.Hit hit : hits) {
+            // [questionId, examId, content, questionType, topic, score, imageHash]
+            Object[] row = rows.get(hit.questionId());
+            if (row == null) {
+                continue; // Đã xóa khỏi DB, chỉ mục chưa kịp cập nhật
+            }
+            String imageHash = (String) row[6];
+            result.add(new QuestionBankHit((Long) row[0], (Long) row[1], (String) row[2], (QuestionType) row[3],
+                    (String) row[4], (Double) row[5], imageHash != null ? Question.IMAGE_URL_PREFIX + imageHash : null,
+                    hit.score()));
+        }
+        return result;
+    }
+
+    /**
+     * Thêm các câu hỏi ngân hàng vào cuối bài thi examId. Trả về id các câu hỏi
+     * mới theo thứ tự gửi lên, Optional.empty() nếu không có bài thi.
+     */
+    @Transactional
+    public Optional<List<Long>> reuseQuestions(Long examId, List<Long> questionIds) {
+        if (questionIds == null || questionIds.isEmpty()) {
+            throw new IllegalArgumentException("questionIds is required");
+        }
+        if (questionIds.size() > REUSE_MAX_QUESTIONS) {
+            throw new IllegalArgumentException("At most " + REUSE_MAX_QUESTIONS + " questions per request");
+        }
+        if (questionIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("questionIds must not contain null");
+        }
+
+        // Khóa bài thi trước khi đọc orderIndex kế tiếp (revision mới dùng để vô hiệu hóa cache)
+        if (examRepository.incrementRevision(examId) == 0) {
+            return Optional.empty();
+        }
+        Exam exam = examRepository.findById(examId).orElseThrow();
+
+        Map<Long, Question> sources = new HashMap<>();
+        for (Question question : questionRepository.findAllWithOptionsByIds(new HashSet<>(questionIds))) {
+            sources.put(question.getQuestionId(), question);
+        }
+        for (Long questionId : questionIds) {
+            if (!sources.containsKey(questionId)) {
+                throw new IllegalArgumentException("Question not found: " + questionId);
+            }
+        }
+
+        int orderIndex = questionRepository.findNextOrderIndex(examId);
+        List<Question> copies = new ArrayList<>(questionIds.size());
+        for (Long questionId : questionIds) {
+            copies.add(copyInto(exam, sources.get(questionId), orderIndex++));
+        }
+        questionRepository.saveAll(copies);
+
+        examDefinitionCache.invalidateAfterCommit(examId, exam.getRevision());
+        examStatisticsService.invalidateAfterCommit(examId);
+
+        return Optional.of(copies.stream().map(Question::getQuestionId).toList());
+    }
+
+    private Question copyInto(Exam exam, Question source, int orderIndex) {
+        Question copy = new Question();
+        copy.setExam(exam);
+        copy.setOrderIndex(orderIndex);
+        copy.setContent(source.getContent());
+        copy.setScore(source.getScore());
+        copy.setQuestionType(source.getQuestionType());
+        copy.setTopic(source.getTopic());
+        copy.setEssayCorrectAnswer(source.getEssayCorrectAnswer());
+        copy.setNumericAnswer(source.getNumericAnswer());
+        copy.setNumericTolerance(source.getNumericTolerance());
+        copy.setNumericUnit(source.getNumericUnit());
+        copy.setAcceptedAnswers(source.getAcceptedAnswers());
+        copy.setImageHash(source.getImageHash());
+        if (source.getInlineImage() != null) {
+            // Câu gốc chưa migrate: đưa ảnh Base64 vào blob store thay vì nhân bản thêm một bản inline
+            String hash = questionImageService.storeInline(source.getInlineImage());
+            if (hash != null) {
+                copy.setImageHash(hash);
+            } else {
+                copy.setInlineImage(source.getInlineImage());
+            }
+        }
+        // Luôn trỏ về câu gốc, kể cả khi lấy lại từ một bản sao
+        copy.setSourceQuestionId(source.getSourceQuestionId() != null ? source.getSourceQuestionId()
+                : source.getQuestionId());
+
+        for (QuestionOption sourceOption : source.getOptions()) {
+            QuestionOption option = new QuestionOption();
+            option.setContent(sourceOption.getContent());
+            option.setCorrect(sourceOption.isCorrect());
+            option.setQuestion(copy);
+            copy.getOptions().add(option);
+        }
+        return copy;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdown();
+    }
+}
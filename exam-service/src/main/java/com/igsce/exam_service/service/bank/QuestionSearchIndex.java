@@ -0,0 +1,324 @@
+package com.igsce.exam_service.service.bank;
+
+import com.igsce.exam_service.enums.QuestionType;
+import com.igsce.exam_service.util.TextFolding;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục đảo (inverted index) trong bộ nhớ cho nội dung câu hỏi, xếp hạng
+ * BM25.
+ *
+ * - Mỗi câu hỏi là một document với số thứ tự (ordinal) tăng dần; postings
+ * của một từ là mảng ordinal đã sắp xếp kèm tần suất, chỉ ghi nối đuôi.
+ * - Cập nhật câu hỏi = đánh dấu ordinal cũ là đã xóa + thêm ordinal mới. Khi
+ * số document đã xóa vượt quá số document còn sống, postings được nén lại
+ * (lọc ordinal đã xóa và đánh số lại) mà không cần nội dung gốc.
+ * - Thuộc tính để lọc (loại câu, chủ đề) nằm trong mảng song song theo
+ * ordinal nên lọc không cần tra map.
+ *
+ * Đọc/ghi dùng ReadWriteLock: nhiều truy vấn chạy song song, cập nhật chặn
+ * trong thời gian rất ngắn (một câu hỏi hoặc một bài thi).
+ */
+public class QuestionSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_COMPACT_DELETED = 1024;
+
+    public record Hit(long questionId, long examId, float score) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Long, Integer> ordinalByQuestion = new HashMap<>();
+    private final Map<String, Integer> topicIds = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    private long[] questionIds = new long[1024];
+    private long[] examIds = new long[1024];
+    private int[] lengths = new int[1024];
+    private byte[] types = new byte[1024];
+    private int[] topics = new int[1024];
+    private int docCount;
+    private int deletedCount;
+    private long totalLength;
+
+    // Mảng điểm tạm cho mỗi thread tìm kiếm (tránh cấp phát float[docCount] mỗi truy vấn)
+    private final ThreadLocal<float[]> scratchScores = ThreadLocal.withInitial(() -> new float[0]);
+
+    /**
+     * Thêm hoặc thay thế câu hỏi trong chỉ mục
+     */
+    public void put(long questionId, long examId, String content, QuestionType type, String topic) {
+        List<String> tokens = TextFolding.tokenize(content);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(questionId);
+
+            int ordinal = docCount++;
+            ensureCapacity(docCount);
+            questionIds[ordinal] = questionId;
+            examIds[ordinal] = examId;
+            lengths[ordinal] = tokens.size();
+            types[ordinal] = (byte) (type != null ? type.ordinal() : -1);
+            topics[ordinal] = topic != null ? topicIds.computeIfAbsent(foldTopic(topic), k -> topicIds.size()) : -1;
+            totalLength += tokens.size();
+            ordinalByQuestion.put(questionId, ordinal);
+
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(ordinal, entry.getValue());
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long questionId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(questionId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Câu hỏi đang có trong chỉ mục thuộc bài thi examId
+     */
+    public Set<Long> questionsOfExam(long examId) {
+        lock.readLock().lock();
+        try {
+            Set<Long> result = new HashSet<>();
+            for (int ordinal = 0; ordinal < docCount; ordinal++) {
+                if (examIds[ordinal] == examId && !deleted.get(ordinal)) {
+                    result.add(questionIds[ordinal]);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tìm tối đa limit câu hỏi theo BM25 (từ bất kỳ trong truy vấn, OR). Truy
+     * vấn rỗng: trả về các câu mới nhất khớp bộ lọc. type/topic null = không lọc.
+     */
+    public List<Hit> search(String query, QuestionType type, String topic, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextFolding.tokenize(query)));
+
+        lock.readLock().lock();
+        try {
+            int topicFilter = -1;
+            if (topic != null && !topic.isBlank()) {
+                Integer id = topicIds.get(foldTopic(topic));
+                if (id == null) {
+                    return List.of();
+                }
+                topicFilter = id;
+            }
+            int typeFilter = type != null ? type.ordinal() : -1;
+
+            if (terms.isEmpty()) {
+                return newest(typeFilter, topicFilter, limit);
+            }
+            return rank(terms, typeFilter, topicFilter, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Hit> newest(int typeFilter, int topicFilter, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        for (int ordinal = docCount - 1; ordinal >= 0 && hits.size() < limit; ordinal--) {
+            if (accepts(ordinal, typeFilter, topicFilter)) {
+                hits.add(new Hit(questionIds[ordinal], examIds[ordinal], 0f));
+            }
+        }
+        return hits;
+    }
+
+    private List<Hit> rank(List<String> terms, int typeFilter, int topicFilter, int limit) {
+        int live = docCount - deletedCount;
+        if (live == 0) {
+            return List.of();
+        }
+        float avgLength = Math.max(1f, (float) totalLength / live);
+
+        float[] scratch = scratchScores.get();
+        if (scratch.length < docCount) {
+            scratch = new float[docCount + docCount / 4];
+            scratchScores.set(scratch);
+        }
+        float[] scores = scratch;
+
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        for (String term : terms) {
+            Postings p = postings.get(term);
+            if (p == null) {
+                continue;
+            }
+            // df tính cả document đã xóa chưa nén: sai số nhỏ, chấp nhận được
+            float idf = (float) Math.log(1 + Math.max(0.0, (live - p.size + 0.5) / (p.size + 0.5)));
+            if (idf <= 0f) {
+                idf = 1e-3f;
+            }
+            for (int i = 0; i < p.size; i++) {
+                int ordinal = p.docs[i];
+                if (!accepts(ordinal, typeFilter, topicFilter)) {
+                    continue;
+                }
+                int tf = p.freqs[i];
+                float norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[ordinal] / avgLength));
+                if (scores[ordinal] == 0f) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = ordinal;
+                }
+                scores[ordinal] += idf * norm;
+            }
+        }
+
+        // Top-k bằng min-heap kích thước limit
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, (a, c) -> compareHits(scores, a, c));
+        for (int i = 0; i < touchedCount; i++) {
+            int ordinal = touched[i];
+            if (heap.size() < limit) {
+                heap.add(ordinal);
+            } else if (compareHits(scores, ordinal, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(ordinal);
+            }
+        }
+
+        Hit[] hits = new Hit[heap.size()];
+        for (int i = hits.length - 1; i >= 0; i--) {
+            int ordinal = heap.poll();
+            hits[i] = new Hit(questionIds[ordinal], examIds[ordinal], scores[ordinal]);
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touched[i]] = 0f;
+        }
+        return Arrays.asList(hits);
+    }
+
+    // Điểm cao hơn đứng trước; bằng điểm thì câu mới hơn (ordinal lớn hơn) đứng trước
+    private static int compareHits(float[] scores, int a, int b) {
+        int byScore = Float.compare(scores[a], scores[b]);
+        return byScore != 0 ? byScore : Integer.compare(a, b);
+    }
+
+    private boolean accepts(int ordinal, int typeFilter, int topicFilter) {
+        return !deleted.get(ordinal)
+                && (typeFilter < 0 || types[ordinal] == typeFilter)
+                && (topicFilter < 0 || topics[ordinal] == topicFilter);
+    }
+
+    private void removeLocked(long questionId) {
+        Integer ordinal = ordinalByQuestion.remove(questionId);
+        if (ordinal != null) {
+            deleted.set(ordinal);
+            deletedCount++;
+            totalLength -= lengths[ordinal];
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (deletedCount < MIN_COMPACT_DELETED || deletedCount < docCount - deletedCount) {
+            return;
+        }
+        int[] remap = new int[docCount];
+        int next = 0;
+        for (int ordinal = 0; ordinal < docCount; ordinal++) {
+            if (deleted.get(ordinal)) {
+                remap[ordinal] = -1;
+                continue;
+            }
+            remap[ordinal] = next;
+            questionIds[next] = questionIds[ordinal];
+            examIds[next] = examIds[ordinal];
+            lengths[next] = lengths[ordinal];
+            types[next] = types[ordinal];
+            topics[next] = topics[ordinal];
+            ordinalByQuestion.put(questionIds[next], next);
+            next++;
+        }
+
+        Iterator<Postings> it = postings.values().iterator();
+        while (it.hasNext()) {
+            Postings p = it.next();
+            p.remap(remap);
+            if (p.size == 0) {
+                it.remove();
+            }
+        }
+        docCount = next;
+        deletedCount = 0;
+        deleted.clear();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= questionIds.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, questionIds.length + (questionIds.length >> 1));
+        questionIds = Arrays.copyOf(questionIds, newLength);
+        examIds = Arrays.copyOf(examIds, newLength);
+        lengths = Arrays.copyOf(lengths, newLength);
+        types = Arrays.copyOf(types, newLength);
+        topics = Arrays.copyOf(topics, newLength);
+    }
+
+    static String foldTopic(String topic) {
+        return TextFolding.fold(topic);
+    }
+
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] freqs = new int[2];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        void remap(int[] remap) {
+            int next = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = remap[docs[i]];
+                if (doc >= 0) {
+                    docs[next] = doc;
+                    freqs[next] = freqs[i];
+                    next++;
+                }
+            }
+            size = next;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.igsce.exam_service.service.cache;
+
+import com.igsce.exam_service.entity.Exam;
+import com.igsce.exam_service.service.scoring.AnswerKey;
+
+/**
+ * Định nghĩa bài thi đã load đầy đủ (câu hỏi + lựa chọn) và đáp án đã biên dịch.
+ * Exam ở đây là entity đã detach và được chia sẻ giữa các request: CHỈ ĐỌC.
+ */
+public record CachedExam(
+        Long examId,
+        long revision,
+        Exam exam,
+        AnswerKey answerKey) {
+}
@@ -0,0 +1,132 @@
+package com.igsce.exam_service.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.igsce.exam_service.config.RabbitConfig;
+import com.igsce.exam_service.dto.ExamCacheInvalidationEvent;
+import com.igsce.exam_service.service.outbox.OutboxPublisher;
+import com.igsce.exam_service.util.TransactionUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cache (có giới hạn, có version) cho định nghĩa bài thi + đáp án đã biên dịch.
+ *
+ * - Đọc: gọi NGOÀI transaction để lúc cache miss không phải giữ 2 connection.
+ * - Ghi: updateExam/deleteExam/createExam gọi invalidateAfterCommit(), cache
+ * local bị xóa sau khi COMMIT và message được ghi vào outbox (cùng transaction)
+ * rồi broadcast qua exam.notification.exchange cho các replica khác.
+ * - Message vẫn có thể mất (queue anonymous của replica bị tạo lại khi mất kết
+ * nối), nên entry còn hết hạn sau expire-after-write kể cả khi đang được đọc:
+ * bản cũ sống tối đa chừng đó thời gian.
+ * - Metrics hit/miss/eviction: cache_gets_total, cache_evictions_total
+ * {cache="exam.definitions"} trên /actuator/prometheus.
+ */
+@Component
+public class ExamDefinitionCache {
+
+    public static final String CACHE_NAME = "exam.definitions";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Cache<Long, CachedExam> cache;
+    private final ExamDefinitionLoader loader;
+    private final RabbitTemplate rabbitTemplate;
+    private final OutboxPublisher outboxPublisher;
+
+    public ExamDefinitionCache(ExamDefinitionLoader loader,
+            RabbitTemplate rabbitTemplate,
+            OutboxPublisher outboxPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${exam.cache.max-size:500}") long maxSize,
+            @Value("${exam.cache.expire-after-access-minutes:60}") long expireAfterAccessMinutes,
+            @Value("${exam.cache.expire-after-write-minutes:10}") long expireAfterWriteMinutes) {
+        this.loader = loader;
+        this.rabbitTemplate = rabbitTemplate;
+        this.outboxPublisher = outboxPublisher;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofMinutes(expireAfterAccessMinutes))
+                .expireAfterWrite(Duration.ofMinutes(expireAfterWriteMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Lấy bài thi từ cache, load từ DB nếu chưa có (mỗi examId chỉ 1 thread load)
+     */
+    public Optional<CachedExam> find(Long examId) {
+        if (examId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.get(examId, loader::load));
+    }
+
+    public CachedExam get(Long examId) {
+        return find(examId).orElseThrow(() -> new RuntimeException("Exam not found"));
+    }
+
+    /**
+     * Đăng ký vô hiệu hóa cache sau khi transaction hiện tại COMMIT (phải gọi
+     * trong transaction: message cho các replica khác đi qua outbox)
+     */
+    public void invalidateAfterCommit(Long examId, long revision) {
+        outboxPublisher.publish(RabbitConfig.NOTIFICATION_EXCHANGE, RabbitConfig.CACHE_INVALIDATION_ROUTING_KEY,
+                new ExamCacheInvalidationEvent(examId, revision, nodeId));
+        TransactionUtils.afterCommit(() -> evictOlderThan(examId, revision));
+    }
+
+    /**
+     * Xóa toàn bộ cache (vd: sau khi migrate dữ liệu hàng loạt) trên mọi replica
+     */
+    public void invalidateAllAndBroadcast() {
+        cache.invalidateAll();
+        broadcast(null, 0);
+    }
+
+    /**
+     * Message do chính replica này phát ra
+     */
+    public boolean isOwnEvent(ExamCacheInvalidationEvent event) {
+        return nodeId.equals(event.getOriginNodeId());
+    }
+
+    /**
+     * Xử lý message vô hiệu hóa từ replica khác (examId = null: xóa toàn bộ)
+     */
+    public void onRemoteInvalidation(ExamCacheInvalidationEvent event) {
+        if (isOwnEvent(event)) {
+            return;
+        }
+        if (event.getExamId() == null) {
+            cache.invalidateAll();
+            return;
+        }
+        evictOlderThan(event.getExamId(), event.getRevision());
+    }
+
+    // Chỉ xóa bản cache cũ hơn revision đã commit; bản load sau commit được giữ lại
+    private void evictOlderThan(Long examId, long revision) {
+        cache.asMap().computeIfPresent(examId, (id, cached) -> cached.revision() < revision ? null : cached);
+    }
+
+    // Gửi thẳng (không qua outbox): chỉ dùng ngoài transaction
+    private void broadcast(Long examId, long revision) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.NOTIFICATION_EXCHANGE,
+                    RabbitConfig.CACHE_INVALIDATION_ROUTING_KEY,
+                    new ExamCacheInvalidationEvent(examId, revision, nodeId));
+        } catch (Exception e) {
+            // Các replica khác giữ bản cũ tới khi hết expire-after-write
+            System.err.println(">>> [ExamDefinitionCache] Lỗi broadcast invalidation cho exam " + examId + ": "
+                    + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.igsce.exam_service.service.cache;
+
+import com.igsce.exam_service.entity.Exam;
+import com.igsce.exam_service.entity.Question;
+import com.igsce.exam_service.entity.QuestionOption;
+import com.igsce.exam_service.repository.ExamRepository;
+import com.igsce.exam_service.repository.QuestionRepository;
+import com.igsce.exam_service.service.scoring.AnswerKey;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Load đồ thị bài thi cho ExamDefinitionCache: 1 query cho exam + câu hỏi,
+ * 1 query fetch-join cho toàn bộ lựa chọn. Kết quả được detach khỏi
+ * persistence context trước khi đưa vào cache.
+ */
+@Component
+public class ExamDefinitionLoader {
+
+    private static final Comparator<Question> QUESTION_ORDER = Comparator.comparingInt(Question::getOrderIndex)
+            .thenComparing(Question::getQuestionId);
+
+    private final ExamRepository examRepository;
+    private final QuestionRepository questionRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ExamDefinitionLoader(ExamRepository examRepository, QuestionRepository questionRepository) {
+        this.examRepository = examRepository;
+        this.questionRepository = questionRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public CachedExam load(Long examId) {
+        Exam exam = examRepository.findWithQuestionsByExamId(examId).orElse(null);
+        if (exam == null) {
+            return null;
+        }
+
+        // Khởi tạo options của các câu hỏi đã nằm trong persistence context
+        List<Question> questions = questionRepository.findAllWithOptionsByExamId(examId);
+        AnswerKey answerKey = AnswerKey.compile(examId, questions);
+
+        // Thứ tự gốc ổn định (câu hỏi theo orderIndex, lựa chọn theo id): là cơ sở
+        // để xáo đề theo seed của từng attempt (AttemptPaperService)
+        exam.getQuestions().sort(QUESTION_ORDER);
+        for (Question question : exam.getQuestions()) {
+            question.getOptions().sort(Comparator.comparing(QuestionOption::getOptionId));
+        }
+
+        // Cascade ALL -> detach cả câu hỏi và lựa chọn
+        entityManager.detach(exam);
+
+        return new CachedExam(examId, exam.getRevision(), exam, answerKey);
+    }
+}
@@ -0,0 +1,43 @@
+package com.igsce.exam_service.service.cache;
+
+import com.igsce.exam_service.repository.ExamRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Load trước vào ExamDefinitionCache các bài thi sắp mở (startTime trong
+ * lead-minutes tới), để đợt học sinh bấm "Bắt đầu" cùng lúc không phải chờ
+ * cache miss.
+ */
+@Component
+public class ExamPrewarmJob {
+
+    private final ExamRepository examRepository;
+    private final ExamDefinitionCache examDefinitionCache;
+
+    @Value("${exam.prewarm.lead-minutes:15}")
+    private long leadMinutes;
+
+    public ExamPrewarmJob(ExamRepository examRepository, ExamDefinitionCache examDefinitionCache) {
+        this.examRepository = examRepository;
+        this.examDefinitionCache = examDefinitionCache;
+    }
+
+    @Scheduled(fixedDelayString = "${exam.prewarm.interval-ms:60000}")
+    public void prewarm() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> examIds = examRepository.findActiveExamIdsStartingBetween(now.minusMinutes(1),
+                now.plusMinutes(leadMinutes));
+        for (Long examId : examIds) {
+            try {
+                examDefinitionCache.find(examId);
+            } catch (Exception e) {
+                System.err.println(">>> [ExamPrewarm] Failed to pre-load exam " + examId + ": " + e.getMessage());
+            }
+        }
+    }
+}
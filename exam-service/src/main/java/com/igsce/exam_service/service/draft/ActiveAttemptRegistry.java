@@ -0,0 +1,49 @@
+package com.igsce.exam_service.service.draft;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.igsce.exam_service.repository.ExamAttemptRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Cache các attempt đang mở (chưa nộp) để autosave không phải truy vấn DB mỗi
+ * lần ghi. Entry hết hạn sau expire-after-write để replica khác không giữ trạng
+ * thái "đang mở" quá lâu sau khi attempt đã nộp ở nơi khác.
+ */
+@Component
+public class ActiveAttemptRegistry {
+
+    private final ExamAttemptRepository attemptRepository;
+    private final Cache<Long, ActiveAttempt> cache;
+
+    public ActiveAttemptRegistry(ExamAttemptRepository attemptRepository,
+            @Value("${exam.draft.active-attempts.max-size:100000}") long maxSize,
+            @Value("${exam.draft.active-attempts.expire-after-write-seconds:60}") long expireSeconds) {
+        this.attemptRepository = attemptRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .build();
+    }
+
+    public Optional<ActiveAttempt> find(Long attemptId) {
+        if (attemptId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.get(attemptId, id -> attemptRepository.findOpenAttempt(id).stream()
+                .findFirst()
+                .map(row -> new ActiveAttempt(id, (Long) row[0], (Long) row[1]))
+                .orElse(null)));
+    }
+
+    public void close(Long attemptId) {
+        cache.invalidate(attemptId);
+    }
+
+    public record ActiveAttempt(Long attemptId, Long examId, Long userId) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.igsce.exam_service.service.draft;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bộ đệm bản nháp trong bộ nhớ: attemptId -> (questionId -> bản mới nhất).
+ *
+ * Ghi nhiều lần vào cùng một câu chỉ giữ bản cuối (coalesce). Mọi thao tác trên
+ * map con đều nằm trong ConcurrentHashMap.compute() của attemptId nên không bị
+ * mất bản ghi khi flush lấy map ra cùng lúc với writer. Tổng số câu đang đệm
+ * bị giới hạn bởi maxEntries.
+ */
+public class DraftAnswerBuffer {
+
+    private final ConcurrentHashMap<Long, Map<Long, DraftEntry>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxEntries;
+
+    public DraftAnswerBuffer(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Đệm các bản nháp. Trả về false (không ghi gì) nếu bộ đệm đã đầy.
+     */
+    public boolean offer(Long attemptId, List<DraftEntry> entries) {
+        if (size.get() + entries.size() > maxEntries) {
+            return false;
+        }
+        pending.compute(attemptId, (id, drafts) -> {
+            Map<Long, DraftEntry> target = drafts != null ? drafts : new HashMap<>();
+            for (DraftEntry entry : entries) {
+                DraftEntry previous = target.get(entry.questionId());
+                if (entry.isNewerThan(previous)) {
+                    target.put(entry.questionId(), entry);
+                    if (previous == null) {
+                        size.incrementAndGet();
+                    }
+                }
+            }
+            return target;
+        });
+        return true;
+    }
+
+    /**
+     * Lấy (và xóa khỏi bộ đệm) bản nháp của một attempt
+     */
+    public List<DraftEntry> drain(Long attemptId) {
+        List<DraftEntry> drained = new ArrayList<>();
+        pending.computeIfPresent(attemptId, (id, drafts) -> {
+            drained.addAll(drafts.values());
+            size.addAndGet(-drafts.size());
+            return null;
+        });
+        return drained;
+    }
+
+    /**
+     * Lấy (và xóa khỏi bộ đệm) toàn bộ bản nháp, theo attempt
+     */
+    public Map<Long, List<DraftEntry>> drainAll() {
+        Map<Long, List<DraftEntry>> drained = new HashMap<>();
+        for (Long attemptId : pending.keySet()) {
+            List<DraftEntry> entries = drain(attemptId);
+            if (!entries.isEmpty()) {
+                drained.put(attemptId, entries);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Xem bản nháp đang đệm của một attempt (không xóa)
+     */
+    public List<DraftEntry> peek(Long attemptId) {
+        List<DraftEntry> copy = new ArrayList<>();
+        pending.computeIfPresent(attemptId, (id, drafts) -> {
+            copy.addAll(drafts.values());
+            return drafts;
+        });
+        return copy;
+    }
+
+    /**
+     * Trả lại bộ đệm các bản nháp flush thất bại (bản mới hơn đang đệm được giữ)
+     */
+    public void restore(Map<Long, List<DraftEntry>> drafts) {
+        drafts.forEach((attemptId, entries) -> pending.compute(attemptId, (id, current) -> {
+            Map<Long, DraftEntry> target = current != null ? current : new HashMap<>();
+            for (DraftEntry entry : entries) {
+                if (target.putIfAbsent(entry.questionId(), entry) == null) {
+                    size.incrementAndGet();
+                }
+            }
+            return target;
+        }));
+    }
+
+    public void discard(Long attemptId) {
+        drain(attemptId);
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
@@ -0,0 +1,189 @@
+package com.igsce.exam_service.service.draft;
+
+import com.igsce.exam_service.dto.StudentAnswerDTO;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.service.draft.ActiveAttemptRegistry.ActiveAttempt;
+import com.igsce.exam_service.service.scoring.AnswerKey;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Autosave bản nháp câu trả lời (write-behind).
+ *
+ * - saveDraft chỉ ghi vào DraftAnswerBuffer trong bộ nhớ (không chạm DB nếu
+ * attempt/bài thi đã có trong cache), ghi lặp lại cùng câu được gộp lại.
+ * - flush() định kỳ ghi toàn bộ bộ đệm vào answer_drafts bằng một batch upsert.
+ * - Khi nộp bài: flushAttempt() trước transaction, mergeForSubmit() trong
+ * transaction (bản nháp + payload, payload thắng) rồi xóa bản nháp.
+ * - Chỉ bản nháp đang đệm trên replica nhận request nộp bài (và những gì đã flush
+ * xuống DB) được tính vào bài nộp. Bản nháp còn đệm trên replica khác KHÔNG thuộc
+ * bài nộp: khi các replica đó flush, upsert bỏ qua attempt đã nộp (submitted_at).
+ *
+ * Metrics: exam_draft_buffered (số câu đang đệm), exam_draft_flush (thời gian flush).
+ */
+@Service
+public class DraftAnswerService {
+
+    public enum SaveStatus {
+        ACCEPTED,
+        ATTEMPT_CLOSED,
+        TOO_LARGE,
+        BUFFER_FULL
+    }
+
+    private final DraftAnswerBuffer buffer;
+    private final DraftAnswerStore store;
+    private final ActiveAttemptRegistry activeAttempts;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final Timer flushTimer;
+
+    @Value("${exam.draft.max-text-length:20000}")
+    private int maxTextLength;
+
+    public DraftAnswerService(DraftAnswerStore store,
+            ActiveAttemptRegistry activeAttempts,
+            ExamDefinitionCache examDefinitionCache,
+            MeterRegistry meterRegistry,
+            @Value("${exam.draft.max-buffered-entries:200000}") int maxBufferedEntries) {
+        this.buffer = new DraftAnswerBuffer(maxBufferedEntries);
+        this.store = store;
+        this.activeAttempts = activeAttempts;
+        this.examDefinitionCache = examDefinitionCache;
+        this.flushTimer = Timer.builder("exam.draft.flush").register(meterRegistry);
+        Gauge.builder("exam.draft.buffered", buffer, DraftAnswerBuffer::size)
+                .description("Draft answers waiting to be flushed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lưu nháp cho attempt đang mở của userId
+     */
+    public SaveStatus saveDraft(Long attemptId, Long userId, List<StudentAnswerDTO> answers) {
+        Optional<ActiveAttempt> attempt = activeAttempts.find(attemptId)
+                .filter(a -> a.userId() != null && a.userId().equals(userId));
+        if (attempt.isEmpty()) {
+            return SaveStatus.ATTEMPT_CLOSED;
+        }
+        if (answers == null || answers.isEmpty()) {
+            return SaveStatus.ACCEPTED;
+        }
+
+        AnswerKey answerKey = examDefinitionCache.get(attempt.get().examId()).answerKey();
+        LocalDateTime now = LocalDateTime.now();
+        List<DraftEntry> entries = new ArrayList<>(answers.size());
+        for (StudentAnswerDTO answer : answers) {
+            if (answer == null || answer.getQuestionId() == null || !answerKey.contains(answer.getQuestionId())) {
+                continue;
+            }
+            if (answer.getTextAnswer() != null && answer.getTextAnswer().length() > maxTextLength) {
+                return SaveStatus.TOO_LARGE;
+            }
+            entries.add(new DraftEntry(answer.getQuestionId(), answer.getSelectedOptionId(),
+                    answer.getTextAnswer(), now));
+        }
+
+        if (entries.isEmpty()) {
+            return SaveStatus.ACCEPTED;
+        }
+        return buffer.offer(attemptId, entries) ? SaveStatus.ACCEPTED : SaveStatus.BUFFER_FULL;
+    }
+
+    /**
+     * Bản nháp mới nhất của attempt (DB + bộ đệm), dùng để khôi phục bài đang làm
+     */
+    public Optional<List<StudentAnswerDTO>> getDraft(Long attemptId, Long userId) {
+        return activeAttempts.find(attemptId)
+                .filter(a -> a.userId() != null && a.userId().equals(userId))
+                .map(a -> {
+                    Map<Long, DraftEntry> latest = new LinkedHashMap<>();
+                    mergeNewest(latest, store.findByAttemptId(attemptId));
+                    mergeNewest(latest, buffer.peek(attemptId));
+                    return latest.values().stream().map(DraftEntry::toAnswer).toList();
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${exam.draft.flush-interval-ms:2000}")
+    public void flush() {
+        Map<Long, List<DraftEntry>> drained = buffer.drainAll();
+        if (drained.isEmpty()) {
+            return;
+        }
+        try {
+            flushTimer.record(() -> store.upsert(drained));
+        } catch (Exception e) {
+            buffer.restore(drained);
+            System.err.println(">>> [DraftAnswerService] Flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi ngay bản nháp đang đệm của một attempt (trước khi nộp bài)
+     */
+    public void flushAttempt(Long attemptId) {
+        List<DraftEntry> entries = buffer.drain(attemptId);
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            store.upsert(Map.of(attemptId, entries));
+        } catch (RuntimeException e) {
+            buffer.restore(Map.of(attemptId, entries));
+            throw e;
+        }
+    }
+
+    /**
+     * Gộp bản nháp đã lưu với payload nộp bài (payload thắng) và xóa bản nháp.
+     * Phải gọi trong transaction nộp bài.
+     */
+    public List<StudentAnswerDTO> mergeForSubmit(Long attemptId, List<StudentAnswerDTO> submitted) {
+        Map<Long, StudentAnswerDTO> merged = new LinkedHashMap<>();
+        for (DraftEntry draft : store.findByAttemptId(attemptId)) {
+            merged.put(draft.questionId(), draft.toAnswer());
+        }
+        if (submitted != null) {
+            for (StudentAnswerDTO answer : submitted) {
+                if (answer != null && answer.getQuestionId() != null) {
+                    merged.put(answer.getQuestionId(), answer);
+                }
+            }
+        }
+        store.deleteByAttemptId(attemptId);
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Attempt đã nộp: bỏ các bản nháp đến muộn trên replica này. Replica khác vẫn có thể
+     * nhận nháp cho tới khi ActiveAttemptRegistry của nó hết hạn, nhưng không ghi được
+     * xuống DB (xem DraftAnswerStore.UPSERT_SQL).
+     */
+    public void onSubmitted(Long attemptId) {
+        activeAttempts.close(attemptId);
+        buffer.discard(attemptId);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static void mergeNewest(Map<Long, DraftEntry> target, List<DraftEntry> entries) {
+        for (DraftEntry entry : entries) {
+            if (entry.isNewerThan(target.get(entry.questionId()))) {
+                target.put(entry.questionId(), entry);
+            }
+        }
+    }
+}
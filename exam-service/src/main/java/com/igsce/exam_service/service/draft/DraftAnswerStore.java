@@ -0,0 +1,63 @@
+package com.igsce.exam_service.service.draft;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Truy cập bảng answer_drafts bằng JDBC (batch upsert).
+ */
+@Component
+public class DraftAnswerStore {
+
+    // Chỉ ghi đè khi bản mới hơn (các replica có thể flush lệch thứ tự);
+    // updated_at phải được gán sau cùng.
+    // Chỉ ghi cho attempt chưa nộp: INSERT ... SELECT khóa dòng exam_attempts (shared) nên
+    // chờ transaction nộp bài (đang giữ FOR UPDATE) xong rồi thấy submitted_at và không ghi,
+    // tránh bản nháp mồ côi sau khi mergeForSubmit đã xóa answer_drafts
+    private static final String UPSERT_SQL = "INSERT INTO answer_drafts "
+            + "(attempt_id, question_id, selected_option_id, text_answer, updated_at) "
+            + "SELECT a.attempt_id, ?, ?, ?, ? FROM exam_attempts a WHERE a.attempt_id = ? AND a.submitted_at IS NULL "
+            + "ON DUPLICATE KEY UPDATE "
+            + "selected_option_id = CASE WHEN VALUES(updated_at) >= updated_at THEN VALUES(selected_option_id) ELSE selected_option_id END, "
+            + "text_answer = CASE WHEN VALUES(updated_at) >= updated_at THEN VALUES(text_answer) ELSE text_answer END, "
+            + "updated_at = GREATEST(updated_at, VALUES(updated_at))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DraftAnswerStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void upsert(Map<Long, List<DraftEntry>> draftsByAttempt) {
+        List<Object[]> args = new ArrayList<>();
+        draftsByAttempt.forEach((attemptId, entries) -> {
+            for (DraftEntry entry : entries) {
+                args.add(new Object[] { entry.questionId(), entry.selectedOptionId(),
+                        entry.textAnswer(), Timestamp.valueOf(entry.updatedAt()), attemptId });
+            }
+        });
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+        }
+    }
+
+    public List<DraftEntry> findByAttemptId(Long attemptId) {
+        return jdbcTemplate.query(
+                "SELECT question_id, selected_option_id, text_answer, updated_at FROM answer_drafts WHERE attempt_id = ?",
+                (rs, rowNum) -> new DraftEntry(
+                        rs.getLong(1),
+                        rs.getObject(2, Long.class),
+                        rs.getString(3),
+                        rs.getTimestamp(4).toLocalDateTime()),
+                attemptId);
+    }
+
+    public void deleteByAttemptId(Long attemptId) {
+        jdbcTemplate.update("DELETE FROM answer_drafts WHERE attempt_id = ?", attemptId);
+    }
+}
@@ -0,0 +1,27 @@
+package com.igsce.exam_service.service.draft;
+
+import com.igsce.exam_service.dto.StudentAnswerDTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bản nháp của một câu hỏi (bất biến)
+ */
+public record DraftEntry(
+        Long questionId,
+        Long selectedOptionId,
+        String textAnswer,
+        LocalDateTime updatedAt) {
+
+    public StudentAnswerDTO toAnswer() {
+        StudentAnswerDTO dto = new StudentAnswerDTO();
+        dto.setQuestionId(questionId);
+        dto.setSelectedOptionId(selectedOptionId);
+        dto.setTextAnswer(textAnswer);
+        return dto;
+    }
+
+    public boolean isNewerThan(DraftEntry other) {
+        return other == null || !updatedAt.isBefore(other.updatedAt);
+    }
+}
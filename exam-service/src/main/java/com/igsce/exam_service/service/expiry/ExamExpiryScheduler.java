@@ -0,0 +1,187 @@
+package com.igsce.exam_service.service.expiry;
+
+import com.igsce.exam_service.repository.ExamAttemptRepository;
+import com.igsce.exam_service.service.ExamService;
+import com.igsce.exam_service.util.HashedTimingWheel;
+import com.igsce.exam_service.util.HashedTimingWheel.Timeout;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tự động nộp bài khi hết giờ làm (server-side).
+ *
+ * - startExam lên lịch theo attempt.deadline, submitExam hủy lịch.
+ * - Hẹn giờ dùng HashedTimingWheel: 100k attempt đang mở chỉ tốn một thread
+ * worker, schedule/cancel O(1).
+ * - Khi hết hạn (sau thêm grace-seconds để bù độ trễ mạng của lần nộp từ
+ * client), việc nộp bài chạy trên executor riêng, không chặn worker.
+ * - Khởi động lại: lịch được dựng lại từ các attempt chưa nộp trong DB. Nhiều
+ * replica có thể cùng hẹn giờ một attempt; autoSubmitExpired khóa dòng và bỏ
+ * qua attempt đã nộp nên chỉ nộp một lần.
+ *
+ * Metrics: exam_expiry_tick (thời gian xử lý mỗi tick), exam_expiry_scheduled
+ * (số attempt đang được hẹn giờ).
+ */
+@Component
+public class ExamExpiryScheduler {
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final ExamAttemptRepository attemptRepository;
+    private final ObjectProvider<ExamService> examService;
+    private final Map<Long, Timeout<Long>> timeouts = new ConcurrentHashMap<>();
+    private final HashedTimingWheel<Long> wheel;
+    private final ExecutorService submitExecutor;
+
+    @Value("${exam.expiry.grace-seconds:30}")
+    private long graceSeconds;
+
+    @Value("${exam.expiry.retry-delay-seconds:60}")
+    private long retryDelaySeconds;
+
+    public ExamExpiryScheduler(ExamAttemptRepository attemptRepository,
+            ObjectProvider<ExamService> examService,
+            MeterRegistry meterRegistry,
+            @Value("${exam.expiry.tick-ms:1000}") long tickMs,
+            @Value("${exam.expiry.wheel-size:512}") int wheelSize,
+            @Value("${exam.expiry.submit-threads:2}") int submitThreads) {
+        this.attemptRepository = attemptRepository;
+        this.examService = examService;
+
+        Timer tickTimer = Timer.builder("exam.expiry.tick")
+                .description("Processing time of one timing-wheel tick")
+                .register(meterRegistry);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.submitExecutor = Executors.newFixedThreadPool(submitThreads, r -> {
+            Thread t = new Thread(r, "exam-auto-submit-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.wheel = new HashedTimingWheel<>(tickMs, TimeUnit.MILLISECONDS, wheelSize, r -> {
+            Thread t = new Thread(r, "exam-expiry-wheel");
+            t.setDaemon(true);
+            return t;
+        }, this::onExpired, nanos -> tickTimer.record(nanos, TimeUnit.NANOSECONDS));
+
+        Gauge.builder("exam.expiry.scheduled", wheel, HashedTimingWheel::size)
+                .description("Open attempts waiting for expiry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hẹn giờ tự nộp bài cho attempt (deadline null = không giới hạn thời gian)
+     */
+    public void schedule(Long attemptId, LocalDateTime deadline) {
+        if (attemptId == null || deadline == null) {
+            return;
+        }
+        long delayMs = Duration.between(LocalDateTime.now(), deadline).toMillis() + graceSeconds * 1000;
+        scheduleIn(attemptId, delayMs);
+    }
+
+    /**
+     * true nếu now đã qua deadline + grace-seconds (deadline null = không giới hạn)
+     */
+    public boolean isPastGrace(LocalDateTime deadline, LocalDateTime now) {
+        return deadline != null && now.isAfter(deadline.plusSeconds(graceSeconds));
+    }
+
+    /**
+     * Hạn nộp bài = startTime + duration (phút), không vượt quá endTime của bài
+     * thi. Trả về null nếu bài thi không giới hạn thời gian.
+     */
+    public static LocalDateTime computeDeadline(LocalDateTime startTime, Integer durationMinutes,
+            LocalDateTime examEndTime) {
+        LocalDateTime deadline = null;
+        if (startTime != null && durationMinutes != null && durationMinutes > 0) {
+            deadline = startTime.plusMinutes(durationMinutes);
+        }
+        if (examEndTime != null && (deadline == null || examEndTime.isBefore(deadline))) {
+            deadline = examEndTime;
+        }
+        return deadline;
+    }
+
+    public void cancel(Long attemptId) {
+        Timeout<Long> timeout = timeouts.remove(attemptId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void scheduleIn(Long attemptId, long delayMs) {
+        Timeout<Long> previous = timeouts.put(attemptId, wheel.schedule(attemptId, delayMs, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    // Chạy trên thread worker của wheel: chỉ chuyển việc sang executor
+    private void onExpired(Long attemptId) {
+        timeouts.remove(attemptId);
+        submitExecutor.execute(() -> autoSubmit(attemptId));
+    }
+
+    private void autoSubmit(Long attemptId) {
+        try {
+            if (examService.getObject().autoSubmitExpired(attemptId)) {
+                System.out.println(">>> [ExamExpiry] Auto-submitted expired attempt " + attemptId);
+            }
+        } catch (Exception e) {
+            System.err.println(">>> [ExamExpiry] Auto-submit failed for attempt " + attemptId + ", retry in "
+                    + retryDelaySeconds + "s: " + e.getMessage());
+            scheduleIn(attemptId, retryDelaySeconds * 1000);
+        }
+    }
+
+    /**
+     * Dựng lại lịch từ các attempt chưa nộp (duyệt keyset theo attemptId)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFromDatabase() {
+        long afterId = 0;
+        int count = 0;
+        while (true) {
+            List<Object[]> batch = attemptRepository.findOpenAttemptDeadlines(afterId,
+                    PageRequest.of(0, REBUILD_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (Object[] row : batch) {
+                // [attemptId, deadline, startTime, exam.duration, exam.endTime]
+                Long attemptId = (Long) row[0];
+                LocalDateTime deadline = row[1] != null ? (LocalDateTime) row[1]
+                        : computeDeadline((LocalDateTime) row[2], (Integer) row[3], (LocalDateTime) row[4]);
+                schedule(attemptId, deadline);
+                afterId = attemptId;
+                count++;
+            }
+        }
+        System.out.println(">>> [ExamExpiry] Rebuilt expiry schedule for " + count + " open attempts");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.stop();
+        submitExecutor.shutdown();
+    }
+}
@@ -0,0 +1,60 @@
+package com.igsce.exam_service.service.export;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Các cột thông tin lượt làm bài có thể chọn khi export (tham số columns).
+ * Thứ tự khai báo trùng với thứ tự cột trong câu SELECT của GradebookExportService.
+ */
+public enum AttemptColumn {
+    ATTEMPT_ID("attemptId"),
+    USER_ID("userId"),
+    ATTEMPT_NUMBER("attemptNumber"),
+    START_TIME("startTime"),
+    SUBMITTED_AT("submittedAt"),
+    TOTAL_SCORE("totalScore"),
+    GRADING_STATUS("gradingStatus");
+
+    private final String header;
+
+    AttemptColumn(String header) {
+        this.header = header;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * Đọc danh sách cột từ request ("userId,totalScore"); null/rỗng = tất cả
+     */
+    public static List<AttemptColumn> parse(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return List.of(values());
+        }
+
+        List<AttemptColumn> columns = new ArrayList<>();
+        for (String name : names) {
+            String key = name.trim().toLowerCase(Locale.ROOT);
+            if (key.isEmpty()) {
+                continue;
+            }
+            AttemptColumn match = null;
+            for (AttemptColumn column : values()) {
+                if (column.header.toLowerCase(Locale.ROOT).equals(key)) {
+                    match = column;
+                    break;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Unknown column: " + name);
+            }
+            if (!columns.contains(match)) {
+                columns.add(match);
+            }
+        }
+        return columns.isEmpty() ? List.of(values()) : columns;
+    }
+}
@@ -0,0 +1,78 @@
+package com.igsce.exam_service.service.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * CSV (RFC 4180) UTF-8 có BOM để Excel đọc đúng tiếng Việt
+ */
+public class CsvTabularWriter implements TabularWriter {
+
+    static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Writer writer;
+
+    public CsvTabularWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write('\uFEFF');
+    }
+
+    @Override
+    public void writeRow(List<?> cells) throws IOException {
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCell(cells.get(i));
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeCell(Object cell) throws IOException {
+        if (cell == null) {
+            return;
+        }
+        if (cell instanceof Number number) {
+            writer.write(formatNumber(number));
+            return;
+        }
+
+        String text = cell instanceof LocalDateTime time ? DATE_TIME.format(time) : cell.toString();
+        // Chặn CSV injection: ô bắt đầu bằng = + - @ bị Excel hiểu là công thức
+        if (!text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(text);
+        }
+    }
+
+    // 7.0 -> "7", 7.25 -> "7.25"
+    static String formatNumber(Number number) {
+        if (number instanceof Double || number instanceof Float) {
+            double value = number.doubleValue();
+            if (!Double.isFinite(value)) {
+                return "";
+            }
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+        return number.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+}
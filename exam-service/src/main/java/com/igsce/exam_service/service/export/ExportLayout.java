@@ -0,0 +1,7 @@
+package com.igsce.exam_service.service.export;
+
+public enum ExportLayout {
+    ATTEMPTS, // Mỗi lượt làm bài một dòng
+    MATRIX,   // Mỗi lượt làm bài một dòng + mỗi câu hỏi một cột điểm
+    ANSWERS   // Mỗi câu trả lời một dòng
+}
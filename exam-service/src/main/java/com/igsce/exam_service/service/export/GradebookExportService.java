@@ -0,0 +1,222 @@
+package com.igsce.exam_service.service.export;
+
+import com.igsce.exam_service.entity.Question;
+import com.igsce.exam_service.service.cache.CachedExam;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Export bảng điểm của một bài thi (các lượt đã nộp) dạng CSV/XLSX.
+ *
+ * Đọc bằng JDBC cursor chỉ-tiến (MySQL: fetchSize = Integer.MIN_VALUE để driver
+ * stream từng dòng thay vì đọc hết kết quả vào heap) và ghi từng dòng thẳng ra
+ * response. Bộ nhớ chỉ phụ thuộc số câu hỏi (một dòng ma trận), không phụ
+ * thuộc số lượt làm bài.
+ *
+ * Mỗi export giữ một connection Hikari suốt thời gian ghi (kể cả khi client đọc
+ * chậm), nên số export đồng thời bị giới hạn bởi exam.export.max-concurrent.
+ */
+@Service
+public class GradebookExportService {
+
+    private static final String ATTEMPT_COLUMNS = "a.attempt_id, a.user_id, a.attempt_number, a.start_time, "
+            + "a.submitted_at, a.total_score, a.grading_status";
+
+    private static final String ATTEMPTS_SQL = "SELECT " + ATTEMPT_COLUMNS + " FROM exam_attempts a "
+            + "WHERE a.exam_id = ? AND a.submitted_at IS NOT NULL ORDER BY a.attempt_id";
+
+    // LEFT JOIN: lượt làm không có câu trả lời nào vẫn có một dòng (điểm trống)
+    private static final String MATRIX_SQL = "SELECT " + ATTEMPT_COLUMNS + ", e.question_id, e.score "
+            + "FROM exam_attempts a LEFT JOIN exam_answers e ON e.attempt_id = a.attempt_id "
+            + "WHERE a.exam_id = ? AND a.submitted_at IS NOT NULL ORDER BY a.attempt_id";
+
+    private static final String ANSWERS_SQL = "SELECT " + ATTEMPT_COLUMNS + ", e.question_id, e.score, "
+            + "e.is_manually_graded, e.feedback FROM exam_attempts a "
+            + "JOIN exam_answers e ON e.attempt_id = a.attempt_id "
+            + "WHERE a.exam_id = ? AND a.submitted_at IS NOT NULL ORDER BY a.attempt_id, e.question_id";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final Semaphore exportPermits;
+
+    public GradebookExportService(DataSource dataSource,
+            @Value("${exam.export.fetch-size:" + Integer.MIN_VALUE + "}") int fetchSize,
+            @Value("${exam.export.max-concurrent:2}") int maxConcurrent) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.exportPermits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Giữ một lượt export (không chờ). Trả về false nếu đã đủ số export đồng
+     * thời; true thì phải gọi releaseExport() khi xong.
+     */
+    public boolean tryAcquireExport() {
+        return exportPermits.tryAcquire();
+    }
+
+    public void releaseExport() {
+        exportPermits.release();
+    }
+
+    public void export(CachedExam cachedExam, ExportFormat format, ExportLayout layout,
+            List<AttemptColumn> columns, OutputStream out) throws IOException {
+        List<Question> questions = new ArrayList<>(cachedExam.exam().getQuestions());
+        questions.sort(Comparator.comparingInt(Question::getOrderIndex));
+
+        try (TabularWriter writer = TabularWriter.create(format, out)) {
+            switch (layout) {
+                case ATTEMPTS -> writeAttempts(cachedExam.examId(), columns, writer);
+                case MATRIX -> writeMatrix(cachedExam.examId(), columns, questions, writer);
+                case ANSWERS -> writeAnswers(cachedExam.examId(), columns, questions, writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeAttempts(Long examId, List<AttemptColumn> columns, TabularWriter writer) throws IOException {
+        writer.writeRow(headers(columns));
+        streamingJdbcTemplate.query(ATTEMPTS_SQL, unchecked(rs -> writer.writeRow(attemptCells(rs, columns))),
+                examId);
+    }
+
+    /**
+     * Mỗi lượt làm một dòng, thêm một cột điểm cho mỗi câu hỏi (theo thứ tự câu).
+     * Câu trả lời của cùng lượt làm đến liền nhau (ORDER BY attempt_id) nên chỉ
+     * cần giữ dòng hiện tại.
+     */
+    private void writeMatrix(Long examId, List<AttemptColumn> columns, List<Question> questions,
+            TabularWriter writer) throws IOException {
+        Map<Long, Integer> position = new HashMap<>();
+        List<Object> header = new ArrayList<>(headers(columns));
+        for (int i = 0; i < questions.size(); i++) {
+            position.put(questions.get(i).getQuestionId(), i);
+            header.add("Q" + (i + 1) + " (" + questions.get(i).getQuestionId() + ")");
+        }
+        writer.writeRow(header);
+
+        MatrixRow row = new MatrixRow(questions.size());
+        streamingJdbcTemplate.query(MATRIX_SQL, unchecked(rs -> {
+            long attemptId = rs.getLong(1);
+            if (row.attemptId == null || row.attemptId != attemptId) {
+                row.flushTo(writer);
+                row.start(attemptId, attemptCells(rs, columns));
+            }
+            Integer index = position.get(rs.getObject(8, Long.class));
+            if (index != null) {
+                row.scores[index] = rs.getDouble(9);
+            }
+        }), examId);
+        row.flushTo(writer);
+    }
+
+    private void writeAnswers(Long examId, List<AttemptColumn> columns, List<Question> questions,
+            TabularWriter writer) throws IOException {
+        Map<Long, Integer> position = new HashMap<>();
+        Map<Long, Question> byId = new HashMap<>();
+        for (int i = 0; i < questions.size(); i++) {
+            position.put(questions.get(i).getQuestionId(), i);
+            byId.put(questions.get(i).getQuestionId(), questions.get(i));
+        }
+
+        List<Object> header = new ArrayList<>(headers(columns));
+        header.addAll(List.of("questionNo", "questionId", "questionType", "score", "maxScore", "manuallyGraded",
+                "feedback"));
+        writer.writeRow(header);
+
+        streamingJdbcTemplate.query(ANSWERS_SQL, unchecked(rs -> {
+            long questionId = rs.getLong(8);
+            Question question = byId.get(questionId);
+            Integer index = position.get(questionId);
+
+            List<Object> cells = new ArrayList<>(attemptCells(rs, columns));
+            cells.add(index != null ? index + 1 : null);
+            cells.add(questionId);
+            cells.add(question != null ? question.getQuestionType().name() : null);
+            cells.add(rs.getDouble(9));
+            cells.add(question != null ? question.getScore() : null);
+            cells.add(rs.getBoolean(10) ? "Y" : "N");
+            cells.add(rs.getString(11));
+            writer.writeRow(cells);
+        }), examId);
+    }
+
+    private static List<Object> headers(List<AttemptColumn> columns) {
+        List<Object> header = new ArrayList<>(columns.size());
+        for (AttemptColumn column : columns) {
+            header.add(column.getHeader());
+        }
+        return header;
+    }
+
+    // Cột thứ (ordinal + 1) của ATTEMPT_COLUMNS
+    private static List<Object> attemptCells(ResultSet rs, List<AttemptColumn> columns) throws SQLException {
+        List<Object> cells = new ArrayList<>(columns.size());
+        for (AttemptColumn column : columns) {
+            int index = column.ordinal() + 1;
+            Object value = switch (column) {
+                case START_TIME, SUBMITTED_AT -> {
+                    Timestamp ts = rs.getTimestamp(index);
+                    yield ts != null ? ts.toLocalDateTime() : null;
+                }
+                case TOTAL_SCORE -> rs.getDouble(index);
+                default -> rs.getObject(index);
+            };
+            cells.add(value);
+        }
+        return cells;
+    }
+
+    private static RowCallbackHandler unchecked(RowHandler handler) {
+        return rs -> {
+            try {
+                handler.processRow(rs);
+            } catch (IOException e) {
+                // Client ngắt kết nối: dừng đọc cursor
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void processRow(ResultSet rs) throws SQLException, IOException;
+    }
+
+    private static final class MatrixRow {
+        private Long attemptId;
+        private List<Object> attemptCells;
+        private final Double[] scores;
+
+        MatrixRow(int questionCount) {
+            this.scores = new Double[questionCount];
+        }
+
+        void start(long attemptId, List<Object> attemptCells) {
+            this.attemptId = attemptId;
+            this.attemptCells = attemptCells;
+            Arrays.fill(scores, null);
+        }
+
+        void flushTo(TabularWriter writer) throws IOException {
+            if (attemptId == null) {
+                return;
+            }
+            List<Object> cells = new ArrayList<>(attemptCells);
+            cells.addAll(Arrays.asList(scores));
+            writer.writeRow(cells);
+        }
+    }
+}
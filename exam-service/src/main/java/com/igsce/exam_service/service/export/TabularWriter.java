@@ -0,0 +1,20 @@
+package com.igsce.exam_service.service.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Ghi bảng theo từng dòng thẳng ra output stream (không giữ dòng nào trong bộ nhớ)
+ */
+public interface TabularWriter extends Closeable {
+
+    /**
+     * Ô có thể là null, Number, String hoặc LocalDateTime
+     */
+    void writeRow(List<?> cells) throws IOException;
+
+    static TabularWriter create(ExportFormat format, java.io.OutputStream out) throws IOException {
+        return format == ExportFormat.XLSX ? new XlsxTabularWriter(out) : new CsvTabularWriter(out);
+    }
+}
@@ -0,0 +1,332 @@
+package com.igsce.exam_service.service.grading;
+
+import com.igsce.exam_service.config.RabbitConfig;
+import com.igsce.exam_service.dto.AttemptGradedEvent;
+import com.igsce.exam_service.dto.BulkGradingResponse;
+import com.igsce.exam_service.dto.BulkGradingResponse.ItemResult;
+import com.igsce.exam_service.dto.BulkGradingResponse.Outcome;
+import com.igsce.exam_service.dto.GradingResultCallbackDTO;
+import com.igsce.exam_service.dto.ManualGradingRequest;
+import com.igsce.exam_service.enums.GradingStatus;
+import com.igsce.exam_service.service.analysis.ItemAnalysisService;
+import com.igsce.exam_service.service.analysis.ItemResponse;
+import com.igsce.exam_service.service.outbox.OutboxPublisher;
+import com.igsce.exam_service.service.stats.ExamStatisticsService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Áp dụng kết quả chấm của AI (và điểm giáo viên chấm tay) theo lô bằng JDBC batch.
+ *
+ * 1. Khóa các attempt (FOR UPDATE), gom điểm từng câu của cả lô và chỉ giữ kết quả
+ * có phiên bản (gradedAt) mới hơn bản đã ghi trong grading_result_ledger: message
+ * gửi lại bị bỏ qua, kết quả AI chấm lại thì được áp dụng.
+ * 2. Batch UPDATE exam_answers theo (attempt_id, question_id) + batch upsert ledger.
+ * Câu đã được giáo viên chấm tay giữ nguyên điểm, chỉ cập nhật ai_score/ai_feedback.
+ * 3. Tính lại total_score của các attempt bằng một câu UPDATE aggregate.
+ * 4. Ghi AttemptGradedEvent vào outbox cho các attempt vừa đổi trạng thái.
+ *
+ * Chấm tay theo lô (applyManualGrades) dùng chung bước 3-4: mỗi attempt chỉ
+ * được tính lại tổng điểm một lần dù có nhiều câu được chấm.
+ */
+@Service
+public class GradingResultBatchProcessor {
+
+    private static final String DEFAULT_AI_FEEDBACK = "AI đã chấm";
+
+    private static final String UPDATE_ANSWER_SQL = "UPDATE exam_answers "
+            + "SET ai_score = ?, ai_feedback = ?, "
+            + "score = CASE WHEN is_manually_graded THEN score ELSE ? END, "
+            + "feedback = CASE WHEN is_manually_graded THEN feedback ELSE ? END "
+            + "WHERE attempt_id = ? AND question_id = ?";
+
+    private static final String UPSERT_LEDGER_SQL = "INSERT INTO grading_result_ledger "
+            + "(attempt_id, question_id, result_version, processed_at) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE result_version = VALUES(result_version), processed_at = VALUES(processed_at)";
+
+    private static final String LOCK_ATTEMPTS_SQL = "SELECT attempt_id, grading_status FROM exam_attempts "
+            + "WHERE attempt_id IN (:attemptIds) ORDER BY attempt_id FOR UPDATE";
+
+    private static final String RECALCULATE_TOTAL_SQL = "UPDATE exam_attempts a "
+            + "SET a.total_score = (SELECT COALESCE(SUM(e.score), 0) FROM exam_answers e WHERE e.attempt_id = a.attempt_id), "
+            + "a.score_version = a.score_version + 1 "
+            + "WHERE a.attempt_id IN (:attemptIds)";
+
+    private static final String UPDATE_TEACHER_GRADE_SQL = "UPDATE exam_answers "
+            + "SET score = ?, feedback = ?, teacher_feedback = ?, is_manually_graded = true "
+            + "WHERE answer_id = ?";
+
+    private static final String UPDATE_STATUS_SQL = "UPDATE exam_attempts SET grading_status = :status "
+            + "WHERE attempt_id IN (:attemptIds)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final ExamStatisticsService examStatisticsService;
+    private final ItemAnalysisService itemAnalysisService;
+    private final OutboxPublisher outboxPublisher;
+
+    public GradingResultBatchProcessor(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+            ExamStatisticsService examStatisticsService, ItemAnalysisService itemAnalysisService,
+            OutboxPublisher outboxPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.examStatisticsService = examStatisticsService;
+        this.itemAnalysisService = itemAnalysisService;
+        this.outboxPublisher = outboxPublisher;
+    }
+
+    /**
+     * Áp dụng một lô kết quả trong một transaction. Trả về số câu trả lời được cập nhật.
+     */
+    @Transactional
+    public int apply(List<GradingResultCallbackDTO> results) {
+        Map<Key, GradedAnswer> graded = new LinkedHashMap<>();
+        Set<Long> attemptIds = new LinkedHashSet<>();
+        Set<Long> attemptsWithoutEssays = new LinkedHashSet<>();
+
+        for (GradingResultCallbackDTO result : results) {
+            if (result == null || result.getAttemptId() == null) {
+                continue;
+            }
+            attemptIds.add(result.getAttemptId());
+
+            if (result.getAnswerScores() == null || result.getAnswerScores().isEmpty()) {
+                attemptsWithoutEssays.add(result.getAttemptId());
+                continue;
+            }
+            for (Map<String, Object> answerScore : result.getAnswerScores()) {
+                Number questionId = (Number) answerScore.get("questionId");
+                Number score = (Number) answerScore.get("score");
+                if (questionId == null || score == null) {
+                    continue;
+                }
+                String feedback = (String) answerScore.get("feedback");
+                long version = result.getGradedAt() != null ? result.getGradedAt() : 0L;
+                // Cùng câu xuất hiện nhiều lần trong lô: giữ kết quả mới nhất
+                graded.merge(new Key(result.getAttemptId(), questionId.longValue()),
+                        new GradedAnswer(score.doubleValue(), feedback != null ? feedback : DEFAULT_AI_FEEDBACK, version),
+                        (current, next) -> next.version() > current.version() ? next : current);
+            }
+        }
+
+        if (attemptIds.isEmpty()) {
+            return 0;
+        }
+
+        // Khóa attempt trước khi đọc ledger và điểm cũ: các lô/chấm tay song song xếp hàng
+        Map<Long, String> statuses = lockAttempts(attemptIds);
+        graded.keySet().removeIf(key -> !statuses.containsKey(key.attemptId()));
+
+        // Bỏ các kết quả không mới hơn bản đã áp dụng (redelivery)
+        Map<Key, Long> applied = findAppliedVersions(attemptIds);
+        graded.entrySet().removeIf(entry -> {
+            Long appliedVersion = applied.get(entry.getKey());
+            return appliedVersion != null && entry.getValue().version() <= appliedVersion;
+        });
+
+        Set<Long> aiGraded = new LinkedHashSet<>();
+        graded.keySet().forEach(key -> aiGraded.add(key.attemptId()));
+
+        // Không có câu tự luận nào để chấm -> coi như hoàn thành (bỏ attempt đã COMPLETED)
+        attemptsWithoutEssays.removeAll(aiGraded);
+        attemptsWithoutEssays.removeIf(id -> !statuses.containsKey(id)
+                || GradingStatus.COMPLETED.name().equals(statuses.get(id)));
+
+        Set<Long> changed = new LinkedHashSet<>(aiGraded);
+        changed.addAll(attemptsWithoutEssays);
+        if (changed.isEmpty()) {
+            return 0;
+        }
+
+        // Đóng góp cũ của các lượt làm sắp đổi điểm (cho item analysis)
+        List<ItemResponse> before = itemAnalysisService.loadResponses(aiGraded);
+
+        if (!graded.isEmpty()) {
+            List<Object[]> answerArgs = new ArrayList<>(graded.size());
+            List<Object[]> ledgerArgs = new ArrayList<>(graded.size());
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            graded.forEach((key, answer) -> {
+                answerArgs.add(new Object[] { answer.score(), answer.feedback(), answer.score(), answer.feedback(),
+                        key.attemptId(), key.questionId() });
+                ledgerArgs.add(new Object[] { key.attemptId(), key.questionId(), answer.version(), now });
+            });
+
+            jdbcTemplate.batchUpdate(UPDATE_ANSWER_SQL, answerArgs);
+            jdbcTemplate.batchUpdate(UPSERT_LEDGER_SQL, ledgerArgs);
+        }
+
+        namedJdbcTemplate.update(RECALCULATE_TOTAL_SQL, new MapSqlParameterSource("attemptIds", changed));
+        publishTotals(changed);
+        itemAnalysisService.recordAfterCommit(before, itemAnalysisService.loadResponses(aiGraded));
+
+        // Kết quả chấm lại không kéo attempt đã COMPLETED (giáo viên đã duyệt) về AI_GRADED
+        Set<Long> toAiGraded = new LinkedHashSet<>(aiGraded);
+        toAiGraded.removeIf(id -> GradingStatus.COMPLETED.name().equals(statuses.get(id)));
+        updateStatus(toAiGraded, GradingStatus.AI_GRADED);
+        updateStatus(attemptsWithoutEssays, GradingStatus.COMPLETED);
+
+        publishGradedEvents(changed);
+
+        return graded.size();
+    }
+
+    /**
+     * Áp dụng điểm giáo viên chấm tay cho nhiều câu trả lời trong một transaction.
+     * Item không hợp lệ được bỏ qua (báo trong kết quả), không làm hỏng cả lô.
+     */
+    @Transactional
+    public BulkGradingResponse applyManualGrades(List<ManualGradingRequest> items) {
+        Map<Long, AnswerRef> answers = findAnswers(items);
+
+        // answerId lặp lại: chỉ áp dụng item cuối cùng
+        Map<Long, Integer> lastIndex = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            ManualGradingRequest item = items.get(i);
+            if (item != null && item.getAnswerId() != null) {
+                lastIndex.put(item.getAnswerId(), i);
+            }
+        }
+
+        List<ItemResult> results = new ArrayList<>(items.size());
+        List<Object[]> updateArgs = new ArrayList<>();
+        Set<Long> attemptIds = new LinkedHashSet<>();
+
+        for (int i = 0; i < items.size(); i++) {
+            ManualGradingRequest item = items.get(i);
+            Long attemptId = item != null ? item.getAttemptId() : null;
+            Long answerId = item != null ? item.getAnswerId() : null;
+            AnswerRef answer = answerId != null ? answers.get(answerId) : null;
+
+            Outcome outcome;
+            if (answer == null || !answer.attemptId().equals(attemptId)) {
+                outcome = Outcome.NOT_FOUND;
+            } else if (lastIndex.get(answerId) != i) {
+                outcome = Outcome.DUPLICATE;
+            } else if (item.getScore() == null || item.getScore() < 0 || item.getScore() > answer.maxScore()) {
+                outcome = Outcome.INVALID_SCORE;
+            } else {
+                outcome = Outcome.UPDATED;
+                updateArgs.add(new Object[] { item.getScore(), item.getFeedback(), item.getFeedback(), answerId });
+                attemptIds.add(attemptId);
+            }
+            results.add(new ItemResult(attemptId, answerId, outcome));
+        }
+
+        if (!attemptIds.isEmpty()) {
+            // Khóa attempt trước khi đọc đóng góp cũ (như apply)
+            lockAttempts(attemptIds);
+            List<ItemResponse> before = itemAnalysisService.loadResponses(attemptIds);
+
+            jdbcTemplate.batchUpdate(UPDATE_TEACHER_GRADE_SQL, updateArgs);
+            namedJdbcTemplate.update(RECALCULATE_TOTAL_SQL, new MapSqlParameterSource("attemptIds", attemptIds));
+            updateStatus(attemptIds, GradingStatus.COMPLETED);
+
+            publishTotals(attemptIds);
+            itemAnalysisService.recordAfterCommit(before, itemAnalysisService.loadResponses(attemptIds));
+            publishGradedEvents(attemptIds);
+        }
+
+        int updated = updateArgs.size();
+        return new BulkGradingResponse(updated, items.size() - updated, attemptIds.size(), results);
+    }
+
+    // [answerId -> (attemptId, điểm tối đa của câu)] cho các câu trả lời trong request
+    private Map<Long, AnswerRef> findAnswers(List<ManualGradingRequest> items) {
+        Set<Long> answerIds = new HashSet<>();
+        for (ManualGradingRequest item : items) {
+            if (item != null && item.getAnswerId() != null) {
+                answerIds.add(item.getAnswerId());
+            }
+        }
+
+        Map<Long, AnswerRef> answers = new HashMap<>();
+        if (answerIds.isEmpty()) {
+            return answers;
+        }
+        namedJdbcTemplate.query(
+                "SELECT e.answer_id, e.attempt_id, q.score FROM exam_answers e "
+                        + "JOIN questions q ON q.question_id = e.question_id WHERE e.answer_id IN (:answerIds)",
+                new MapSqlParameterSource("answerIds", answerIds),
+                rs -> {
+                    answers.put(rs.getLong(1), new AnswerRef(rs.getLong(2), rs.getDouble(3)));
+                });
+        return answers;
+    }
+
+    // Khóa các attempt theo thứ tự id (tránh deadlock giữa các lô), trả về [attemptId -> grading_status]
+    private Map<Long, String> lockAttempts(Set<Long> attemptIds) {
+        Map<Long, String> statuses = new HashMap<>();
+        namedJdbcTemplate.query(LOCK_ATTEMPTS_SQL, new MapSqlParameterSource("attemptIds", attemptIds),
+                rs -> {
+                    statuses.put(rs.getLong(1), rs.getString(2));
+                });
+        return statuses;
+    }
+
+    // [(attemptId, questionId) -> phiên bản kết quả đã áp dụng]; bản ghi cũ chưa có phiên bản tính là 0
+    private Map<Key, Long> findAppliedVersions(Set<Long> attemptIds) {
+        Map<Key, Long> applied = new HashMap<>();
+        namedJdbcTemplate.query(
+                "SELECT attempt_id, question_id, result_version FROM grading_result_ledger "
+                        + "WHERE attempt_id IN (:attemptIds)",
+                new MapSqlParameterSource("attemptIds", attemptIds),
+                rs -> {
+                    applied.put(new Key(rs.getLong(1), rs.getLong(2)), rs.getLong(3));
+                });
+        return applied;
+    }
+
+    // Đẩy tổng điểm mới sang thống kê bài thi (áp dụng sau khi COMMIT)
+    private void publishTotals(Set<Long> attemptIds) {
+        namedJdbcTemplate.query(
+                "SELECT attempt_id, exam_id, user_id, total_score, score_version FROM exam_attempts "
+                        + "WHERE attempt_id IN (:attemptIds)",
+                new MapSqlParameterSource("attemptIds", attemptIds),
+                rs -> {
+                    examStatisticsService.recordScoreAfterCommit(rs.getObject(2, Long.class), rs.getLong(1),
+                            rs.getObject(3, Long.class), rs.getDouble(4), rs.getLong(5));
+                });
+    }
+
+    // Thông báo cho học sinh (qua communication-service) và các request long-poll
+    private void publishGradedEvents(Set<Long> attemptIds) {
+        if (attemptIds.isEmpty()) {
+            return;
+        }
+        List<AttemptGradedEvent> events = namedJdbcTemplate.query(
+                "SELECT attempt_id, exam_id, user_id, total_score, grading_status FROM exam_attempts "
+                        + "WHERE attempt_id IN (:attemptIds)",
+                new MapSqlParameterSource("attemptIds", attemptIds),
+                (rs, rowNum) -> new AttemptGradedEvent(rs.getLong(1), rs.getObject(2, Long.class),
+                        rs.getObject(3, Long.class), rs.getDouble(4), rs.getString(5)));
+        for (AttemptGradedEvent event : events) {
+            outboxPublisher.publish(RabbitConfig.NOTIFICATION_EXCHANGE, RabbitConfig.ATTEMPT_GRADED_ROUTING_KEY, event);
+        }
+    }
+
+    private void updateStatus(Set<Long> attemptIds, GradingStatus status) {
+        if (attemptIds.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.update(UPDATE_STATUS_SQL, new MapSqlParameterSource()
+                .addValue("status", status.name())
+                .addValue("attemptIds", attemptIds));
+    }
+
+    private record Key(long attemptId, long questionId) {
+    }
+
+    private record GradedAnswer(double score, String feedback, long version) {
+    }
+
+    private record AnswerRef(Long attemptId, double maxScore) {
+    }
+}
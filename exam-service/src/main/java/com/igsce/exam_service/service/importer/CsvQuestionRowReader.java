@@ -0,0 +1,240 @@
+package com.igsce.exam_service.service.importer;
+
+import com.igsce.exam_service.dto.OptionRequest;
+import com.igsce.exam_service.dto.QuestionRequest;
+import com.igsce.exam_service.enums.QuestionType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * CSV (RFC 4180, UTF-8, có hoặc không có BOM) với dòng tiêu đề. Tên cột trùng
+ * tên field của QuestionRequest (không phân biệt hoa thường): questionType,
+ * content, score, orderIndex, topic, essayCorrectAnswer, numericAnswer,
+ * numericTolerance, numericUnit, acceptedAnswers, image.
+ *
+ * Câu MCQ: các cột option1, option2, ... và cột correct liệt kê phương án
+ * đúng theo số thứ tự hoặc chữ cái, vd: "2", "B", "1;3".
+ */
+class CsvQuestionRowReader implements QuestionRowReader {
+
+    // Chặn file lỗi dấu nháy (một field "nuốt" cả phần còn lại của file)
+    private static final int MAX_RECORD_CHARS = 8 * 1024 * 1024;
+
+    private final Reader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<Integer> optionColumns = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private int number = 1;
+    private boolean eof;
+
+    CsvQuestionRowReader(InputStream in) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        readHeader();
+    }
+
+    private void readHeader() throws IOException {
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new IOException("CSV import is empty");
+        }
+
+        SortedMap<Integer, Integer> options = new TreeMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase(Locale.ROOT);
+            if (name.matches("option\\d+")) {
+                options.put(Integer.parseInt(name.substring("option".length())), i);
+            } else {
+                columns.putIfAbsent(name, i);
+            }
+        }
+        optionColumns.addAll(options.values());
+
+        if (!columns.containsKey("questiontype") || !columns.containsKey("content")) {
+            throw new IOException("CSV header must contain questionType and content columns");
+        }
+    }
+
+    @Override
+    public Row next() throws IOException {
+        List<String> record;
+        do {
+            record = readRecord();
+            if (record == null) {
+                return null;
+            }
+            number++;
+        } while (record.size() == 1 && record.get(0).isBlank()); // Bỏ dòng trống
+
+        try {
+            return new Row(number, toQuestion(record), null);
+        } catch (IllegalArgumentException e) {
+            return new Row(number, null, e.getMessage());
+        }
+    }
+
+    private QuestionRequest toQuestion(List<String> record) {
+        QuestionRequest question = new QuestionRequest();
+        question.setQuestionType(parseType(text(record, "questiontype")));
+        question.setContent(text(record, "content"));
+        question.setTopic(text(record, "topic"));
+        question.setScore(number(record, "score"));
+        Double orderIndex = number(record, "orderindex");
+        question.setOrderIndex(orderIndex != null ? orderIndex.intValue() : null);
+        question.setEssayCorrectAnswer(text(record, "essaycorrectanswer"));
+        question.setNumericAnswer(number(record, "numericanswer"));
+        question.setNumericTolerance(number(record, "numerictolerance"));
+        question.setNumericUnit(text(record, "numericunit"));
+        question.setAcceptedAnswers(text(record, "acceptedanswers"));
+        question.setImage(text(record, "image"));
+
+        List<OptionRequest> options = new ArrayList<>();
+        for (int column : optionColumns) {
+            String content = column < record.size() ? record.get(column) : "";
+            if (!content.isBlank()) {
+                OptionRequest option = new OptionRequest();
+                option.setContent(content.trim());
+                options.add(option);
+            }
+        }
+        markCorrect(options, text(record, "correct"));
+        question.setOptions(options.isEmpty() ? null : options);
+        return question;
+    }
+
+    private static QuestionType parseType(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return QuestionType.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown questionType '" + value + "'");
+        }
+    }
+
+    // "2", "B", "1;3", "A, C" -> đánh dấu các phương án (đếm từ 1) là đúng
+    private static void markCorrect(List<OptionRequest> options, String correct) {
+        if (correct == null) {
+            return;
+        }
+        for (String token : correct.trim().split("[,;\\s]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int index;
+            if (token.length() == 1 && Character.isLetter(token.charAt(0))) {
+                index = Character.toUpperCase(token.charAt(0)) - 'A';
+            } else {
+                try {
+                    index = Integer.parseInt(token) - 1;
+                } catch (NumberFormatException e) {
+                    index = -1;
+                }
+            }
+            if (index < 0 || index >= options.size()) {
+                throw new IllegalArgumentException("Invalid correct option '" + token + "'");
+            }
+            options.get(index).setCorrect(true);
+        }
+    }
+
+    private String text(List<String> record, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size() || record.get(index).isBlank()) {
+            return null;
+        }
+        return record.get(index);
+    }
+
+    private Double number(List<String> record, String column) {
+        String value = text(record, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            // Chấp nhận dấu phẩy thập phân do Excel tiếng Việt xuất ra
+            return Double.valueOf(value.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for '" + column + "': " + value);
+        }
+    }
+
+    /**
+     * Một bản ghi CSV (có thể trải nhiều dòng nếu field nằm trong dấu nháy),
+     * null khi hết file
+     */
+    private List<String> readRecord() throws IOException {
+        if (eof) {
+            return null;
+        }
+        List<String> record = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean started = false;
+        int length = 0;
+
+        while (true) {
+            int c = reader.read();
+            if (c < 0) {
+                eof = true;
+                if (!started && record.isEmpty()) {
+                    return null;
+                }
+                if (quoted) {
+                    throw new IOException("Unterminated quoted field in CSV record " + (number + 1));
+                }
+                record.add(field.toString());
+                return record;
+            }
+            started = true;
+            if (++length > MAX_RECORD_CHARS) {
+                throw new IOException("CSV record " + (number + 1) + " is too large");
+            }
+
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                record.add(field.toString());
+                return record;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
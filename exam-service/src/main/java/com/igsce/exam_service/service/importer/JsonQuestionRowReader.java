@@ -0,0 +1,90 @@
+package com.igsce.exam_service.service.importer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igsce.exam_service.dto.QuestionRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.stream.Collectors;
+
+/**
+ * JSON: mảng QuestionRequest, hoặc object có field "questions" (cùng dạng
+ * CreateExamRequest, nên file đề thi đã lưu có thể import lại). Mỗi phần tử
+ * được đọc thành cây riêng rồi mới bind, một phần tử sai kiểu không làm hỏng
+ * các phần tử sau.
+ */
+class JsonQuestionRowReader implements QuestionRowReader {
+
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    private int number;
+    private boolean done;
+
+    JsonQuestionRowReader(InputStream in, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createParser(in);
+        positionAtQuestionArray();
+    }
+
+    private void positionAtQuestionArray() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return;
+        }
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && "questions".equals(field)) {
+                    return;
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IOException("JSON import must be an array of questions or an object with a \"questions\" array");
+    }
+
+    @Override
+    public Row next() throws IOException {
+        if (done) {
+            return null;
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY || token == null) {
+            done = true;
+            return null;
+        }
+
+        number++;
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return new Row(number, null, "Expected a question object");
+        }
+
+        JsonNode node = objectMapper.readTree(parser);
+        try {
+            return new Row(number, objectMapper.treeToValue(node, QuestionRequest.class), null);
+        } catch (JsonProcessingException e) {
+            return new Row(number, null, describe(e));
+        }
+    }
+
+    private static String describe(JsonProcessingException e) {
+        if (e instanceof JsonMappingException mapping && !mapping.getPath().isEmpty()) {
+            String field = mapping.getPath().stream()
+                    .map(ref -> ref.getFieldName() != null ? ref.getFieldName() : "[" + ref.getIndex() + "]")
+                    .collect(Collectors.joining("."));
+            return "Invalid value for '" + field + "'";
+        }
+        return e.getOriginalMessage();
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,6 @@
+package com.igsce.exam_service.service.importer;
+
+public enum QuestionImportFormat {
+    JSON,
+    CSV
+}
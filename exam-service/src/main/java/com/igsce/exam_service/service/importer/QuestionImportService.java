@@ -0,0 +1,334 @@
+package com.igsce.exam_service.service.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igsce.exam_service.dto.OptionRequest;
+import com.igsce.exam_service.dto.QuestionImportResponse;
+import com.igsce.exam_service.dto.QuestionImportResponse.RowError;
+import com.igsce.exam_service.dto.QuestionRequest;
+import com.igsce.exam_service.entity.Question;
+import com.igsce.exam_service.entity.QuestionOption;
+import com.igsce.exam_service.enums.QuestionType;
+import com.igsce.exam_service.service.ExamService;
+import com.igsce.exam_service.service.bank.QuestionBankService;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.service.stats.ExamStatisticsService;
+import com.igsce.exam_service.service.storage.QuestionImageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Import ngân hàng câu hỏi (JSON/CSV) vào một bài thi.
+ *
+ * - File được đọc tuần tự từng câu (QuestionRowReader), chỉ giữ trong bộ nhớ
+ * một lô batch-size câu chưa ghi.
+ * - Question dùng IDENTITY nên Hibernate không batch được INSERT. Ở đây mỗi
+ * lô là một JDBC batch INSERT questions (rewriteBatchedStatements gộp thành
+ * INSERT nhiều dòng), lấy id qua getGeneratedKeys rồi batch INSERT
+ * question_options.
+ * - Mỗi dòng được validate riêng, lỗi trả về theo số dòng. Mặc định
+ * all-or-nothing: có dòng lỗi thì rollback cả lần import nhưng vẫn đọc hết
+ * file để báo đủ lỗi; skipInvalid = true thì chỉ bỏ qua các dòng lỗi.
+ * - Cả lần import chạy trong một transaction, dòng exams bị khóa (tăng
+ * revision) để hai lần import song song không trùng orderIndex.
+ */
+@Service
+public class QuestionImportService {
+
+    public static final int MAX_REPORTED_ERRORS = 500;
+
+    // Giới hạn cột của bảng (TEXT = 65535 byte, VARCHAR mặc định 255)
+    private static final int MAX_TEXT_BYTES = 65_535;
+    private static final int MAX_OPTION_LENGTH = 255;
+    private static final int MAX_UNIT_LENGTH = 32;
+    private static final int MAX_TOPIC_LENGTH = 100;
+
+    private static final String LOCK_EXAM_SQL = "UPDATE exams SET revision = revision + 1 WHERE exam_id = ?";
+
+    private static final String REVISION_SQL = "SELECT revision FROM exams WHERE exam_id = ?";
+
+    private static final String NEXT_ORDER_INDEX_SQL = "SELECT COALESCE(MAX(order_index) + 1, 0) "
+            + "FROM questions WHERE exam_id = ?";
+
+    private static final String INSERT_QUESTION_SQL = "INSERT INTO questions "
+            + "(exam_id, content, score, order_index, question_type, topic, essay_correct_answer, numeric_answer, "
+            + "numeric_tolerance, numeric_unit, accepted_answers, image, image_hash) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_OPTION_SQL = "INSERT INTO question_options "
+            + "(question_id, content, is_correct) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final QuestionImageService questionImageService;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final ExamStatisticsService examStatisticsService;
+    private final QuestionBankService questionBankService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxRows;
+
+    public QuestionImportService(JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            QuestionImageService questionImageService,
+            ExamDefinitionCache examDefinitionCache,
+            ExamStatisticsService examStatisticsService,
+            QuestionBankService questionBankService,
+            PlatformTransactionManager transactionManager,
+            @Value("${exam.import.batch-size:500}") int batchSize,
+            @Value("${exam.import.max-rows:50000}") int maxRows) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.questionImageService = questionImageService;
+        this.examDefinitionCache = examDefinitionCache;
+        this.examStatisticsService = examStatisticsService;
+        this.questionBankService = questionBankService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Import câu hỏi vào cuối bài thi. Trả về Optional.empty() nếu không có bài
+     * thi. IOException khi file hỏng cấu trúc, IllegalArgumentException khi
+     * vượt quá max-rows (cả hai đều rollback toàn bộ).
+     */
+    public Optional<QuestionImportResponse> importQuestions(Long examId, QuestionImportFormat format,
+            InputStream in, boolean skipInvalid) throws IOException {
+        long startNanos = System.nanoTime();
+        QuestionImportResponse response;
+        try {
+            response = transactionTemplate.execute(status -> {
+                try (QuestionRowReader reader = QuestionRowReader.open(format, in, objectMapper)) {
+                    QuestionImportResponse result = importInTransaction(examId, reader, skipInvalid);
+                    if (result != null && !result.isCommitted()) {
+                        status.setRollbackOnly();
+                    }
+                    return result;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (response == null) {
+            return Optional.empty();
+        }
+
+        response.setElapsedMs((System.nanoTime() - startNanos) / 1_000_000);
+        System.out.println(">>> [QuestionImport] Exam " + examId + ": imported " + response.getImportedCount()
+                + ", rejected " + response.getRejectedCount() + " in " + response.getElapsedMs() + " ms"
+                + (response.isCommitted() ? "" : " (rolled back)"));
+        return Optional.of(response);
+    }
+
+    private QuestionImportResponse importInTransaction(Long examId, QuestionRowReader reader, boolean skipInvalid)
+            throws IOException {
+        if (jdbcTemplate.update(LOCK_EXAM_SQL, examId) == 0) {
+            return null;
+        }
+        int nextOrderIndex = jdbcTemplate.queryForObject(NEXT_ORDER_INDEX_SQL, Integer.class, examId);
+
+        List<Question> pending = new ArrayList<>(batchSize);
+        List<RowError> errors = new ArrayList<>();
+        int imported = 0;
+        int rejected = 0;
+        int rows = 0;
+
+        QuestionRowReader.Row row;
+        while ((row = reader.next()) != null) {
+            if (++rows > maxRows) {
+                throw new IllegalArgumentException("Import exceeds " + maxRows + " questions");
+            }
+
+            String error = row.error() != null ? row.error() : validate(row.question());
+            if (error != null) {
+                rejected++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new RowError(row.number(), error));
+                }
+                continue;
+            }
+            // All-or-nothing đã hỏng: chỉ đọc tiếp để báo lỗi, không ghi nữa
+            if (rejected > 0 && !skipInvalid) {
+                continue;
+            }
+
+            pending.add(toQuestion(row.question(), nextOrderIndex++));
+            if (pending.size() >= batchSize) {
+                imported += insertBatch(examId, pending);
+                pending.clear();
+            }
+        }
+
+        boolean committed = rejected == 0 || skipInvalid;
+        if (committed && !pending.isEmpty()) {
+            imported += insertBatch(examId, pending);
+        }
+        if (!committed) {
+            return new QuestionImportResponse(0, rejected, false, 0, errors);
+        }
+
+        if (imported > 0) {
+            long revision = jdbcTemplate.queryForObject(REVISION_SQL, Long.class, examId);
+            examDefinitionCache.invalidateAfterCommit(examId, revision);
+            // Điểm tối đa của bài thi đã đổi -> dựng lại histogram ở lần đọc sau
+            examStatisticsService.invalidateAfterCommit(examId);
+            questionBankService.reindexExamAfterCommit(examId);
+        }
+        return new QuestionImportResponse(imported, rejected, true, 0, errors);
+    }
+
+    /**
+     * Lỗi đầu tiên của câu hỏi, null nếu hợp lệ
+     */
+    static String validate(QuestionRequest q) {
+        if (q.getQuestionType() == null) {
+            return "questionType is required";
+        }
+        if (q.getContent() == null || q.getContent().isBlank()) {
+            return "content is required";
+        }
+        if (utf8Length(q.getContent()) > MAX_TEXT_BYTES) {
+            return "content is too long";
+        }
+        if (q.getScore() == null || !Double.isFinite(q.getScore()) || q.getScore() <= 0) {
+            return "score must be a positive number";
+        }
+        if (q.getTopic() != null && q.getTopic().length() > MAX_TOPIC_LENGTH) {
+            return "topic is longer than " + MAX_TOPIC_LENGTH + " characters";
+        }
+
+        switch (q.getQuestionType()) {
+            case MCQ -> {
+                List<OptionRequest> options = q.getOptions() != null ? q.getOptions() : List.of();
+                long filled = options.stream()
+                        .filter(o -> o != null && o.getContent() != null && !o.getContent().isBlank())
+                        .count();
+                if (filled < 2 || filled != options.size()) {
+                    return "MCQ needs at least 2 non-empty options";
+                }
+                if (options.stream().anyMatch(o -> o.getContent().length() > MAX_OPTION_LENGTH)) {
+                    return "option content is longer than " + MAX_OPTION_LENGTH + " characters";
+                }
+                if (options.stream().noneMatch(OptionRequest::isCorrect)) {
+                    return "MCQ needs at least one correct option";
+                }
+            }
+            case NUMERIC -> {
+                if (q.getNumericAnswer() != null && !Double.isFinite(q.getNumericAnswer())) {
+                    return "numericAnswer must be a finite number";
+                }
+                if (q.getNumericTolerance() != null && !(q.getNumericTolerance() >= 0)) {
+                    return "numericTolerance must not be negative";
+                }
+                if (q.getNumericUnit() != null && q.getNumericUnit().length() > MAX_UNIT_LENGTH) {
+                    return "numericUnit is longer than " + MAX_UNIT_LENGTH + " characters";
+                }
+            }
+            case SHORT_ANSWER -> {
+                if (q.getAcceptedAnswers() != null && utf8Length(q.getAcceptedAnswers()) > MAX_TEXT_BYTES) {
+                    return "acceptedAnswers is too long";
+                }
+            }
+            case ESSAY -> {
+                if (q.getEssayCorrectAnswer() != null && utf8Length(q.getEssayCorrectAnswer()) > MAX_TEXT_BYTES) {
+                    return "essayCorrectAnswer is too long";
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int utf8Length(String value) {
+        // Đa số nội dung ngắn: tránh encode khi chắc chắn không vượt giới hạn
+        return value.length() * 3 <= MAX_TEXT_BYTES ? value.length()
+                : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // Question tạm (không qua Hibernate) giữ đúng các quy tắc của createExam
+    private Question toQuestion(QuestionRequest request, int defaultOrderIndex) {
+        Question question = new Question();
+        question.setContent(request.getContent());
+        question.setScore(request.getScore());
+        question.setQuestionType(request.getQuestionType());
+        question.setTopic(request.getTopic());
+        question.setOrderIndex(request.getOrderIndex() != null ? request.getOrderIndex() : defaultOrderIndex);
+        questionImageService.applyImage(question, request.getImage());
+        ExamService.applyAnswerKeyFields(question, request);
+
+        if (request.getQuestionType() == QuestionType.MCQ) {
+            for (OptionRequest optionRequest : request.getOptions()) {
+                QuestionOption option = new QuestionOption();
+                option.setContent(optionRequest.getContent());
+                option.setCorrect(optionRequest.isCorrect());
+                question.getOptions().add(option);
+            }
+        }
+        return question;
+    }
+
+    private int insertBatch(Long examId, List<Question> questions) {
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_QUESTION_SQL,
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (Question q : questions) {
+                    ps.setLong(1, examId);
+                    ps.setString(2, q.getContent());
+                    ps.setDouble(3, q.getScore());
+                    ps.setInt(4, q.getOrderIndex());
+                    ps.setString(5, q.getQuestionType().name());
+                    ps.setString(6, q.getTopic());
+                    ps.setString(7, q.getEssayCorrectAnswer());
+                    ps.setObject(8, q.getNumericAnswer(), Types.DOUBLE);
+                    ps.setObject(9, q.getNumericTolerance(), Types.DOUBLE);
+                    ps.setString(10, q.getNumericUnit());
+                    ps.setString(11, q.getAcceptedAnswers());
+                    ps.setString(12, q.getInlineImage());
+                    ps.setString(13, q.getImageHash());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Long> keys = new ArrayList<>(questions.size());
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getLong(1));
+                    }
+                }
+                return keys;
+            }
+        });
+        if (ids == null || ids.size() != questions.size()) {
+            throw new IllegalStateException("Driver returned " + (ids == null ? 0 : ids.size())
+                    + " generated keys for " + questions.size() + " questions");
+        }
+
+        List<Object[]> optionArgs = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            for (QuestionOption option : questions.get(i).getOptions()) {
+                optionArgs.add(new Object[] { ids.get(i), option.getContent(), option.isCorrect() });
+            }
+        }
+        if (!optionArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_OPTION_SQL, optionArgs);
+        }
+        return questions.size();
+    }
+}
@@ -0,0 +1,32 @@
+package com.igsce.exam_service.service.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igsce.exam_service.dto.QuestionRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Đọc lần lượt từng câu hỏi từ file import (không nạp cả file vào bộ nhớ)
+ */
+public interface QuestionRowReader extends Closeable {
+
+    /**
+     * Dòng tiếp theo, hoặc null khi hết file. Dòng không đọc được (sai kiểu dữ
+     * liệu...) trả về với question = null và error khác null. IOException chỉ
+     * ném ra khi cấu trúc file hỏng, không đọc tiếp được.
+     */
+    Row next() throws IOException;
+
+    record Row(int number, QuestionRequest question, String error) {
+    }
+
+    static QuestionRowReader open(QuestionImportFormat format, InputStream in, ObjectMapper objectMapper)
+            throws IOException {
+        return switch (format) {
+            case JSON -> new JsonQuestionRowReader(in, objectMapper);
+            case CSV -> new CsvQuestionRowReader(in);
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.igsce.exam_service.service.outbox;
+
+import com.igsce.exam_service.entity.OutboxEvent;
+import com.igsce.exam_service.repository.OutboxEventRepository;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Ghi message vào outbox trong CÙNG transaction với thay đổi nghiệp vụ.
+ * Message chỉ tồn tại nếu transaction commit, và sẽ được OutboxRelay gửi đi
+ * (ít nhất một lần) kể cả khi RabbitMQ đang gián đoạn.
+ */
+@Component
+public class OutboxPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final MessageConverter messageConverter;
+
+    public OutboxPublisher(OutboxEventRepository outboxEventRepository, MessageConverter jsonMessageConverter) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.messageConverter = jsonMessageConverter;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(String exchange, String routingKey, Object payload) {
+        // Convert ngay bằng converter của RabbitTemplate để message gửi đi giống hệt
+        // convertAndSend() trước đây
+        Message message = messageConverter.toMessage(payload, new MessageProperties());
+
+        OutboxEvent event = new OutboxEvent();
+        event.setExchange(exchange);
+        event.setRoutingKey(routingKey);
+        event.setTypeId(message.getMessageProperties().getHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME));
+        event.setPayload(new String(message.getBody(), StandardCharsets.UTF_8));
+        event.setCreatedAt(LocalDateTime.now());
+        outboxEventRepository.save(event);
+    }
+}
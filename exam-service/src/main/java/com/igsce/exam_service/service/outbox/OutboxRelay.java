@@ -0,0 +1,121 @@
+package com.igsce.exam_service.service.outbox;
+
+import com.igsce.exam_service.entity.OutboxEvent;
+import com.igsce.exam_service.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi message trong outbox sang RabbitMQ theo lô.
+ *
+ * Mỗi lượt: khóa tối đa batchSize dòng (FOR UPDATE SKIP LOCKED), gửi hết trên
+ * một channel rồi chờ publisher confirm, sau đó xóa các dòng đã gửi và COMMIT.
+ * Nếu broker lỗi/không confirm thì transaction rollback, các dòng được nhả khóa
+ * và gửi lại ở lượt sau (at-least-once; messageId = "outbox-{id}" để bên nhận
+ * có thể bỏ trùng).
+ *
+ * Metrics: exam_outbox_depth (số message đang chờ), exam_outbox_relay_lag
+ * (thời gian từ lúc ghi outbox tới lúc broker confirm), exam_outbox_relay_failures_total.
+ */
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicLong depth = new AtomicLong();
+    private final Timer lagTimer;
+    private final Counter failureCounter;
+
+    @Value("${exam.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${exam.outbox.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+            RabbitTemplate rabbitTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        Gauge.builder("exam.outbox.depth", depth, AtomicLong::get)
+                .description("Messages waiting in the outbox")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("exam.outbox.relay.lag")
+                .description("Time from outbox insert to broker confirm")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("exam.outbox.relay.failures")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${exam.outbox.relay-interval-ms:500}")
+    public void relay() {
+        try {
+            int sent;
+            do {
+                Integer count = transactionTemplate.execute(status -> relayBatch());
+                sent = count != null ? count : 0;
+            } while (sent == batchSize);
+        } catch (Exception e) {
+            failureCounter.increment();
+            System.err.println(">>> [OutboxRelay] Relay failed, will retry: " + e.getMessage());
+        } finally {
+            depth.set(outboxEventRepository.count());
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // Gửi cả lô trên cùng một channel, chờ confirm một lần cho cả lô
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxEvent event : batch) {
+                operations.send(event.getExchange(), event.getRoutingKey(), toMessage(event));
+            }
+            operations.waitForConfirmsOrDie(confirmTimeoutMs);
+            return null;
+        });
+
+        outboxEventRepository.deleteAllByIdInBatch(batch.stream().map(OutboxEvent::getId).toList());
+
+        LocalDateTime now = LocalDateTime.now();
+        for (OutboxEvent event : batch) {
+            lagTimer.record(Duration.between(event.getCreatedAt(), now));
+        }
+        return batch.size();
+    }
+
+    private Message toMessage(OutboxEvent event) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        properties.setMessageId("outbox-" + event.getId());
+        if (event.getTypeId() != null) {
+            properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, event.getTypeId());
+        }
+        return new Message(event.getPayload().getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,9 @@
+package com.igsce.exam_service.service.proctoring;
+
+import com.igsce.exam_service.enums.ProctoringEventType;
+
+/**
+ * Một sự kiện giám sát thi (bất biến), thời điểm tính bằng epoch millis
+ */
+public record ProctoringEvent(ProctoringEventType type, long occurredAt) {
+}
@@ -0,0 +1,110 @@
+package com.igsce.exam_service.service.proctoring;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bộ đệm sự kiện giám sát thi trong bộ nhớ: attemptId -> danh sách sự kiện
+ * chờ flush. Giống DraftAnswerBuffer, mọi thao tác trên danh sách con nằm
+ * trong ConcurrentHashMap.compute() của attemptId; tổng số sự kiện đang đệm
+ * bị giới hạn bởi maxEvents.
+ */
+public class ProctoringEventBuffer {
+
+    /**
+     * Sự kiện đang chờ flush của một attempt
+     */
+    public record Pending(Long examId, Long userId, List<ProctoringEvent> events) {
+    }
+
+    private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxEvents;
+
+    public ProctoringEventBuffer(int maxEvents) {
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * Đệm các sự kiện. Trả về false (không ghi gì) nếu bộ đệm đã đầy.
+     */
+    public boolean offer(Long attemptId, Long examId, Long userId, List<ProctoringEvent> events) {
+        if (size.addAndGet(events.size()) > maxEvents) {
+            size.addAndGet(-events.size());
+            return false;
+        }
+        pending.compute(attemptId, (id, current) -> {
+            Pending target = current != null ? current : new Pending(examId, userId, new ArrayList<>());
+            target.events().addAll(events);
+            return target;
+        });
+        return true;
+    }
+
+    /**
+     * Lấy (và xóa khỏi bộ đệm) toàn bộ sự kiện, theo attempt
+     */
+    public Map<Long, Pending> drainAll() {
+        Map<Long, Pending> drained = new HashMap<>();
+        for (Long attemptId : pending.keySet()) {
+            pending.computeIfPresent(attemptId, (id, current) -> {
+                drained.put(id, current);
+                size.addAndGet(-current.events().size());
+                return null;
+            });
+        }
+        return drained;
+    }
+
+    /**
+     * Trả lại bộ đệm các sự kiện flush thất bại
+     */
+    public void restore(Map<Long, Pending> drained) {
+        drained.forEach((attemptId, failed) -> {
+            size.addAndGet(failed.events().size());
+            pending.compute(attemptId, (id, current) -> {
+                if (current == null) {
+                    return failed;
+                }
+                current.events().addAll(0, failed.events());
+                return current;
+            });
+        });
+    }
+
+    /**
+     * Xem sự kiện đang đệm của một attempt (không xóa)
+     */
+    public List<ProctoringEvent> peek(Long attemptId) {
+        List<ProctoringEvent> copy = new ArrayList<>();
+        pending.computeIfPresent(attemptId, (id, current) -> {
+            copy.addAll(current.events());
+            return current;
+        });
+        return copy;
+    }
+
+    /**
+     * Bản sao sự kiện đang đệm của các attempt thuộc bài thi examId
+     */
+    public Map<Long, Pending> peekExam(Long examId) {
+        Map<Long, Pending> copy = new HashMap<>();
+        for (Long attemptId : pending.keySet()) {
+            pending.computeIfPresent(attemptId, (id, current) -> {
+                if (examId.equals(current.examId())) {
+                    copy.put(id, new Pending(current.examId(), current.userId(), new ArrayList<>(current.events())));
+                }
+                return current;
+            });
+        }
+        return copy;
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
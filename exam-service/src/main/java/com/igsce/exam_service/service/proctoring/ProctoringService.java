@@ -0,0 +1,175 @@
+package com.igsce.exam_service.service.proctoring;
+
+import com.igsce.exam_service.dto.ProctoringEventBatch;
+import com.igsce.exam_service.dto.ProctoringSummaryDTO;
+import com.igsce.exam_service.enums.ProctoringEventType;
+import com.igsce.exam_service.service.cache.CachedExam;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.service.draft.ActiveAttemptRegistry;
+import com.igsce.exam_service.service.draft.ActiveAttemptRegistry.ActiveAttempt;
+import com.igsce.exam_service.service.proctoring.ProctoringEventBuffer.Pending;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Thu sự kiện giám sát thi (chuyển tab, mất focus, dán...) của bài thi isStrict.
+ *
+ * - Trình duyệt gom nhiều sự kiện và gửi theo lô; record() chỉ ghi vào
+ * ProctoringEventBuffer trong bộ nhớ (attempt/bài thi lấy từ cache).
+ * - flush() định kỳ ghi cả bộ đệm bằng JDBC batch: mỗi attempt một dòng log
+ * gọn + cộng dồn bộ đếm theo loại sự kiện, trong cùng transaction.
+ * - Giáo viên xem tổng hợp từ proctoring_counters (cộng phần đang đệm), không
+ * quét log sự kiện.
+ *
+ * Metrics: exam_proctoring_buffered (số sự kiện đang đệm), exam_proctoring_flush.
+ */
+@Service
+public class ProctoringService {
+
+    public enum IngestStatus {
+        ACCEPTED,
+        ATTEMPT_CLOSED,
+        NOT_STRICT,
+        TOO_MANY_EVENTS,
+        BUFFER_FULL
+    }
+
+    // Đồng hồ client lệch quá mức này thì dùng giờ server
+    private static final long MAX_CLOCK_SKEW_MS = 60_000;
+    private static final long MAX_EVENT_AGE_MS = 24 * 60 * 60 * 1000L;
+
+    private final ProctoringEventBuffer buffer;
+    private final ProctoringStore store;
+    private final ActiveAttemptRegistry activeAttempts;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final Timer flushTimer;
+
+    @Value("${exam.proctoring.max-events-per-request:500}")
+    private int maxEventsPerRequest;
+
+    public ProctoringService(ProctoringStore store,
+            ActiveAttemptRegistry activeAttempts,
+            ExamDefinitionCache examDefinitionCache,
+            MeterRegistry meterRegistry,
+            @Value("${exam.proctoring.max-buffered-events:100000}") int maxBufferedEvents) {
+        this.buffer = new ProctoringEventBuffer(maxBufferedEvents);
+        this.store = store;
+        this.activeAttempts = activeAttempts;
+        this.examDefinitionCache = examDefinitionCache;
+        this.flushTimer = Timer.builder("exam.proctoring.flush").register(meterRegistry);
+        Gauge.builder("exam.proctoring.buffered", buffer, ProctoringEventBuffer::size)
+                .description("Proctoring events waiting to be flushed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ghi nhận một lô sự kiện cho attempt đang mở của userId
+     */
+    public IngestStatus record(Long attemptId, Long userId, List<ProctoringEventBatch.Event> events) {
+        Optional<ActiveAttempt> attempt = activeAttempts.find(attemptId)
+                .filter(a -> a.userId() != null && a.userId().equals(userId));
+        if (attempt.isEmpty()) {
+            return IngestStatus.ATTEMPT_CLOSED;
+        }
+        if (events == null || events.isEmpty()) {
+            return IngestStatus.ACCEPTED;
+        }
+        if (events.size() > maxEventsPerRequest) {
+            return IngestStatus.TOO_MANY_EVENTS;
+        }
+
+        CachedExam exam = examDefinitionCache.get(attempt.get().examId());
+        if (!Boolean.TRUE.equals(exam.exam().getIsStrict())) {
+            return IngestStatus.NOT_STRICT;
+        }
+
+        long now = System.currentTimeMillis();
+        List<ProctoringEvent> accepted = new ArrayList<>(events.size());
+        for (ProctoringEventBatch.Event event : events) {
+            if (event == null || event.getType() == null) {
+                continue;
+            }
+            Long occurredAt = event.getOccurredAt();
+            if (occurredAt == null || occurredAt > now + MAX_CLOCK_SKEW_MS || occurredAt < now - MAX_EVENT_AGE_MS) {
+                occurredAt = now;
+            }
+            accepted.add(new ProctoringEvent(event.getType(), occurredAt));
+        }
+
+        if (accepted.isEmpty()) {
+            return IngestStatus.ACCEPTED;
+        }
+        return buffer.offer(attemptId, attempt.get().examId(), userId, accepted)
+                ? IngestStatus.ACCEPTED
+                : IngestStatus.BUFFER_FULL;
+    }
+
+    @Scheduled(fixedDelayString = "${exam.proctoring.flush-interval-ms:2000}")
+    public void flush() {
+        Map<Long, Pending> drained = buffer.drainAll();
+        if (drained.isEmpty()) {
+            return;
+        }
+        try {
+            flushTimer.record(() -> store.append(drained));
+        } catch (Exception e) {
+            buffer.restore(drained);
+            System.err.println(">>> [ProctoringService] Flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tổng hợp vi phạm của mọi lượt làm bài thuộc bài thi (DB + bộ đệm)
+     */
+    public List<ProctoringSummaryDTO> getSummary(Long examId) {
+        Map<Long, ProctoringSummaryDTO> byAttempt = new TreeMap<>();
+        // [attemptId, userId, eventType, eventCount, lastEventAt]
+        for (Object[] row : store.findCountersByExamId(examId)) {
+            add(byAttempt, (Long) row[0], (Long) row[1], (ProctoringEventType) row[2], (Long) row[3],
+                    (LocalDateTime) row[4]);
+        }
+        buffer.peekExam(examId).forEach((attemptId, pending) -> {
+            for (ProctoringEvent event : pending.events()) {
+                add(byAttempt, attemptId, pending.userId(), event.type(), 1,
+                        ProctoringStore.toLocalDateTime(event.occurredAt()));
+            }
+        });
+        return new ArrayList<>(byAttempt.values());
+    }
+
+    private static void add(Map<Long, ProctoringSummaryDTO> byAttempt, Long attemptId, Long userId,
+            ProctoringEventType type, long count, LocalDateTime at) {
+        ProctoringSummaryDTO summary = byAttempt.computeIfAbsent(attemptId,
+                id -> new ProctoringSummaryDTO(id, userId, new EnumMap<>(ProctoringEventType.class), 0, null));
+        summary.getCounts().merge(type, count, Long::sum);
+        summary.setTotalViolations(summary.getTotalViolations() + count);
+        if (at != null && (summary.getLastEventAt() == null || at.isAfter(summary.getLastEventAt()))) {
+            summary.setLastEventAt(at);
+        }
+    }
+
+    /**
+     * Log sự kiện chi tiết của một lượt làm bài, theo thời gian
+     */
+    public List<ProctoringEventBatch.Event> getEvents(Long attemptId) {
+        List<ProctoringEvent> events = store.findEventsByAttemptId(attemptId);
+        events.addAll(buffer.peek(attemptId));
+        events.sort(Comparator.comparingLong(ProctoringEvent::occurredAt));
+        return events.stream()
+                .map(e -> new ProctoringEventBatch.Event(e.type(), e.occurredAt()))
+                .toList();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
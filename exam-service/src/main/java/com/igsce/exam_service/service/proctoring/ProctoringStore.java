@@ -0,0 +1,131 @@
+package com.igsce.exam_service.service.proctoring;
+
+import com.igsce.exam_service.enums.ProctoringEventType;
+import com.igsce.exam_service.service.proctoring.ProctoringEventBuffer.Pending;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Truy cập proctoring_event_chunks / proctoring_counters bằng JDBC batch.
+ * Log sự kiện và bộ đếm được ghi trong cùng một transaction.
+ */
+@Component
+public class ProctoringStore {
+
+    // Giữ mỗi dòng log dưới giới hạn 64KB của cột TEXT
+    private static final int MAX_EVENTS_PER_CHUNK = 1000;
+
+    private static final String INSERT_CHUNK_SQL = "INSERT INTO proctoring_event_chunks "
+            + "(attempt_id, event_count, first_event_at, last_event_at, events) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String UPSERT_COUNTER_SQL = "INSERT INTO proctoring_counters "
+            + "(attempt_id, event_type, exam_id, user_id, event_count, last_event_at) VALUES (?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE event_count = event_count + VALUES(event_count), "
+            + "last_event_at = GREATEST(last_event_at, VALUES(last_event_at))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProctoringStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional
+    public void append(Map<Long, Pending> eventsByAttempt) {
+        List<Object[]> chunkArgs = new ArrayList<>();
+        List<Object[]> counterArgs = new ArrayList<>();
+
+        eventsByAttempt.forEach((attemptId, pending) -> {
+            List<ProctoringEvent> events = new ArrayList<>(pending.events());
+            events.sort(Comparator.comparingLong(ProctoringEvent::occurredAt));
+
+            for (int from = 0; from < events.size(); from += MAX_EVENTS_PER_CHUNK) {
+                List<ProctoringEvent> chunk = events.subList(from, Math.min(events.size(), from + MAX_EVENTS_PER_CHUNK));
+                chunkArgs.add(new Object[] { attemptId, chunk.size(), toTimestamp(chunk.get(0).occurredAt()),
+                        toTimestamp(chunk.get(chunk.size() - 1).occurredAt()), encode(chunk) });
+            }
+
+            Map<ProctoringEventType, long[]> counters = new EnumMap<>(ProctoringEventType.class);
+            for (ProctoringEvent event : events) {
+                // [count, lastEventAt]
+                long[] counter = counters.computeIfAbsent(event.type(), t -> new long[2]);
+                counter[0]++;
+                counter[1] = Math.max(counter[1], event.occurredAt());
+            }
+            counters.forEach((type, counter) -> counterArgs.add(new Object[] { attemptId, type.name(),
+                    pending.examId(), pending.userId(), counter[0], toTimestamp(counter[1]) }));
+        });
+
+        if (!chunkArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_CHUNK_SQL, chunkArgs);
+        }
+        if (!counterArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_COUNTER_SQL, counterArgs);
+        }
+    }
+
+    /**
+     * Bộ đếm của các attempt thuộc bài thi: [attemptId, userId, eventType, eventCount, lastEventAt]
+     */
+    public List<Object[]> findCountersByExamId(Long examId) {
+        return jdbcTemplate.query("SELECT attempt_id, user_id, event_type, event_count, last_event_at "
+                + "FROM proctoring_counters WHERE exam_id = ?",
+                (rs, rowNum) -> new Object[] {
+                        rs.getLong(1),
+                        rs.getObject(2, Long.class),
+                        ProctoringEventType.valueOf(rs.getString(3)),
+                        rs.getLong(4),
+                        rs.getTimestamp(5) != null ? rs.getTimestamp(5).toLocalDateTime() : null },
+                examId);
+    }
+
+    public List<ProctoringEvent> findEventsByAttemptId(Long attemptId) {
+        List<ProctoringEvent> events = new ArrayList<>();
+        jdbcTemplate.query("SELECT events FROM proctoring_event_chunks WHERE attempt_id = ? ORDER BY chunk_id",
+                rs -> {
+                    decode(rs.getString(1), events);
+                }, attemptId);
+        return events;
+    }
+
+    // Mỗi sự kiện một dòng "epochMillis TYPE"
+    static String encode(List<ProctoringEvent> events) {
+        StringBuilder sb = new StringBuilder(events.size() * 24);
+        for (ProctoringEvent event : events) {
+            sb.append(event.occurredAt()).append(' ').append(event.type().name()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    static void decode(String encoded, List<ProctoringEvent> target) {
+        if (encoded == null) {
+            return;
+        }
+        for (String line : encoded.split("\n")) {
+            int space = line.indexOf(' ');
+            if (space <= 0) {
+                continue;
+            }
+            try {
+                target.add(new ProctoringEvent(ProctoringEventType.valueOf(line.substring(space + 1)),
+                        Long.parseLong(line.substring(0, space))));
+            } catch (IllegalArgumentException e) {
+                // Loại sự kiện đã bị bỏ khỏi enum: bỏ qua dòng này
+            }
+        }
+    }
+
+    static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static Timestamp toTimestamp(long epochMillis) {
+        return new Timestamp(epochMillis);
+    }
+}
@@ -0,0 +1,144 @@
+package com.igsce.exam_service.service.scoring;
+
+import com.igsce.exam_service.entity.Question;
+import com.igsce.exam_service.entity.QuestionOption;
+import com.igsce.exam_service.enums.QuestionType;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Đáp án đã "biên dịch" của một bài thi (bất biến).
+ * Lưu dưới dạng mảng nguyên thủy sắp xếp theo questionId để tra cứu bằng
+ * binary search, không cần chạm tới entity/Hibernate khi chấm điểm.
+ */
+public final class AnswerKey {
+
+    /** Giá trị đánh dấu câu hỏi không có đáp án đúng (hoặc không phải MCQ) */
+    public static final long NO_OPTION = -1L;
+
+    private final Long examId;
+    private final long[] questionIds;
+    private final long[] correctOptionIds;
+    private final double[] scores;
+    private final QuestionType[] types;
+    // Đáp án chấm tự động cho NUMERIC/SHORT_ANSWER (null nếu phải chờ AI chấm)
+    private final LocalAnswerMatcher[] matchers;
+    private final double totalScore;
+
+    private AnswerKey(Long examId, long[] questionIds, long[] correctOptionIds,
+            double[] scores, QuestionType[] types, LocalAnswerMatcher[] matchers) {
+        this.examId = examId;
+        this.questionIds = questionIds;
+        this.correctOptionIds = correctOptionIds;
+        this.scores = scores;
+        this.types = types;
+        this.matchers = matchers;
+
+        double sum = 0;
+        for (double s : scores) {
+            sum += s;
+        }
+        this.totalScore = sum;
+    }
+
+    /**
+     * Biên dịch đồ thị câu hỏi/lựa chọn (đã được load đầy đủ) thành AnswerKey.
+     */
+    public static AnswerKey compile(Long examId, List<Question> questions) {
+        Question[] sorted = questions.stream()
+                .filter(q -> q.getQuestionId() != null)
+                .sorted(Comparator.comparing(Question::getQuestionId))
+                .toArray(Question[]::new);
+
+        int n = sorted.length;
+        long[] questionIds = new long[n];
+        long[] correctOptionIds = new long[n];
+        double[] scores = new double[n];
+        QuestionType[] types = new QuestionType[n];
+        LocalAnswerMatcher[] matchers = new LocalAnswerMatcher[n];
+
+        for (int i = 0; i < n; i++) {
+            Question q = sorted[i];
+            questionIds[i] = q.getQuestionId();
+            scores[i] = q.getScore();
+            types[i] = q.getQuestionType();
+            correctOptionIds[i] = NO_OPTION;
+
+            if (q.getQuestionType() == QuestionType.MCQ && q.getOptions() != null) {
+                for (QuestionOption option : q.getOptions()) {
+                    if (option.isCorrect() && option.getOptionId() != null) {
+                        correctOptionIds[i] = option.getOptionId();
+                        break;
+                    }
+                }
+            }
+
+            matchers[i] = compileMatcher(q);
+        }
+
+        return new AnswerKey(examId, questionIds, correctOptionIds, scores, types, matchers);
+    }
+
+    // Câu NUMERIC/SHORT_ANSWER chưa nhập đáp án thì vẫn chuyển cho AI chấm như tự luận
+    private static LocalAnswerMatcher compileMatcher(Question q) {
+        if (q.getQuestionType() == QuestionType.NUMERIC && q.getNumericAnswer() != null) {
+            return new NumericAnswerMatcher(q.getNumericAnswer(), q.getNumericTolerance(), q.getNumericUnit());
+        }
+        if (q.getQuestionType() == QuestionType.SHORT_ANSWER) {
+            return ShortAnswerMatcher.compile(q.getAcceptedAnswers());
+        }
+        return null;
+    }
+
+    /**
+     * Vị trí của câu hỏi trong key, hoặc số âm nếu câu hỏi không thuộc bài thi
+     */
+    public int indexOf(long questionId) {
+        return Arrays.binarySearch(questionIds, questionId);
+    }
+
+    public boolean contains(long questionId) {
+        return indexOf(questionId) >= 0;
+    }
+
+    public long questionIdAt(int index) {
+        return questionIds[index];
+    }
+
+    public long correctOptionIdAt(int index) {
+        return correctOptionIds[index];
+    }
+
+    public double scoreAt(int index) {
+        return scores[index];
+    }
+
+    public QuestionType typeAt(int index) {
+        return types[index];
+    }
+
+    public LocalAnswerMatcher matcherAt(int index) {
+        return matchers[index];
+    }
+
+    /**
+     * Câu hỏi được chấm ngay khi nộp (không cần gửi cho AI)
+     */
+    public boolean isGradedLocally(int index) {
+        return types[index] == QuestionType.MCQ || matchers[index] != null;
+    }
+
+    public int size() {
+        return questionIds.length;
+    }
+
+    public Long getExamId() {
+        return examId;
+    }
+
+    public double getTotalScore() {
+        return totalScore;
+    }
+}
@@ -0,0 +1,13 @@
+package com.igsce.exam_service.service.scoring;
+
+/**
+ * Đáp án chấm tự động (không cần AI) cho câu trả lời dạng văn bản ngắn.
+ * Được biên dịch một lần khi dựng AnswerKey, dùng lại cho mọi bài nộp.
+ */
+public interface LocalAnswerMatcher {
+
+    /**
+     * Câu trả lời (văn bản học sinh nhập) có khớp đáp án không
+     */
+    boolean matches(String textAnswer);
+}
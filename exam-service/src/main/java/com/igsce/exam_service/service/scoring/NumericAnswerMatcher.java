@@ -0,0 +1,81 @@
+package com.igsce.exam_service.service.scoring;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chấm câu NUMERIC: |giá trị − đáp án| ≤ sai số cho phép.
+ *
+ * Chấp nhận các cách viết thường gặp: "320", "3.2e2", "3,2", "3.2 × 10^2",
+ * "3.2x10^2", "-1 200", "1,200" kèm đơn vị phía sau (vd: "320 m/s"). Nếu câu hỏi
+ * có đơn vị thì học sinh có thể bỏ trống đơn vị, nhưng ghi sai đơn vị là sai.
+ *
+ * Dấu phẩy: là phân cách hàng nghìn khi phần nguyên có dạng 1-3 chữ số (không bắt
+ * đầu bằng 0) rồi các nhóm ",ddd" ("1,200" = 1200, "12,345,678"); ngược lại là dấu
+ * thập phân ("3,2" = 3.2, "0,125" = 0.125).
+ */
+public final class NumericAnswerMatcher implements LocalAnswerMatcher {
+
+    // Sai số mặc định khi giáo viên không nhập (chỉ để bỏ qua lỗi làm tròn double)
+    private static final double DEFAULT_RELATIVE_TOLERANCE = 1e-9;
+
+    // <số> [× 10^<mũ>] [đơn vị]
+    private static final Pattern NUMBER = Pattern.compile(
+            "^([+-]?(?:\\d+(?:[.,]\\d*)?|[.,]\\d+)(?:[eE][+-]?\\d+)?)"
+                    + "(?:\\s*[x×*·]\\s*10\\s*\\^\\s*([+-]?\\d+))?"
+                    + "\\s*(.*)$");
+
+    // Phần nguyên viết theo nhóm nghìn bằng dấu phẩy: "1,200", "-12,345,678"
+    private static final Pattern COMMA_GROUPED = Pattern.compile("^([+-]?[1-9]\\d{0,2}(?:,\\d{3})+)(?![\\d,])");
+
+    private final double expected;
+    private final double tolerance;
+    private final String unit;
+
+    public NumericAnswerMatcher(double expected, Double tolerance, String unit) {
+        this.expected = expected;
+        this.tolerance = tolerance != null && tolerance >= 0
+                ? tolerance
+                : Math.abs(expected) * DEFAULT_RELATIVE_TOLERANCE;
+        this.unit = unit == null || unit.isBlank() ? null : normalizeUnit(unit);
+    }
+
+    @Override
+    public boolean matches(String textAnswer) {
+        if (textAnswer == null) {
+            return false;
+        }
+
+        // Bỏ dấu cách/dấu phẩy ngăn cách hàng nghìn ("1 200", "1,200") trước khi tách số
+        String text = textAnswer.trim().replaceAll("(?<=\\d)[\\s\\u00A0](?=\\d{3}\\b)", "");
+        Matcher grouped = COMMA_GROUPED.matcher(text);
+        if (grouped.find()) {
+            text = grouped.group(1).replace(",", "") + text.substring(grouped.end());
+        }
+        Matcher m = NUMBER.matcher(text);
+        if (!m.matches()) {
+            return false;
+        }
+
+        double value;
+        try {
+            value = Double.parseDouble(m.group(1).replace(',', '.'));
+            if (m.group(2) != null) {
+                value *= Math.pow(10, Integer.parseInt(m.group(2)));
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        String givenUnit = normalizeUnit(m.group(3));
+        if (!givenUnit.isEmpty() && !givenUnit.equals(unit)) {
+            return false;
+        }
+        return Double.isFinite(value) && Math.abs(value - expected) <= tolerance;
+    }
+
+    // Đơn vị phân biệt hoa/thường (m ≠ M) nên chỉ bỏ khoảng trắng
+    private static String normalizeUnit(String unit) {
+        return unit.replaceAll("\\s+", "");
+    }
+}
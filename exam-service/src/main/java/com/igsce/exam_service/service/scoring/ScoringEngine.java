@@ -0,0 +1,69 @@
+package com.igsce.exam_service.service.scoring;
+
+import com.igsce.exam_service.dto.StudentAnswerDTO;
+import com.igsce.exam_service.enums.QuestionType;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bộ chấm điểm dựa trên AnswerKey đã biên dịch (lấy từ ExamDefinitionCache).
+ * Việc chấm trắc nghiệm, điền số và trả lời ngắn chỉ là một vòng lặp thuần
+ * trong bộ nhớ, không truy vấn DB; chỉ câu tự luận mới phải chờ AI.
+ */
+@Service
+public class ScoringEngine {
+
+    public static final String FEEDBACK_CORRECT = "Chính xác";
+    public static final String FEEDBACK_WRONG = "Sai";
+    public static final String FEEDBACK_PENDING_AI = "Đang chấm điểm...";
+
+    /**
+     * Chấm một câu trả lời. Trả về null nếu câu hỏi không thuộc bài thi.
+     */
+    public ScoredAnswer score(AnswerKey key, StudentAnswerDTO dto) {
+        if (dto == null || dto.getQuestionId() == null) {
+            return null;
+        }
+
+        int index = key.indexOf(dto.getQuestionId());
+        if (index < 0) {
+            return null;
+        }
+
+        if (key.typeAt(index) == QuestionType.MCQ) {
+            long correctOptionId = key.correctOptionIdAt(index);
+            boolean isCorrect = correctOptionId != AnswerKey.NO_OPTION
+                    && dto.getSelectedOptionId() != null
+                    && correctOptionId == dto.getSelectedOptionId();
+
+            return new ScoredAnswer(dto.getQuestionId(), key.typeAt(index),
+                    isCorrect ? key.scoreAt(index) : 0.0,
+                    isCorrect ? FEEDBACK_CORRECT : FEEDBACK_WRONG,
+                    false);
+        }
+
+        // Điền số / trả lời ngắn: so khớp với đáp án đã biên dịch
+        LocalAnswerMatcher matcher = key.matcherAt(index);
+        if (matcher != null) {
+            boolean isCorrect = matcher.matches(dto.getTextAnswer());
+
+            return new ScoredAnswer(dto.getQuestionId(), key.typeAt(index),
+                    isCorrect ? key.scoreAt(index) : 0.0,
+                    isCorrect ? FEEDBACK_CORRECT : FEEDBACK_WRONG,
+                    false);
+        }
+
+        // Tự luận (hoặc câu chưa có đáp án chấm tự động): chờ AI chấm
+        return new ScoredAnswer(dto.getQuestionId(), key.typeAt(index), 0.0, FEEDBACK_PENDING_AI, true);
+    }
+
+    /**
+     * Kết quả chấm một câu trả lời
+     */
+    public record ScoredAnswer(
+            Long questionId,
+            QuestionType questionType,
+            double score,
+            String feedback,
+            boolean needsAiGrading) {
+    }
+}
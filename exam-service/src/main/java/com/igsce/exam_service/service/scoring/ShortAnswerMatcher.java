@@ -0,0 +1,114 @@
+package com.igsce.exam_service.service.scoring;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.igsce.exam_service.util.TextFolding;
+
+/**
+ * Chấm câu SHORT_ANSWER theo danh sách đáp án chấp nhận được (mỗi dòng một
+ * đáp án). Mỗi dòng có thể là:
+ * - Văn bản thường: so khớp sau khi chuẩn hóa (bỏ dấu, chữ thường, bỏ dấu câu,
+ * gộp khoảng trắng). Vd: "Quang hợp" khớp "quang  hop."
+ * - "kw: a, b, c": câu trả lời phải chứa đủ các từ khóa (đã chuẩn hóa).
+ * - "/regex/": regex (không phân biệt hoa/thường) khớp toàn bộ câu trả lời.
+ */
+public final class ShortAnswerMatcher implements LocalAnswerMatcher {
+
+    private final Set<String> exact;
+    private final List<List<String>> keywordSets;
+    private final List<Pattern> patterns;
+
+    private ShortAnswerMatcher(Set<String> exact, List<List<String>> keywordSets, List<Pattern> patterns) {
+        this.exact = exact;
+        this.keywordSets = keywordSets;
+        this.patterns = patterns;
+    }
+
+    /**
+     * Biên dịch danh sách đáp án. Trả về null nếu không có đáp án hợp lệ nào.
+     */
+    public static ShortAnswerMatcher compile(String acceptedAnswers) {
+        if (acceptedAnswers == null) {
+            return null;
+        }
+
+        Set<String> exact = new HashSet<>();
+        List<List<String>> keywordSets = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+
+        for (String line : acceptedAnswers.split("\\R")) {
+            String entry = line.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            if (entry.length() > 2 && entry.startsWith("/") && entry.endsWith("/")) {
+                try {
+                    patterns.add(Pattern.compile(entry.substring(1, entry.length() - 1),
+                            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+                } catch (PatternSyntaxException e) {
+                    System.err.println(">>> [ShortAnswerMatcher] Invalid pattern ignored: " + entry);
+                }
+            } else if (entry.regionMatches(true, 0, "kw:", 0, 3)) {
+                List<String> keywords = new ArrayList<>();
+                for (String keyword : entry.substring(3).split(",")) {
+                    String normalized = normalize(keyword);
+                    if (!normalized.isEmpty()) {
+                        keywords.add(normalized);
+                    }
+                }
+                if (!keywords.isEmpty()) {
+                    keywordSets.add(keywords);
+                }
+            } else {
+                exact.add(normalize(entry));
+            }
+        }
+
+        if (exact.isEmpty() && keywordSets.isEmpty() && patterns.isEmpty()) {
+            return null;
+        }
+        return new ShortAnswerMatcher(exact, keywordSets, patterns);
+    }
+
+    @Override
+    public boolean matches(String textAnswer) {
+        if (textAnswer == null || textAnswer.isBlank()) {
+            return false;
+        }
+
+        String normalized = normalize(textAnswer);
+        if (exact.contains(normalized)) {
+            return true;
+        }
+
+        // So khớp từ khóa theo ranh giới từ (bọc bằng khoảng trắng)
+        String padded = " " + normalized + " ";
+        for (List<String> keywords : keywordSets) {
+            if (keywords.stream().allMatch(k -> padded.contains(" " + k + " "))) {
+                return true;
+            }
+        }
+
+        String trimmed = textAnswer.trim();
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(trimmed).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chuẩn hóa: bỏ dấu tiếng Việt (kể cả đ), chữ thường, thay dấu câu bằng
+     * khoảng trắng và gộp khoảng trắng
+     */
+    static String normalize(String text) {
+        return TextFolding.fold(text);
+    }
+}
@@ -0,0 +1,152 @@
+package com.igsce.exam_service.service.stats;
+
+import com.igsce.exam_service.dto.ExamStatisticsDTO;
+import com.igsce.exam_service.dto.ExamStatisticsDTO.HistogramBin;
+import com.igsce.exam_service.dto.ExamStatisticsDTO.LeaderboardEntry;
+
+import java.util.*;
+
+/**
+ * Thống kê điểm của MỘT bài thi, cập nhật tăng dần theo từng lượt làm.
+ *
+ * - Mỗi attempt chỉ đóng góp một lần: cập nhật điểm = gỡ điểm cũ rồi cộng điểm
+ * mới, nên message/callback lặp lại không làm sai số liệu. Điểm có phiên bản
+ * (scoreVersion) không mới hơn bản đang giữ bị bỏ qua, nên sự kiện đến sai thứ
+ * tự không ghi đè điểm mới bằng điểm cũ.
+ * - count/sum/sumSq cho mean và độ lệch chuẩn; histogram 1% điểm tối đa (100
+ * ô) dùng để ước lượng percentile; TreeSet theo điểm cho min/max và top-K.
+ * - Snapshot DTO chỉ được tính lại khi có thay đổi, đọc liên tiếp trả về cùng
+ * một object.
+ */
+class ExamScoreStats {
+
+    private static final int FINE_BINS = 100;
+    private static final int DISPLAY_BINS = 10;
+    private static final double[] PERCENTILES = { 25, 50, 75, 90 };
+
+    private static final Comparator<Entry> BY_SCORE_DESC = Comparator
+            .comparingDouble(Entry::score).reversed()
+            .thenComparingLong(Entry::attemptId);
+
+    private final Long examId;
+    private final double maxScore;
+    private final int leaderboardSize;
+
+    private final Map<Long, Entry> byAttempt = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(BY_SCORE_DESC);
+    private final long[] bins = new long[FINE_BINS];
+    private double sum;
+    private double sumSq;
+
+    private boolean loaded;
+    private ExamStatisticsDTO snapshot;
+
+    ExamScoreStats(Long examId, double maxScore, int leaderboardSize) {
+        this.examId = examId;
+        this.maxScore = maxScore;
+        this.leaderboardSize = leaderboardSize;
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized void markLoaded() {
+        loaded = true;
+    }
+
+    /**
+     * Ghi (hoặc ghi đè) điểm của một attempt nếu version mới hơn bản đang giữ
+     */
+    synchronized void record(Long attemptId, Long userId, double score, long version) {
+        Entry previous = byAttempt.get(attemptId);
+        if (previous != null) {
+            if (version <= previous.version()) {
+                return;
+            }
+            remove(previous);
+        }
+        Entry entry = new Entry(attemptId, userId, score, version);
+        byAttempt.put(attemptId, entry);
+        ranking.add(entry);
+        bins[binOf(score)]++;
+        sum += score;
+        sumSq += score * score;
+        snapshot = null;
+    }
+
+    synchronized ExamStatisticsDTO snapshot() {
+        if (snapshot == null) {
+            snapshot = buildSnapshot();
+        }
+        return snapshot;
+    }
+
+    private void remove(Entry entry) {
+        byAttempt.remove(entry.attemptId());
+        ranking.remove(entry);
+        bins[binOf(entry.score())]--;
+        sum -= entry.score();
+        sumSq -= entry.score() * entry.score();
+    }
+
+    private int binOf(double score) {
+        if (maxScore <= 0) {
+            return 0;
+        }
+        int bin = (int) Math.floor(score / maxScore * FINE_BINS);
+        return Math.min(Math.max(bin, 0), FINE_BINS - 1);
+    }
+
+    private ExamStatisticsDTO buildSnapshot() {
+        long n = byAttempt.size();
+        double mean = n > 0 ? sum / n : 0;
+        double variance = n > 0 ? Math.max(sumSq / n - mean * mean, 0) : 0;
+
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (double p : PERCENTILES) {
+            percentiles.put("p" + (int) p, n > 0 ? percentile(p, n) : null);
+        }
+
+        List<HistogramBin> histogram = new ArrayList<>(DISPLAY_BINS);
+        int width = FINE_BINS / DISPLAY_BINS;
+        for (int i = 0; i < DISPLAY_BINS; i++) {
+            long count = 0;
+            for (int j = i * width; j < (i + 1) * width; j++) {
+                count += bins[j];
+            }
+            histogram.add(new HistogramBin(maxScore * i / DISPLAY_BINS, maxScore * (i + 1) / DISPLAY_BINS, count));
+        }
+
+        List<LeaderboardEntry> leaderboard = new ArrayList<>(Math.min(leaderboardSize, ranking.size()));
+        int rank = 0;
+        for (Entry entry : ranking) {
+            if (rank == leaderboardSize) {
+                break;
+            }
+            leaderboard.add(new LeaderboardEntry(++rank, entry.attemptId(), entry.userId(), entry.score()));
+        }
+
+        return new ExamStatisticsDTO(examId, n, maxScore, mean, Math.sqrt(variance),
+                n > 0 ? ranking.last().score() : null,
+                n > 0 ? ranking.first().score() : null,
+                percentiles, histogram, leaderboard);
+    }
+
+    // Nội suy tuyến tính trong ô histogram chứa percentile
+    private double percentile(double p, long n) {
+        double target = p / 100.0 * n;
+        long cumulative = 0;
+        for (int i = 0; i < FINE_BINS; i++) {
+            if (bins[i] > 0 && cumulative + bins[i] >= target) {
+                double fraction = (target - cumulative) / bins[i];
+                return maxScore * (i + fraction) / FINE_BINS;
+            }
+            cumulative += bins[i];
+        }
+        return maxScore;
+    }
+
+    private record Entry(long attemptId, Long userId, double score, long version) {
+    }
+}
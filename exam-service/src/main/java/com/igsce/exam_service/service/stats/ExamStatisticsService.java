@@ -0,0 +1,139 @@
+package com.igsce.exam_service.service.stats;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.igsce.exam_service.config.RabbitConfig;
+import com.igsce.exam_service.dto.ExamScoreEvent;
+import com.igsce.exam_service.dto.ExamStatisticsDTO;
+import com.igsce.exam_service.repository.ExamAttemptRepository;
+import com.igsce.exam_service.service.cache.CachedExam;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.service.outbox.OutboxPublisher;
+import com.igsce.exam_service.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Thống kê điểm theo bài thi (histogram, mean/độ lệch chuẩn, percentile, top-K),
+ * giữ trong bộ nhớ và cập nhật tăng dần.
+ *
+ * - Ghi: submitExam / kết quả AI / chấm tay gọi recordScoreAfterCommit(); điểm
+ * được áp dụng cho replica này sau khi transaction COMMIT và broadcast qua
+ * outbox (exam.notification.exchange) cho các replica khác. Mỗi điểm kèm
+ * scoreVersion của attempt: message của chính mình, message lặp lại hay đến
+ * sai thứ tự (phiên bản không mới hơn bản đang giữ) đều là no-op.
+ * - Đọc: lần đầu mở thống kê của một bài thi (hoặc sau khi khởi động lại) sẽ
+ * dựng lại bằng cách duyệt các lượt đã nộp theo lô (keyset), không load entity.
+ * Các lần sau đọc snapshot có sẵn.
+ * - Message có thể mất khi queue của replica bị tạo lại, nên entry vẫn hết hạn
+ * sau expire-after-write (kể cả khi đang được đọc liên tục) và được dựng lại
+ * từ DB ở lần đọc kế tiếp.
+ */
+@Service
+public class ExamStatisticsService {
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final ExamAttemptRepository attemptRepository;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final OutboxPublisher outboxPublisher;
+    private final Cache<Long, ExamScoreStats> statsByExam;
+
+    @Value("${exam.stats.leaderboard-size:10}")
+    private int leaderboardSize;
+
+    public ExamStatisticsService(ExamAttemptRepository attemptRepository,
+            ExamDefinitionCache examDefinitionCache,
+            OutboxPublisher outboxPublisher,
+            @Value("${exam.stats.max-exams:1000}") long maxExams,
+            @Value("${exam.stats.expire-after-access-minutes:360}") long expireMinutes,
+            @Value("${exam.stats.expire-after-write-minutes:30}") long expireAfterWriteMinutes) {
+        this.attemptRepository = attemptRepository;
+        this.examDefinitionCache = examDefinitionCache;
+        this.outboxPublisher = outboxPublisher;
+        this.statsByExam = Caffeine.newBuilder()
+                .maximumSize(maxExams)
+                .expireAfterAccess(Duration.ofMinutes(expireMinutes))
+                .expireAfterWrite(Duration.ofMinutes(expireAfterWriteMinutes))
+                .build();
+    }
+
+    public Optional<ExamStatisticsDTO> getStatistics(Long examId) {
+        Optional<CachedExam> exam = examDefinitionCache.find(examId);
+        if (exam.isEmpty()) {
+            return Optional.empty();
+        }
+
+        ExamScoreStats stats = statsByExam.get(examId,
+                id -> new ExamScoreStats(id, exam.get().answerKey().getTotalScore(), leaderboardSize));
+        synchronized (stats) {
+            if (!stats.isLoaded()) {
+                rebuild(examId, stats);
+            }
+        }
+        return Optional.of(stats.snapshot());
+    }
+
+    /**
+     * Cập nhật điểm của một attempt sau khi transaction hiện tại COMMIT, trên
+     * replica này và (qua outbox) các replica khác. Phải gọi trong transaction.
+     * Bài thi chưa có thống kê trong bộ nhớ thì bỏ qua (sẽ dựng lại từ DB khi đọc).
+     */
+    public void recordScoreAfterCommit(Long examId, Long attemptId, Long userId, double totalScore,
+            long scoreVersion) {
+        if (examId == null || attemptId == null) {
+            return;
+        }
+        outboxPublisher.publish(RabbitConfig.NOTIFICATION_EXCHANGE, RabbitConfig.EXAM_SCORE_ROUTING_KEY,
+                new ExamScoreEvent(examId, attemptId, userId, totalScore, scoreVersion));
+        TransactionUtils.afterCommit(() -> record(examId, attemptId, userId, totalScore, scoreVersion));
+    }
+
+    /**
+     * Điểm broadcast từ replica khác (hoặc của chính replica này, khi đó là no-op).
+     * Sự kiện cũ hơn điểm đang giữ của attempt bị bỏ qua.
+     */
+    public void onScoreEvent(ExamScoreEvent event) {
+        if (event.getExamId() == null || event.getAttemptId() == null) {
+            return;
+        }
+        record(event.getExamId(), event.getAttemptId(), event.getUserId(), event.getTotalScore(),
+                event.getScoreVersion());
+    }
+
+    /**
+     * Bỏ thống kê của bài thi (vd: điểm tối đa thay đổi khi sửa câu hỏi)
+     */
+    public void invalidateAfterCommit(Long examId) {
+        TransactionUtils.afterCommit(() -> statsByExam.invalidate(examId));
+    }
+
+    private void record(Long examId, Long attemptId, Long userId, double totalScore, long scoreVersion) {
+        ExamScoreStats stats = statsByExam.getIfPresent(examId);
+        if (stats != null) {
+            stats.record(attemptId, userId, totalScore, scoreVersion);
+        }
+    }
+
+    private void rebuild(Long examId, ExamScoreStats stats) {
+        long afterId = 0;
+        while (true) {
+            // [attemptId, userId, totalScore, scoreVersion]
+            List<Object[]> batch = attemptRepository.findSubmittedScores(examId, afterId,
+                    PageRequest.of(0, REBUILD_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (Object[] row : batch) {
+                afterId = (Long) row[0];
+                stats.record(afterId, (Long) row[1], (Double) row[2], (Long) row[3]);
+            }
+        }
+        stats.markLoaded();
+    }
+}
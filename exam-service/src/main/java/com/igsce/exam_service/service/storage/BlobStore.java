@@ -0,0 +1,38 @@
+package com.igsce.exam_service.service.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.util.Optional;
+
+/**
+ * Kho lưu trữ nội dung theo địa chỉ nội dung (content-addressed).
+ * Khóa của mỗi blob là SHA-256 (hex, chữ thường) của nội dung, nên cùng một
+ * nội dung chỉ được lưu một lần.
+ */
+public interface BlobStore {
+
+    /**
+     * Lưu nội dung, trả về hash. Nếu blob đã tồn tại thì không ghi lại.
+     */
+    String put(byte[] content);
+
+    boolean exists(String hash);
+
+    /**
+     * Mở blob để đọc (Resource phải hỗ trợ contentLength() để phục vụ HTTP Range)
+     */
+    Optional<Resource> open(String hash);
+
+    static boolean isValidHash(String hash) {
+        if (hash == null || hash.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package com.igsce.exam_service.service.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * BlobStore trên filesystem local.
+ * Cấu trúc thư mục: {root}/ab/cd/abcd...(64 ký tự hex) để tránh quá nhiều file
+ * trong một thư mục. Ghi vào file tạm rồi move atomically.
+ */
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+    private final Path root;
+    private final Path tmpDir;
+
+    public FileSystemBlobStore(@Value("${exam.blob.root:data/blobs}") String rootDir) {
+        this.root = Paths.get(rootDir).toAbsolutePath().normalize();
+        this.tmpDir = root.resolve("tmp");
+        try {
+            Files.createDirectories(tmpDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không tạo được thư mục blob store: " + root, e);
+        }
+    }
+
+    @Override
+    public String put(byte[] content) {
+        String hash = sha256Hex(content);
+        Path target = pathOf(hash);
+        if (Files.exists(target)) {
+            return hash; // Đã có -> dùng chung
+        }
+
+        try {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(tmpDir, hash.substring(0, 8), ".part");
+            try {
+                Files.write(tmp, content);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Thread/replica khác vừa ghi cùng nội dung
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Không ghi được blob " + hash, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return BlobStore.isValidHash(hash) && Files.exists(pathOf(hash));
+    }
+
+    @Override
+    public Optional<Resource> open(String hash) {
+        if (!exists(hash)) {
+            return Optional.empty();
+        }
+        return Optional.of(new FileSystemResource(pathOf(hash)));
+    }
+
+    private Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static String sha256Hex(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
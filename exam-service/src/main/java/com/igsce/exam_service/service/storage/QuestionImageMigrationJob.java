@@ -0,0 +1,102 @@
+package com.igsce.exam_service.service.storage;
+
+import com.igsce.exam_service.repository.QuestionRepository;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Job chuyển ảnh Base64 inline (cột questions.image) sang blob store.
+ * Chạy theo từng lô (keyset theo questionId), mỗi lô một transaction, nên bộ
+ * nhớ chỉ phụ thuộc batchSize chứ không phụ thuộc tổng dung lượng ảnh.
+ */
+@Component
+public class QuestionImageMigrationJob {
+
+    private final QuestionRepository questionRepository;
+    private final QuestionImageService questionImageService;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Value("${exam.images.migrate-on-startup:false}")
+    private boolean migrateOnStartup;
+
+    @Value("${exam.images.migration-batch-size:50}")
+    private int defaultBatchSize;
+
+    public QuestionImageMigrationJob(QuestionRepository questionRepository,
+            QuestionImageService questionImageService,
+            ExamDefinitionCache examDefinitionCache,
+            PlatformTransactionManager transactionManager) {
+        this.questionRepository = questionRepository;
+        this.questionImageService = questionImageService;
+        this.examDefinitionCache = examDefinitionCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (migrateOnStartup) {
+            Thread thread = new Thread(() -> run(defaultBatchSize), "image-migration");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Chạy migration. Trả về thống kê: scanned / migrated / skipped.
+     */
+    public Map<String, Object> run(int batchSize) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Image migration is already running");
+        }
+
+        int size = batchSize > 0 ? batchSize : defaultBatchSize;
+        long scanned = 0;
+        long migrated = 0;
+        long afterId = 0;
+
+        try {
+            System.out.println(">>> [ImageMigration] Start, batchSize=" + size);
+            while (true) {
+                List<Object[]> batch = questionRepository.findInlineImageBatch(afterId, PageRequest.of(0, size));
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                Integer migratedInBatch = transactionTemplate.execute(status -> {
+                    int count = 0;
+                    for (Object[] row : batch) {
+                        String hash = questionImageService.storeInline((String) row[1]);
+                        if (hash != null) {
+                            count += questionRepository.moveImageToBlobStore((Long) row[0], hash);
+                        }
+                    }
+                    return count;
+                });
+
+                scanned += batch.size();
+                migrated += migratedInBatch != null ? migratedInBatch : 0;
+                afterId = (Long) batch.get(batch.size() - 1)[0];
+            }
+
+            if (migrated > 0) {
+                examDefinitionCache.invalidateAllAndBroadcast();
+            }
+            System.out.println(">>> [ImageMigration] Done. scanned=" + scanned + ", migrated=" + migrated);
+            return Map.of("scanned", scanned, "migrated", migrated, "skipped", scanned - migrated);
+        } finally {
+            running.set(false);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.igsce.exam_service.service.storage;
+
+import com.igsce.exam_service.entity.Question;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Chuyển ảnh câu hỏi (Base64 / data URL từ Frontend) vào BlobStore và gắn hash
+ * vào Question. Ảnh giống nhau giữa các bài thi chỉ được lưu một lần.
+ */
+@Service
+public class QuestionImageService {
+
+    private final BlobStore blobStore;
+
+    public QuestionImageService(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Gán ảnh cho câu hỏi từ giá trị "image" Frontend gửi lên:
+     * - null/rỗng: xóa ảnh
+     * - URL blob store (/api/exams/images/{hash}): giữ nguyên hash
+     * - data URL / Base64: lưu vào blob store
+     * - giá trị khác (vd: link ảnh ngoài): giữ inline như cũ
+     */
+    public void applyImage(Question question, String image) {
+        question.setImageHash(null);
+        question.setInlineImage(null);
+
+        if (image == null || image.isBlank()) {
+            return;
+        }
+
+        if (image.startsWith(Question.IMAGE_URL_PREFIX)) {
+            String hash = image.substring(Question.IMAGE_URL_PREFIX.length());
+            if (blobStore.exists(hash)) {
+                question.setImageHash(hash);
+                return;
+            }
+        }
+
+        String hash = storeInline(image);
+        if (hash != null) {
+            question.setImageHash(hash);
+        } else {
+            question.setInlineImage(image);
+        }
+    }
+
+    /**
+     * Lưu ảnh Base64 (có hoặc không có tiền tố data:...;base64,) vào blob store.
+     * Trả về null nếu không phải Base64 hợp lệ.
+     */
+    public String storeInline(String image) {
+        if (image == null) {
+            return null;
+        }
+
+        String data = image;
+        if (data.startsWith("data:")) {
+            int comma = data.indexOf(',');
+            if (comma < 0 || !data.substring(0, comma).endsWith(";base64")) {
+                return null;
+            }
+            data = data.substring(comma + 1);
+        }
+
+        try {
+            // Decoder chuẩn (không phải MIME) để từ chối chuỗi không phải Base64, vd: URL
+            byte[] bytes = Base64.getDecoder().decode(stripWhitespace(data).getBytes(StandardCharsets.US_ASCII));
+            if (bytes.length == 0) {
+                return null;
+            }
+            return blobStore.put(bytes);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String stripWhitespace(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Đoán Content-Type từ vài byte đầu của ảnh
+     */
+    public static MediaType sniffMediaType(byte[] header, int length) {
+        if (length >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return MediaType.IMAGE_PNG;
+        }
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (length >= 4 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return MediaType.IMAGE_GIF;
+        }
+        if (length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return MediaType.parseMediaType("image/webp");
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+}
@@ -0,0 +1,265 @@
+package com.igsce.exam_service.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Hashed timing wheel (kiểu Netty): hẹn giờ cho số lượng lớn timeout với
+ * schedule/cancel O(1).
+ *
+ * - Vòng gồm wheelSize ô (lũy thừa của 2), mỗi ô là một danh sách liên kết đôi.
+ * Mỗi tick một thread worker duyệt đúng một ô; timeout xa hơn một vòng giữ
+ * số vòng còn lại (remainingRounds).
+ * - schedule()/cancel() từ nhiều thread chỉ đẩy vào hàng đợi lock-free; chỉ
+ * thread worker mới chạm vào các ô nên không cần khóa.
+ * - Độ chính xác bằng tickDuration: timeout hết hạn trong khoảng
+ * [deadline, deadline + tick).
+ */
+public final class HashedTimingWheel<T> {
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket<T>[] wheel;
+    private final Queue<Timeout<T>> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout<T>> pendingCancels = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Consumer<T> onExpire;
+    private final LongConsumer tickListener;
+    private final Thread worker;
+
+    private volatile boolean running = true;
+    private final long startNanos;
+    private long tick;
+
+    /**
+     * @param onExpire     chạy trên thread worker: phải nhanh, việc nặng hãy đẩy
+     *                     sang executor khác
+     * @param tickListener nhận thời gian xử lý (nanos) của mỗi tick, dùng cho metrics
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickDuration, TimeUnit unit, int wheelSize, ThreadFactory threadFactory,
+            Consumer<T> onExpire, LongConsumer tickListener) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        int normalized = Integer.highestOneBit(Math.max(wheelSize, 1) * 2 - 1);
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = normalized - 1;
+        this.wheel = new Bucket[normalized];
+        for (int i = 0; i < normalized; i++) {
+            wheel[i] = new Bucket<>();
+        }
+        this.onExpire = onExpire;
+        this.tickListener = tickListener;
+        this.startNanos = System.nanoTime();
+        this.worker = threadFactory.newThread(this::run);
+        this.worker.start();
+    }
+
+    /**
+     * Hẹn giờ payload sau delay. Delay <= 0 sẽ hết hạn ở tick kế tiếp.
+     */
+    public Timeout<T> schedule(T payload, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Timing wheel is stopped");
+        }
+        long deadline = System.nanoTime() - startNanos + Math.max(unit.toNanos(delay), 0);
+        Timeout<T> timeout = new Timeout<>(this, payload, deadline);
+        size.incrementAndGet();
+        pendingAdds.add(timeout);
+        return timeout;
+    }
+
+    /** Số timeout đang chờ (gồm cả timeout vừa thêm chưa vào ô) */
+    public int size() {
+        return size.get();
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            long begin = System.nanoTime();
+            processCancellations();
+            transferPendingAdds();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+            if (tickListener != null) {
+                tickListener.accept(System.nanoTime() - begin);
+            }
+        }
+    }
+
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (running) {
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void processCancellations() {
+        Timeout<T> timeout;
+        while ((timeout = pendingCancels.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPendingAdds() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout<T> timeout = pendingAdds.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != Timeout.ST_INIT) {
+                continue; // Đã bị hủy trước khi vào ô
+            }
+            long ticks = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            // Deadline đã qua -> đặt vào ô hiện tại để hết hạn ngay tick này
+            long target = Math.max(ticks, tick);
+            wheel[(int) (target & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket<T> bucket) {
+        Timeout<T> timeout = bucket.head;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                if (timeout.compareAndSetState(Timeout.ST_INIT, Timeout.ST_EXPIRED)) {
+                    size.decrementAndGet();
+                    try {
+                        onExpire.accept(timeout.payload);
+                    } catch (RuntimeException e) {
+                        System.err.println(">>> [HashedTimingWheel] Expiry callback failed: " + e.getMessage());
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Handle của một lần hẹn giờ
+     */
+    public static final class Timeout<T> {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater
+                .newUpdater(Timeout.class, "state");
+
+        private final HashedTimingWheel<T> owner;
+        private final T payload;
+        private final long deadlineNanos;
+        private volatile int state = ST_INIT;
+
+        // Chỉ thread worker truy cập
+        private long remainingRounds;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(HashedTimingWheel<T> owner, T payload, long deadlineNanos) {
+            this.owner = owner;
+            this.payload = payload;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public T payload() {
+            return payload;
+        }
+
+        /**
+         * Hủy hẹn giờ. Trả về false nếu đã hết hạn hoặc đã hủy trước đó.
+         */
+        public boolean cancel() {
+            if (!compareAndSetState(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            owner.size.decrementAndGet();
+            owner.pendingCancels.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private boolean compareAndSetState(int expected, int update) {
+            return STATE.compareAndSet(this, expected, update);
+        }
+    }
+
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
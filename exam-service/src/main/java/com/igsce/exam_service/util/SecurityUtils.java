@@ -33,6 +33,14 @@ public class SecurityUtils {
         return null;
     }
 
+    /**
+     * TEACHER/ADMIN (dùng cho các API quản trị)
+     */
+    public static boolean isTeacherOrAdmin() {
+        String currentRole = getCurrentUserRole();
+        return "ADMIN".equalsIgnoreCase(currentRole) || "TEACHER".equalsIgnoreCase(currentRole);
+    }
+
     /**
      * Lấy studentId hợp lệ để truy vấn dữ liệu
      * - STUDENT: tự động dùng userId từ token (bỏ qua studentId trong URL)
@@ -0,0 +1,54 @@
+package com.igsce.exam_service.util;
+
+/**
+ * Hoán vị xác định theo seed (Fisher–Yates + SplitMix64).
+ * Cùng (n, seed) luôn cho cùng hoán vị trên mọi replica/JVM, nên có thể tính
+ * lại bất cứ lúc nào thay vì lưu hoán vị xuống DB.
+ */
+public final class SeededShuffle {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private SeededShuffle() {
+    }
+
+    /**
+     * Hoán vị của [0, n): phần tử thứ i của danh sách đã xáo là phần tử
+     * perm[i] của danh sách gốc. O(n), chỉ cấp phát một int[n].
+     */
+    public static int[] permutation(int n, long seed) {
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+        }
+        long state = seed;
+        for (int i = n - 1; i > 0; i--) {
+            state += GOLDEN_GAMMA;
+            int j = bounded(mix64(state), i + 1);
+            int tmp = perm[i];
+            perm[i] = perm[j];
+            perm[j] = tmp;
+        }
+        return perm;
+    }
+
+    /**
+     * Seed con cho một phần tử (vd: thứ tự lựa chọn của từng câu hỏi), độc lập
+     * với vị trí của phần tử đó trong danh sách cha.
+     */
+    public static long derive(long seed, long salt) {
+        return mix64(seed ^ mix64(salt + GOLDEN_GAMMA));
+    }
+
+    // Bộ trộn cuối của SplitMix64
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // Số trong [0, bound) từ 32 bit cao (nhân rồi dịch, không dùng phép chia)
+    private static int bounded(long random, int bound) {
+        return (int) (((random >>> 32) * bound) >>> 32);
+    }
+}
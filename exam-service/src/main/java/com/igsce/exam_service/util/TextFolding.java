@@ -0,0 +1,49 @@
+package com.igsce.exam_service.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa văn bản tiếng Việt để so khớp/tìm kiếm: bỏ dấu (kể cả đ -> d),
+ * chữ thường, thay dấu câu bằng khoảng trắng. Vd: "Quang hợp!" -> "quang hop"
+ */
+public final class TextFolding {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextFolding() {
+    }
+
+    public static String fold(String text) {
+        String s = Normalizer.normalize(text, Normalizer.Form.NFD);
+        s = COMBINING_MARKS.matcher(s).replaceAll("");
+        s = s.replace('đ', 'd').replace('Đ', 'D').toLowerCase(Locale.ROOT);
+        return NON_WORD.matcher(s).replaceAll(" ").trim();
+    }
+
+    /**
+     * Tách từ sau khi chuẩn hóa (giữ nguyên thứ tự, có thể lặp)
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean space = i == folded.length() || folded.charAt(i) == ' ';
+            if (space && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            } else if (!space && start < 0) {
+                start = i;
+            }
+        }
+        return tokens;
+    }
+}
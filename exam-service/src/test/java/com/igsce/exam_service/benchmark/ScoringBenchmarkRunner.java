@@ -0,0 +1,235 @@
+package com.igsce.exam_service.benchmark;
+
+import com.igsce.exam_service.dto.StudentAnswerDTO;
+import com.igsce.exam_service.entity.Exam;
+import com.igsce.exam_service.entity.Question;
+import com.igsce.exam_service.entity.QuestionOption;
+import com.igsce.exam_service.enums.QuestionType;
+import com.igsce.exam_service.repository.ExamRepository;
+import com.igsce.exam_service.repository.QuestionRepository;
+import com.igsce.exam_service.service.cache.ExamDefinitionCache;
+import com.igsce.exam_service.service.scoring.AnswerKey;
+import com.igsce.exam_service.service.scoring.ScoringEngine;
+import com.igsce.exam_service.service.scoring.ScoringEngine.ScoredAnswer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark chấm bài nộp (submissions/giây) ở 50 và 200 câu trắc nghiệm:
+ *
+ * - legacy: cách cũ của submitExam, mỗi câu trả lời một questionRepository.findById
+ * rồi duyệt question.getOptions() để tìm đáp án đúng.
+ * - answer-key (cache miss): một query fetch join + AnswerKey.compile cho mỗi bài nộp.
+ * - answer-key (cached): AnswerKey lấy từ ExamDefinitionCache, chấm thuần trong bộ nhớ.
+ *
+ * Nằm trong test sources nên không vào artifact production. Cần MySQL như khi chạy
+ * thật (nên dùng DB riêng); bài thi giả được tạo (isActive = false) rồi xóa sau mỗi bước:
+ *
+ * mvn spring-boot:test-run -Dspring-boot.run.profiles=benchmark
+ * -Dspring-boot.run.arguments="--exam.benchmark.question-counts=50,200 --exam.benchmark.threads=8"
+ *
+ * Mỗi bài nộp chạy trong một transaction read-only (như một request nộp bài);
+ * nên để threads ≤ kích thước pool Hikari để đo được giới hạn do round trip DB.
+ */
+@Component
+@Profile("benchmark")
+public class ScoringBenchmarkRunner implements ApplicationRunner {
+
+    private static final int OPTIONS_PER_QUESTION = 4;
+
+    private final ExamRepository examRepository;
+    private final QuestionRepository questionRepository;
+    private final ExamDefinitionCache examDefinitionCache;
+    private final ScoringEngine scoringEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ApplicationContext applicationContext;
+
+    @Value("${exam.benchmark.question-counts:50,200}")
+    private int[] questionCounts;
+
+    @Value("${exam.benchmark.threads:8}")
+    private int threads;
+
+    @Value("${exam.benchmark.warmup-seconds:3}")
+    private int warmupSeconds;
+
+    @Value("${exam.benchmark.duration-seconds:10}")
+    private int durationSeconds;
+
+    @Value("${exam.benchmark.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    public ScoringBenchmarkRunner(ExamRepository examRepository, QuestionRepository questionRepository,
+            ExamDefinitionCache examDefinitionCache, ScoringEngine scoringEngine,
+            PlatformTransactionManager transactionManager, ApplicationContext applicationContext) {
+        this.examRepository = examRepository;
+        this.questionRepository = questionRepository;
+        this.examDefinitionCache = examDefinitionCache;
+        this.scoringEngine = scoringEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> report = new ArrayList<>();
+        for (int questionCount : questionCounts) {
+            report.addAll(runStep(questionCount));
+        }
+
+        System.out.println(">>> [ScoringBenchmark] " + threads + " threads, " + durationSeconds + " s per case:");
+        report.forEach(line -> System.out.println(">>> [ScoringBenchmark] " + line));
+
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private List<String> runStep(int questionCount) throws InterruptedException {
+        Long examId = transactionTemplate.execute(status -> createExam(questionCount));
+        try {
+            List<List<StudentAnswerDTO>> submissions = buildSubmissions(examId, 64);
+
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("%d questions | legacy findById      | %10.1f submissions/s", questionCount,
+                    measure(submissions, answers -> readOnlyTransaction.execute(status -> scoreLegacy(answers)))));
+            lines.add(String.format("%d questions | answer-key (miss)    | %10.1f submissions/s", questionCount,
+                    measure(submissions, answers -> readOnlyTransaction.execute(
+                            status -> scoreWithKey(AnswerKey.compile(examId,
+                                    questionRepository.findAllWithOptionsByExamId(examId)), answers)))));
+            lines.add(String.format("%d questions | answer-key (cached)  | %10.1f submissions/s", questionCount,
+                    measure(submissions, answers -> scoreWithKey(
+                            examDefinitionCache.get(examId).answerKey(), answers))));
+            return lines;
+        } finally {
+            // Bài thi giả chỉ dùng trong bước này (examId mới mỗi bước), không cần vô hiệu hóa cache
+            transactionTemplate.executeWithoutResult(status -> examRepository.deleteById(examId));
+        }
+    }
+
+    // Cách chấm trước khi có AnswerKey (giữ nguyên để so sánh)
+    private double scoreLegacy(List<StudentAnswerDTO> answers) {
+        double total = 0;
+        for (StudentAnswerDTO dto : answers) {
+            Question question = questionRepository.findById(dto.getQuestionId()).orElse(null);
+            if (question == null) {
+                continue;
+            }
+            QuestionOption correct = question.getOptions().stream()
+                    .filter(QuestionOption::isCorrect)
+                    .findFirst()
+                    .orElse(null);
+            if (correct != null && correct.getOptionId().equals(dto.getSelectedOptionId())) {
+                total += question.getScore();
+            }
+        }
+        return total;
+    }
+
+    private double scoreWithKey(AnswerKey key, List<StudentAnswerDTO> answers) {
+        double total = 0;
+        for (StudentAnswerDTO dto : answers) {
+            ScoredAnswer scored = scoringEngine.score(key, dto);
+            if (scored != null) {
+                total += scored.score();
+            }
+        }
+        return total;
+    }
+
+    // Chạy warmup rồi đo trong durationSeconds, trả về số bài nộp/giây
+    private double measure(List<List<StudentAnswerDTO>> submissions, SubmissionScorer scorer)
+            throws InterruptedException {
+        runFor(submissions, scorer, warmupSeconds);
+        long count = runFor(submissions, scorer, durationSeconds);
+        return count / (double) durationSeconds;
+    }
+
+    private long runFor(List<List<StudentAnswerDTO>> submissions, SubmissionScorer scorer, int seconds)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong completed = new AtomicLong();
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                int i = offset;
+                while (System.nanoTime() < deadline) {
+                    scorer.score(submissions.get(i++ % submissions.size()));
+                    completed.incrementAndGet();
+                }
+            }, "scoring-benchmark-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return completed.get();
+    }
+
+    private Long createExam(int questionCount) {
+        Exam exam = new Exam();
+        exam.setTitle("Scoring benchmark (" + questionCount + " questions)");
+        exam.setDuration(60);
+        exam.setActive(false);
+        for (int i = 0; i < questionCount; i++) {
+            Question question = new Question();
+            question.setExam(exam);
+            question.setContent("Benchmark question " + (i + 1));
+            question.setScore(1.0);
+            question.setOrderIndex(i);
+            question.setQuestionType(QuestionType.MCQ);
+            for (int j = 0; j < OPTIONS_PER_QUESTION; j++) {
+                QuestionOption option = new QuestionOption();
+                option.setQuestion(question);
+                option.setContent("Option " + (j + 1));
+                option.setCorrect(j == 0);
+                question.getOptions().add(option);
+            }
+            exam.getQuestions().add(question);
+        }
+        return examRepository.save(exam).getExamId();
+    }
+
+    // Bài nộp ngẫu nhiên (mỗi câu chọn một phương án bất kỳ) của bài thi vừa tạo
+    private List<List<StudentAnswerDTO>> buildSubmissions(Long examId, int count) {
+        List<Question> questions = readOnlyTransaction
+                .execute(status -> questionRepository.findAllWithOptionsByExamId(examId));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        List<List<StudentAnswerDTO>> submissions = new ArrayList<>(count);
+        for (int s = 0; s < count; s++) {
+            List<StudentAnswerDTO> answers = new ArrayList<>(questions.size());
+            for (Question question : questions) {
+                StudentAnswerDTO answer = new StudentAnswerDTO();
+                answer.setQuestionId(question.getQuestionId());
+                List<QuestionOption> options = question.getOptions();
+                answer.setSelectedOptionId(options.get(random.nextInt(options.size())).getOptionId());
+                answers.add(answer);
+            }
+            submissions.add(answers);
+        }
+        return submissions;
+    }
+
+    @FunctionalInterface
+    private interface SubmissionScorer {
+        void score(List<StudentAnswerDTO> answers);
+    }
+}
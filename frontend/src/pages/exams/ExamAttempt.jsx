@@ -30,11 +30,37 @@ export default function ExamAttemptPage() {
 
   const STORAGE_KEY = `exam_progress_${attemptId}`;
 
-  // 1. Tải đề thi
+  // Sự kiện giám sát (bài isStrict): gom lại và gửi theo lô thay vì mỗi sự kiện một request
+  const proctoringQueueRef = useRef([]);
+  const PROCTORING_FLUSH_MS = 5000;
+  const PROCTORING_BATCH_SIZE = 200;
+  const PROCTORING_MAX_QUEUED = 1000;
+
+  const recordProctoringEvent = (type) => {
+    const queue = proctoringQueueRef.current;
+    if (queue.length < PROCTORING_MAX_QUEUED) {
+      queue.push({ type, occurredAt: Date.now() });
+    }
+  };
+
+  const flushProctoringEvents = async () => {
+    const batch = proctoringQueueRef.current.splice(0, PROCTORING_BATCH_SIZE);
+    if (batch.length === 0) return;
+    try {
+      await examClient.post(`/attempt/${attemptId}/proctoring`, { events: batch });
+    } catch (error) {
+      // 503: server đang quá tải bộ đệm -> giữ lại để gửi lần sau; lỗi khác (409: đã nộp) thì bỏ
+      if (error.response?.status === 503 || !error.response) {
+        proctoringQueueRef.current.unshift(...batch);
+      }
+    }
+  };
+
+  // 1. Tải đề thi của lượt làm bài (không kèm đáp án; bài isStrict có thứ tự câu hỏi riêng)
   useEffect(() => {
     if (!examId || !attemptId) return;
 
-    examClient.get(`/${examId}`)
+    examClient.get(`/attempt/${attemptId}/paper`)
       .then(res => {
         const data = res.data;
 
@@ -113,6 +139,7 @@ export default function ExamAttemptPage() {
     const finalAnswers = formatPayload(currentAnswers, sourceQuestions);
 
     try {
+      if (isStrict) await flushProctoringEvents();
       // [4] Dùng examClient.post
       await examClient.post(`/submit`, {
         attemptId: parseInt(attemptId),
@@ -149,9 +176,16 @@ export default function ExamAttemptPage() {
     return () => clearInterval(timer);
   }, [isInitialized.current]);
 
+  useEffect(() => {
+    if (!isStrict || !attemptId) return;
+    const timer = setInterval(flushProctoringEvents, PROCTORING_FLUSH_MS);
+    return () => clearInterval(timer);
+  }, [isStrict, attemptId]);
+
   useEffect(() => {
     const handleVisibilityChange = () => {
       if (document.hidden && isStrict) {
+        recordProctoringEvent("TAB_HIDDEN");
         setViolationCount((prev) => {
           const newCount = prev + 1;
 
@@ -184,15 +218,21 @@ export default function ExamAttemptPage() {
 
     };
 
+    const handleWindowBlur = () => {
+      if (isStrict && !document.hidden) recordProctoringEvent("FOCUS_LOST");
+    };
+
     // Hàm chặn chuột phải
     const handleContextMenu = (e) => {
       e.preventDefault();
+      if (isStrict) recordProctoringEvent("CONTEXT_MENU");
       toast.warn("Không được sử dụng chuột phải trong bài thi.");
     };
 
     // Hàm chặn Copy/Paste
     const handleCopyPaste = (e) => {
       e.preventDefault();
+      if (isStrict) recordProctoringEvent(e.type === "paste" ? "PASTE" : "COPY");
       toast.warn("Không được sao chép/dán nội dung trong bài thi.");
     };
 
@@ -200,6 +240,7 @@ export default function ExamAttemptPage() {
     document.addEventListener("contextmenu", handleContextMenu);
     document.addEventListener("copy", handleCopyPaste);
     document.addEventListener("paste", handleCopyPaste);
+    window.addEventListener("blur", handleWindowBlur);
     // document.addEventListener("blur", handleVisibilityChange); // Có thể thêm blur nếu muốn bắt cả việc click ra ngoài window
 
     return () => {
@@ -207,6 +248,7 @@ export default function ExamAttemptPage() {
       document.removeEventListener("contextmenu", handleContextMenu);
       document.removeEventListener("copy", handleCopyPaste);
       document.removeEventListener("paste", handleCopyPaste);
+      window.removeEventListener("blur", handleWindowBlur);
       // document.removeEventListener("blur", handleVisibilityChange);
     };
   }, [isStrict]);
@@ -271,6 +313,7 @@ export default function ExamAttemptPage() {
     const finalAnswers = formatPayload(answers);
 
     try {
+      if (isStrict) await flushProctoringEvents();
       // [5] Dùng examClient.post
       await examClient.post(`/submit`, {
         attemptId: parseInt(attemptId),
@@ -1,6 +1,6 @@
 "use client";
 
-import { useEffect, useState } from "react";
+import { useCallback, useEffect, useState } from "react";
 import { useNavigate, useLocation } from "react-router-dom";
 import { toast } from "react-toastify";
 import { FaCommentDots, FaHistory, FaEye } from "react-icons/fa"; // Thêm icon
@@ -8,6 +8,9 @@ import MainLayout from '../../layouts/MainLayout';
 import CommentRoom from '../../components/CommentRoom';
 import examClient from '../../api/examClient';
 
+// Số lượt làm mỗi lần tải lịch sử (API phân trang theo con trỏ, mới nhất trước)
+const HISTORY_PAGE_SIZE = 20;
+
 export default function ExamListPage() {
   const navigate = useNavigate();
   const location = useLocation();
@@ -25,6 +28,8 @@ export default function ExamListPage() {
   const [searchTerm, setSearchTerm] = useState("");
   const [now, setNow] = useState(new Date());
   const [userAttempts, setUserAttempts] = useState({}); // Đếm số lượt làm bài
+  const [historyCursor, setHistoryCursor] = useState(null); // null = đã tải hết lịch sử
+  const [loadingHistory, setLoadingHistory] = useState(false);
 
   // State quản lý việc mở khung comment (mới thêm)
   const [activeSection, setActiveSection] = useState(null);
@@ -37,6 +42,43 @@ export default function ExamListPage() {
     }
   }, [accessToken, navigate]);
 
+  // Tải một trang lịch sử và gộp vào historyMap; trang sau chỉ tải khi người dùng bấm "Tải thêm"
+  const fetchHistoryPage = useCallback(async (cursor) => {
+    setLoadingHistory(true);
+    try {
+      const params = { size: HISTORY_PAGE_SIZE };
+      if (cursor) {
+        params.cursorSubmittedAt = cursor.submittedAt;
+        params.cursorId = cursor.attemptId;
+      }
+      const res = await examClient.get('/history', { params });
+      const data = [...(res.data.inProgress || []), ...(res.data.items || [])];
+
+      setHistoryMap(prev => {
+        const map = cursor ? { ...prev } : {};
+        data.forEach(attempt => {
+          const eId = attempt.examId;
+          if (!eId) return;
+          const list = map[eId] ? [...map[eId]] : [];
+          if (!list.some(a => a.attemptId === attempt.attemptId)) list.push(attempt);
+          // Bảng lịch sử của từng bài hiển thị theo thứ tự lần thi
+          list.sort((a, b) => a.attemptNumber - b.attemptNumber);
+          map[eId] = list;
+        });
+        return map;
+      });
+      setHistoryCursor(res.data.nextCursor || null);
+    } catch (err) {
+      console.error("Lỗi tải lịch sử:", err);
+    } finally {
+      setLoadingHistory(false);
+    }
+  }, []);
+
+  const loadMoreHistory = () => {
+    if (historyCursor && !loadingHistory) fetchHistoryPage(historyCursor);
+  };
+
   // --- 3. EFFECT TẢI DỮ LIỆU (Chỉ chạy khi đã xác định Role và KHÔNG PHẢI Teacher) ---
 
   // Effect 1: Tải danh sách bài thi
@@ -63,37 +105,12 @@ export default function ExamListPage() {
       }
     };
 
-    // B. Tải lịch sử làm bài (Dùng userId lấy từ localStorage)
-
-    const fetchHistory = async () => {
-      try {
-        const res = await examClient.get('/history');
-        const data = res.data;
-
-        const map = {};
-        if (Array.isArray(data)) {
-          // Sắp xếp attempt mới nhất lên đầu
-          data.sort((b, a) => new Date(b.startedAt) - new Date(a.startedAt));
-
-          data.forEach(attempt => {
-            const eId = attempt.exam?.examId || attempt.examId;
-            if (eId) {
-              if (!map[eId]) map[eId] = [];
-              map[eId].push(attempt);
-            }
-          });
-        }
-        setHistoryMap(map);
-      } catch (err) {
-        console.error("Lỗi tải lịch sử:", err);
-      }
-    };
-
+    // B. Tải trang lịch sử đầu tiên (gồm cả các bài đang làm dở)
     fetchExams();
-    fetchHistory();
+    fetchHistoryPage(null);
 
     return () => clearInterval(timer);
-  }, [accessToken, navigate]); // Chạy lại khi userId thay đổi
+  }, [accessToken, navigate, fetchHistoryPage]); // Chạy lại khi userId thay đổi
 
   // Effect 4: Logic Lọc dữ liệu
   useEffect(() => {
@@ -224,7 +241,9 @@ export default function ExamListPage() {
 
             const examHistory = historyMap[exam.examId] || [];
             const unfinishedAttempt = examHistory.find(att => !isAttemptSubmitted(att));
-            const attemptsMade = examHistory.length;
+            // attemptNumber của lượt mới nhất đã tải: vẫn đúng khi các lượt cũ hơn chưa được tải
+            const attemptsMade = examHistory.reduce((max, att) => Math.max(max, att.attemptNumber || 0), examHistory.length);
+            const hasOlderAttempts = !!historyCursor && examHistory.length < attemptsMade;
             const maxAttempts = exam.maxAttempts || 1;
             const isLimitReached = attemptsMade >= maxAttempts;
 
@@ -345,7 +364,7 @@ export default function ExamListPage() {
 
                             return (
                               <tr key={attempt.attemptId} className="border-b hover:bg-gray-50 last:border-b-0">
-                                <td className="px-4 py-3 font-medium text-center">{idx + 1}</td>
+                                <td className="px-4 py-3 font-medium text-center">{attempt.attemptNumber || idx + 1}</td>
                                 <td className="px-4 py-3 text-gray-600 text-center">
                                   {displayTime ? (
                                     formatDate(displayTime)
@@ -390,12 +409,34 @@ export default function ExamListPage() {
                         </tbody>
                       </table>
                     </div>
+
+                    {hasOlderAttempts && (
+                      <button
+                        onClick={loadMoreHistory}
+                        disabled={loadingHistory}
+                        className="mt-3 text-sm text-blue-600 hover:text-blue-800 hover:underline disabled:text-gray-400"
+                      >
+                        {loadingHistory ? 'Đang tải...' : 'Tải thêm các lần thi trước'}
+                      </button>
+                    )}
                   </div>
                 )}
               </div>
             );
           })}
         </div>
+
+        {historyCursor && (
+          <div className="flex justify-center mt-6">
+            <button
+              onClick={loadMoreHistory}
+              disabled={loadingHistory}
+              className="px-5 py-2 rounded border border-gray-300 bg-white text-gray-700 hover:bg-gray-50 transition text-sm font-medium disabled:opacity-60"
+            >
+              {loadingHistory ? 'Đang tải...' : 'Tải thêm lịch sử làm bài'}
+            </button>
+          </div>
+        )}
       </div>
     </MainLayout>
   );
@@ -3,6 +3,9 @@
 import { useEffect, useState } from "react";
 import { useNavigate, useSearchParams } from "react-router-dom";
 
+import SockJS from "sockjs-client";
+import Stomp from "stompjs";
+
 import examClient from "../../api/examClient";
 
 export default function ExamResultPage() {
@@ -50,17 +53,63 @@ export default function ExamResultPage() {
             || (a.question.questionType === "ESSAY" && a.feedback === "Đang chấm điểm...")
     ) || false;
 
-    // Auto-polling: Tự động cập nhật mỗi 3s nếu đang chấm
+    // Chờ kết quả chấm: nhận sự kiện qua WebSocket (communication-service),
+    // nếu không kết nối được thì long-poll endpoint trạng thái (rất nhẹ)
     useEffect(() => {
-        if (!hasPendingEssay) return;
+        if (!hasPendingEssay || !result?.userId) return;
+
+        let cancelled = false;
+        let polling = false;
+        let client = null;
+
+        const longPoll = async () => {
+            if (polling) return;
+            polling = true;
+            while (!cancelled) {
+                try {
+                    const res = await examClient.get(`/attempt/${attemptId}/status`, {
+                        params: { since: result.gradingStatus, waitMs: 25000 },
+                    });
+                    if (res.data.gradingStatus !== result.gradingStatus) {
+                        if (!cancelled) fetchResult(false);
+                        return;
+                    }
+                } catch (err) {
+                    await new Promise((resolve) => setTimeout(resolve, 5000));
+                }
+            }
+        };
 
-        console.log("Đang chờ AI chấm điểm... Polling...");
-        const interval = setInterval(() => {
-            fetchResult(false);
-        }, 3000);
+        const socketUrl = import.meta.env.VITE_MAIN_API_URL
+            ? `${import.meta.env.VITE_MAIN_API_URL}/api/chat/ws`
+            : 'http://localhost:8089/api/chat/ws';
+
+        try {
+            const socket = new SockJS(socketUrl, null, {
+                transports: ['websocket', 'xhr-streaming', 'xhr-polling'],
+                withCredentials: false
+            });
+            client = Stomp.over(socket);
+            client.debug = null;
+            client.connect({}, () => {
+                client.subscribe(`/queue/attempts/${result.userId}`, (payload) => {
+                    const event = JSON.parse(payload.body);
+                    if (String(event.attemptId) === String(attemptId)) fetchResult(false);
+                });
+                // Sự kiện có thể đã đến trước khi subscribe xong
+                fetchResult(false);
+            }, () => {
+                if (!cancelled) longPoll();
+            });
+        } catch (err) {
+            longPoll();
+        }
 
-        return () => clearInterval(interval);
-    }, [hasPendingEssay]);
+        return () => {
+            cancelled = true;
+            if (client && client.connected) client.disconnect();
+        };
+    }, [hasPendingEssay, result?.userId]);
 
     if (loading) return <div className="p-10 text-center text-gray-500">Đang tải kết quả...</div>;
     if (!result) return <div className="p-10 text-center text-red-500">Không tìm thấy kết quả.</div>;